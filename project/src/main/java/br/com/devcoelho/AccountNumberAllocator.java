@@ -0,0 +1,54 @@
+package br.com.devcoelho;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out unique, consecutive account numbers.
+ *
+ * <p>All threads share one atomic counter, so claiming a number is a single atomic update and no
+ * numbers are skipped however many threads open accounts. The counter is the high-water mark saved
+ * with the data; restoring it with {@link #advancePast(int)} raises it atomically, so numbers
+ * claimed afterwards can't collide with restored accounts.
+ */
+public class AccountNumberAllocator {
+
+  private final AtomicInteger highWaterMark;
+
+  public AccountNumberAllocator(int firstNumber) {
+    this.highWaterMark = new AtomicInteger(firstNumber);
+  }
+
+  /**
+   * Gets the next unused account number
+   *
+   * @return a number never returned before by this allocator
+   * @throws IllegalStateException if every account number has been used
+   */
+  public int next() {
+    int number = highWaterMark.getAndUpdate(mark -> (mark == Integer.MAX_VALUE) ? mark : mark + 1);
+    if (number == Integer.MAX_VALUE) {
+      throw new IllegalStateException("No account numbers left");
+    }
+    return number;
+  }
+
+  /**
+   * Gets the first number not yet handed out
+   *
+   * @return the high-water mark to persist
+   */
+  public int getHighWaterMark() {
+    return highWaterMark.get();
+  }
+
+  /**
+   * Makes sure every future number is greater than the given one
+   *
+   * @param usedNumber a number already in use, e.g. a restored account number or a persisted
+   *     high-water mark minus one
+   */
+  public void advancePast(int usedNumber) {
+    int floor = (usedNumber == Integer.MAX_VALUE) ? usedNumber : usedNumber + 1;
+    highWaterMark.accumulateAndGet(floor, Math::max);
+  }
+}
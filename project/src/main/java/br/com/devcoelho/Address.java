@@ -1,6 +1,7 @@
 package br.com.devcoelho;
 
 import br.com.devcoelho.service.ViaCepService;
+import java.util.concurrent.CompletableFuture;
 
 /** Address */
 public class Address {
@@ -8,8 +9,8 @@ public class Address {
   private String address;
   private String houseNumber;
   private String houseComplement;
-  private String neighborhood;
-  private String cityName;
+  private int neighborhoodId; // Id in StringDictionary.NEIGHBORHOODS
+  private int cityNameId; // Id in StringDictionary.CITIES
   private BrazilianState state;
   private String cepNumber;
   private AddressType addressLocationT;
@@ -42,19 +43,19 @@ public class Address {
   }
 
   public String getNeighborhood() {
-    return neighborhood;
+    return StringDictionary.NEIGHBORHOODS.valueOf(neighborhoodId);
   }
 
   public void setNeighborhood(String neighborhood) {
-    this.neighborhood = neighborhood;
+    this.neighborhoodId = StringDictionary.NEIGHBORHOODS.idOf(neighborhood);
   }
 
   public String getCityName() {
-    return cityName;
+    return StringDictionary.CITIES.valueOf(cityNameId);
   }
 
   public void setCityName(String cityName) {
-    this.cityName = cityName;
+    this.cityNameId = StringDictionary.CITIES.idOf(cityName);
   }
 
   public BrazilianState getState() {
@@ -99,10 +100,12 @@ public class Address {
       formattedAddress.append(", ").append(houseComplement);
     }
 
+    String neighborhood = getNeighborhood();
     if (neighborhood != null && !neighborhood.isEmpty()) {
       formattedAddress.append(" - ").append(neighborhood);
     }
 
+    String cityName = getCityName();
     if (cityName != null && !cityName.isEmpty()) {
       formattedAddress.append(", ").append(cityName);
     }
@@ -131,10 +134,31 @@ public class Address {
       return false;
     }
 
+    fillFromValidated(validatedAddress);
+    return true;
+  }
+
+  /**
+   * Looks up the address of a CEP without blocking, through the same service as {@link
+   * #validateAndFillAddressByCep}. Cancelling the future abandons the lookup
+   *
+   * @param cep the CEP to look up
+   * @return a future completed with a new validated address, or with null if the CEP doesn't exist
+   */
+  public static CompletableFuture<Address> lookupByCepAsync(String cep) {
+    return viaCepService.getAddressByCepAsync(cep);
+  }
+
+  /**
+   * Populates this address from the result of a CEP lookup, e.g. one made in bulk
+   *
+   * @param validatedAddress the address returned for this address' CEP
+   */
+  public void fillFromValidated(Address validatedAddress) {
     // Populate the current address with the validated information
     this.address = validatedAddress.getAddress();
-    this.neighborhood = validatedAddress.getNeighborhood();
-    this.cityName = validatedAddress.getCityName();
+    this.neighborhoodId = validatedAddress.neighborhoodId;
+    this.cityNameId = validatedAddress.cityNameId;
     this.state = validatedAddress.getState();
     this.cepNumber = validatedAddress.getCepNumber();
 
@@ -142,8 +166,6 @@ public class Address {
     if (this.houseComplement == null || this.houseComplement.isEmpty()) {
       this.houseComplement = validatedAddress.getHouseComplement();
     }
-
-    return true;
   }
 
   /**
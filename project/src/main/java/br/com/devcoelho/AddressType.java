@@ -3,22 +3,23 @@ package br.com.devcoelho;
 /** AddressType */
 public class AddressType {
 
-  private String addressType;
-  private String addressLocationType;
+  // Ids in StringDictionary.ADDRESS_TYPES
+  private int addressTypeId;
+  private int addressLocationTypeId;
 
   public String getAddressType() {
-    return addressType;
+    return StringDictionary.ADDRESS_TYPES.valueOf(addressTypeId);
   }
 
   public void setAddressType(String addressType) {
-    this.addressType = addressType;
+    this.addressTypeId = StringDictionary.ADDRESS_TYPES.idOf(addressType);
   }
 
   public String getAddressLocationType() {
-    return addressLocationType;
+    return StringDictionary.ADDRESS_TYPES.valueOf(addressLocationTypeId);
   }
 
   public void setAddressLocationType(String addressLocationType) {
-    this.addressLocationType = addressLocationType;
+    this.addressLocationTypeId = StringDictionary.ADDRESS_TYPES.idOf(addressLocationType);
   }
 }
@@ -49,9 +49,11 @@ public class App {
     System.out.println("Saving data to files...");
     try {
         FilePersistence.saveClients(clients);
-        FilePersistence.saveAccounts(accounts);
-        
-        System.out.println("Data saved successfully.");
+        if (FilePersistence.saveAccounts(accounts)) {
+            System.out.println("Data saved successfully.");
+        } else {
+            System.out.println("Error saving data: the account files could not be written.");
+        }
     } catch (Exception e) {
         System.out.println("Error saving data: " + e.getMessage());
     }
@@ -0,0 +1,79 @@
+package br.com.devcoelho;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A list that can only grow, safe to read and iterate while other threads append.
+ *
+ * <p>Appends are serialized and amortized constant time. An element is stored before the size
+ * that covers it is published, so readers see every element below the size they read without
+ * locking. Nothing is ever removed or replaced, so iterators never throw {@link
+ * java.util.ConcurrentModificationException}; each returns the elements present when it was
+ * created.
+ */
+final class AppendOnlyList<E> extends AbstractList<E> implements RandomAccess {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private volatile Object[] elements = new Object[INITIAL_CAPACITY];
+  private volatile int size;
+
+  /**
+   * Adds an element at the end
+   *
+   * @param element the element to add
+   * @return true
+   */
+  @Override
+  public synchronized boolean add(E element) {
+    Object[] current = elements;
+    if (size == current.length) {
+      // Readers holding the old array still find every element below the size they read
+      current = Arrays.copyOf(current, current.length * 2);
+      elements = current;
+    }
+    current[size] = element;
+    size = size + 1; // Publishes the element
+    return true;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E get(int index) {
+    Objects.checkIndex(index, size); // Read the size before the array
+    return (E) elements[index];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Iterator<E> iterator() {
+    int end = size; // Read the size before the array
+    Object[] snapshot = elements;
+    return new Iterator<E>() {
+      private int next;
+
+      @Override
+      public boolean hasNext() {
+        return next < end;
+      }
+
+      @Override
+      public E next() {
+        if (next >= end) {
+          throw new NoSuchElementException();
+        }
+        return (E) snapshot[next++];
+      }
+    };
+  }
+}
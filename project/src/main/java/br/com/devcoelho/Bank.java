@@ -1,17 +1,28 @@
 package br.com.devcoelho;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-
-/** Represents a bank with multiple clients and accounts */
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Represents a bank with multiple clients and accounts.
+ *
+ * <p>Client registration and account creation are safe to call from several threads. Clients are
+ * indexed by CPF in a {@link ConcurrentHashMap}, which locks per bin rather than globally, and
+ * each client's accounts are kept in their own {@link CopyOnWriteArrayList}, so threads working on
+ * different clients don't contend. The client list only grows, so it and each client's accounts
+ * can be read through views while other threads register clients and open accounts.
+ */
 public class Bank {
 
   private String name;
   private String bankCode;
-  private List<Person> clients = new ArrayList<>();
-  private Map<Person, List<BankAccount>> clientAccounts = new HashMap<>();
+  private final List<Person> clients = new AppendOnlyList<>();
+  private final Map<String, Person> clientsByCpf = new ConcurrentHashMap<>();
+  private final Map<Person, List<BankAccount>> clientAccounts = new ConcurrentHashMap<>();
+  private final PortfolioValuation portfolioValuation = new PortfolioValuation();
 
   public Bank(String name, String bankCode) {
     this.name = name;
@@ -34,13 +45,25 @@ public class Bank {
     this.bankCode = bankCode;
   }
 
+  /**
+   * Gets the running valuation of all investments held at this bank
+   *
+   * @return the bank-wide portfolio valuation
+   */
+  public PortfolioValuation getPortfolioValuation() {
+    return portfolioValuation;
+  }
+
   /**
    * Gets a list of all clients
    *
-   * @return list of all clients
+   * <p>The view reflects concurrent registrations and can be iterated while clients are being
+   * added; an iteration returns the clients registered before it ends.
+   *
+   * @return an unmodifiable live view of all clients in registration order
    */
   public List<Person> getClients() {
-    return new ArrayList<>(clients); // Return a copy to prevent direct modification
+    return Collections.unmodifiableList(clients); // View, no copy per call
   }
 
   /**
@@ -54,15 +77,17 @@ public class Bank {
       throw new IllegalArgumentException("Client must have a valid CPF");
     }
 
-    // Check if client with same CPF exists
-    for (Person existingClient : clients) {
-      if (existingClient.getCpf().equals(client.getCpf())) {
-        return false; // Client already exists
-      }
+    // The account list goes in first, so a client found by CPF can always open accounts
+    List<BankAccount> accounts = new CopyOnWriteArrayList<>();
+    clientAccounts.putIfAbsent(client, accounts);
+
+    // Atomically claim the CPF; fails if a client with the same CPF exists
+    if (clientsByCpf.putIfAbsent(client.getCpf(), client) != null) {
+      clientAccounts.remove(client, accounts); // Only if this call added it
+      return false; // Client already exists
     }
 
     clients.add(client);
-    clientAccounts.put(client, new ArrayList<>());
     return true;
   }
 
@@ -74,7 +99,8 @@ public class Bank {
    * @return the created bank account
    */
   public BankAccount createAccount(Person client, AccountType accountType) {
-    if (!clients.contains(client)) {
+    List<BankAccount> accounts = (client != null) ? clientAccounts.get(client) : null;
+    if (accounts == null) {
       throw new IllegalArgumentException("Client not registered with this bank");
     }
 
@@ -85,14 +111,16 @@ public class Bank {
         account = new BankSimpleAccount(client);
         break;
       case INVESTMENT:
-        account = new BankInvestmentAccount(client);
+        BankInvestmentAccount investmentAccount = new BankInvestmentAccount(client);
+        investmentAccount.setPortfolioValuation(portfolioValuation);
+        account = investmentAccount;
         break;
       default:
         throw new IllegalArgumentException("Unsupported account type");
     }
 
     // Add account to client's account list
-    clientAccounts.get(client).add(account);
+    accounts.add(account);
 
     return account;
   }
@@ -101,14 +129,14 @@ public class Bank {
    * Gets all accounts for a client
    *
    * @param client the client
-   * @return list of all accounts owned by the client
+   * @return an unmodifiable live view of the accounts owned by the client; an iteration sees the
+   *     accounts opened before it started, even while accounts are being created
    */
   public List<BankAccount> getClientAccounts(Person client) {
-    List<BankAccount> accounts = clientAccounts.get(client);
-    if (accounts == null) {
-      return new ArrayList<>();
-    }
-    return new ArrayList<>(accounts); // Return a copy to prevent direct modification
+    List<BankAccount> accounts = (client != null) ? clientAccounts.get(client) : null;
+    return (accounts != null)
+        ? Collections.unmodifiableList(accounts) // View, no copy per call
+        : Collections.emptyList();
   }
 
   /**
@@ -118,12 +146,10 @@ public class Bank {
    * @return the client if found, null otherwise
    */
   public Person findClientByCpf(String cpf) {
-    for (Person client : clients) {
-      if (client.getCpf().equals(cpf)) {
-        return client;
-      }
+    if (cpf == null) {
+      return null;
     }
-    return null;
+    return clientsByCpf.get(cpf);
   }
 
   /** Account types supported by the bank */
@@ -3,47 +3,84 @@ package br.com.devcoelho;
 import br.com.devcoelho.exceptions.InsufficientBalanceException;
 import br.com.devcoelho.exceptions.InvalidAccountException;
 import br.com.devcoelho.interfaces.*;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /** Abstract base class for all bank account types */
 public abstract class BankAccount implements BankInterface {
 
   private static final String DEFAULT_AGENCY = "Mogi Guacu";
-  private static final AtomicInteger ACCOUNT_SEQUENTIAL = new AtomicInteger(1);
+  private static final int DEFAULT_AGENCY_ID = StringDictionary.AGENCIES.idOf(DEFAULT_AGENCY);
+  private static final AccountNumberAllocator ACCOUNT_NUMBERS = new AccountNumberAllocator(1);
 
   public static String getDefaultAgency() {
     return DEFAULT_AGENCY;
   }
 
-  protected String agency;
+  /**
+   * Gets the allocator that assigns numbers to new accounts
+   *
+   * @return the shared account number allocator
+   */
+  public static AccountNumberAllocator getAccountNumberAllocator() {
+    return ACCOUNT_NUMBERS;
+  }
+
+  protected int agencyId; // Id in StringDictionary.AGENCIES
   protected int accountNumber;
   protected double amountStored;
   protected Person client;
-  protected List<Transaction> transactionHistory;
+  protected TransactionLedger transactionHistory;
   protected Date openingDate;
+  private final ReentrantLock lock = new ReentrantLock();
 
   public BankAccount(Person personToCreateAccount) {
     if (personToCreateAccount == null) {
       throw new IllegalArgumentException("Cannot create account without a valid person");
     }
 
-    this.agency = BankAccount.DEFAULT_AGENCY;
-    this.accountNumber = ACCOUNT_SEQUENTIAL.getAndIncrement();
+    this.agencyId = BankAccount.DEFAULT_AGENCY_ID;
+    this.accountNumber = ACCOUNT_NUMBERS.next();
     this.client = personToCreateAccount;
     this.amountStored = 0.0;
-    this.transactionHistory = new ArrayList<>();
+    this.transactionHistory = new TransactionLedger();
     this.openingDate = new Date();
   }
 
+  /**
+   * Creates an account under a number that was already assigned, e.g. a saved account being
+   * restored, without drawing a number from the allocator
+   *
+   * @param personToRestore the account's owner
+   * @param accountNumber the assigned account number
+   * @param openingDate the opening date
+   */
+  protected BankAccount(Person personToRestore, int accountNumber, Date openingDate) {
+    if (personToRestore == null) {
+      throw new IllegalArgumentException("Cannot restore account without a valid person");
+    }
+
+    this.agencyId = BankAccount.DEFAULT_AGENCY_ID;
+    this.accountNumber = accountNumber;
+    this.client = personToRestore;
+    this.amountStored = 0.0;
+    this.transactionHistory = new TransactionLedger();
+    this.openingDate = openingDate;
+  }
+
   public String getAgency() {
-    return agency;
+    return StringDictionary.AGENCIES.valueOf(agencyId);
+  }
+
+  public int getAgencyId() {
+    return agencyId;
   }
 
   public void setAgency(String agency) {
-    this.agency = agency;
+    this.agencyId = StringDictionary.AGENCIES.idOf(agency);
   }
 
   public int getAccountNumber() {
@@ -62,25 +99,52 @@ public abstract class BankAccount implements BankInterface {
     return client;
   }
 
+  /**
+   * Gets a read-only view of the transaction history, oldest first
+   *
+   * @return an unmodifiable live view of the history
+   */
   public List<Transaction> getTransactionHistory() {
-    return new ArrayList<>(transactionHistory); // Return a copy to prevent direct modification
+    return Collections.unmodifiableList(transactionHistory); // View, no copy per call
+  }
+
+  /**
+   * Gets the transaction history as columns, for scans and paged views that shouldn't
+   * materialize every transaction
+   *
+   * @return a read-only live view of the history, oldest first
+   */
+  public LedgerView getTransactionLedger() {
+    return transactionHistory.view();
   }
 
   public Date getOpeningDate() {
     return openingDate;
   }
 
+  /**
+   * Gets the lock that guards this account when several threads share it, e.g. HTTP requests and
+   * posting batches. Accounts don't take it themselves; hold it around every read or change of a
+   * shared account, and take the locks of several accounts in account-number order
+   *
+   * @return the account's lock
+   */
+  public Lock getLock() {
+    return lock;
+  }
+
   @Override
   public boolean isValid() {
-    return this.agency != null
-        && this.agency.trim().length() > 0
+    String agency = getAgency();
+    return agency != null
+        && agency.trim().length() > 0
         && this.client != null
         && this.accountNumber > 0;
   }
 
   @Override
   public void withdrawAmount(double value) {
-    if (value <= 0) {
+    if (!Double.isFinite(value) || value <= 0) {
       throw new IllegalArgumentException("Withdrawal amount must be positive");
     }
 
@@ -94,7 +158,7 @@ public abstract class BankAccount implements BankInterface {
 
   @Override
   public void depositAmount(double value) {
-    if (value <= 0) {
+    if (!Double.isFinite(value) || value <= 0) {
       throw new IllegalArgumentException("Deposit amount must be positive");
     }
 
@@ -108,7 +172,7 @@ public abstract class BankAccount implements BankInterface {
       throw new InvalidAccountException("Destination account is invalid");
     }
 
-    if (value <= 0) {
+    if (!Double.isFinite(value) || value <= 0) {
       throw new IllegalArgumentException("Transfer amount must be positive");
     }
 
@@ -116,20 +180,83 @@ public abstract class BankAccount implements BankInterface {
       throw new InsufficientBalanceException("Insufficient balance for transfer");
     }
 
-    this.withdrawAmount(value);
+    setAmountStored(getAmountStored() - value);
+    recordTransaction(TransactionType.TRANSFER, -value, destinyAccount);
     destinyAccount.depositAmount(value);
+  }
+
+  /**
+   * Takes funds out of the balance for a transfer that isn't committed yet. Nothing is recorded in
+   * the history until {@link #commitTransferHold} is called; {@link #releaseHold} gives the funds
+   * back if the transfer is aborted.
+   *
+   * @param value the amount to hold
+   */
+  public void holdAmount(double value) {
+    if (!Double.isFinite(value) || value <= 0) {
+      throw new IllegalArgumentException("Transfer amount must be positive");
+    }
+
+    if (value > getAmountStored()) {
+      throw new InsufficientBalanceException("Insufficient balance for transfer");
+    }
+
+    setAmountStored(getAmountStored() - value);
+  }
+
+  /**
+   * Returns funds taken by {@link #holdAmount} to the balance
+   *
+   * @param value the amount that was held
+   */
+  public void releaseHold(double value) {
+    setAmountStored(getAmountStored() + value);
+  }
 
-    // Update the transaction type to TRANSFER (overrides the WITHDRAWAL record)
-    Transaction lastTransaction = this.transactionHistory.get(this.transactionHistory.size() - 1);
-    lastTransaction.setType(TransactionType.TRANSFER);
-    lastTransaction.setDestinationAccount(destinyAccount);
+  /**
+   * Records a held amount as a completed transfer
+   *
+   * @param value the amount that was held
+   * @param destinationAccountNumber the number of the account that received the funds
+   */
+  public void commitTransferHold(double value, int destinationAccountNumber) {
+    this.transactionHistory.append(
+        TransactionType.TRANSFER,
+        Transaction.toCents(-value),
+        System.currentTimeMillis(),
+        this.accountNumber,
+        destinationAccountNumber);
+  }
+
+  /**
+   * Applies postings already validated by a {@link PostingBatch}: the balance is updated once and
+   * the history entries are appended in bulk
+   */
+  void applyPostings(List<PostingBatch.Posting> postings, long timestampMillis) {
+    transactionHistory.ensureCapacity(transactionHistory.size() + postings.size());
+
+    double balance = getAmountStored();
+    for (PostingBatch.Posting posting : postings) {
+      balance += posting.getSignedAmount();
+      transactionHistory.append(
+          posting.getType(),
+          Transaction.toCents(posting.getSignedAmount()),
+          timestampMillis,
+          this.accountNumber,
+          Transaction.NO_ACCOUNT);
+    }
+    setAmountStored(balance);
   }
 
   /** Records a transaction in the account history */
   public void recordTransaction(
       TransactionType type, double amount, BankInterface destinationAccount) {
-    Transaction transaction = new Transaction(type, amount, new Date(), this, destinationAccount);
-    this.transactionHistory.add(transaction);
+    this.transactionHistory.append(
+        type,
+        Transaction.toCents(amount),
+        System.currentTimeMillis(),
+        this.accountNumber,
+        Transaction.accountNumberOf(destinationAccount));
   }
 
   /** Prints the common account information */
@@ -1,6 +1,8 @@
 package br.com.devcoelho;
 
 import br.com.devcoelho.exceptions.InsufficientBalanceException;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -9,11 +11,24 @@ public class BankInvestmentAccount extends BankAccount {
 
   private double interestRate = 0.05; // 5% annual interest rate by default
   private Map<String, Investment> investments = new HashMap<>();
+  private PortfolioValuation portfolioValuation;
 
   public BankInvestmentAccount(Person client) {
     super(client);
   }
 
+  /**
+   * Creates an account under a number that was already assigned, e.g. a saved account being
+   * restored
+   *
+   * @param client the account's owner
+   * @param accountNumber the assigned account number
+   * @param openingDate the opening date
+   */
+  public BankInvestmentAccount(Person client, int accountNumber, Date openingDate) {
+    super(client, accountNumber, openingDate);
+  }
+
   /**
    * Gets the current annual interest rate
    *
@@ -35,6 +50,27 @@ public class BankInvestmentAccount extends BankAccount {
     this.interestRate = interestRate;
   }
 
+  /**
+   * Attaches the bank-level valuation that should track this account's investments
+   *
+   * @param portfolioValuation the valuation to keep updated, or null to stop tracking
+   */
+  public void setPortfolioValuation(PortfolioValuation portfolioValuation) {
+    if (this.portfolioValuation != null) {
+      for (Investment investment : investments.values()) {
+        this.portfolioValuation.investmentRemoved(investment);
+      }
+    }
+
+    this.portfolioValuation = portfolioValuation;
+
+    if (portfolioValuation != null) {
+      for (Investment investment : investments.values()) {
+        portfolioValuation.investmentAdded(investment);
+      }
+    }
+  }
+
   /**
    * Creates a new investment with the specified amount
    *
@@ -43,7 +79,7 @@ public class BankInvestmentAccount extends BankAccount {
    * @param annualRate the annual interest rate for this specific investment
    */
   public void createInvestment(String name, double amount, double annualRate) {
-    if (amount <= 0) {
+    if (!Double.isFinite(amount) || amount <= 0) {
       throw new IllegalArgumentException("Investment amount must be positive");
     }
 
@@ -56,7 +92,14 @@ public class BankInvestmentAccount extends BankAccount {
 
     // Create and store the investment
     Investment investment = new Investment(name, amount, annualRate);
-    investments.put(name, investment);
+    Investment replaced = investments.put(name, investment);
+
+    if (portfolioValuation != null) {
+      if (replaced != null) {
+        portfolioValuation.investmentRemoved(replaced);
+      }
+      portfolioValuation.investmentAdded(investment);
+    }
 
     // Record transaction
     recordTransaction(TransactionType.WITHDRAWAL, -amount, null);
@@ -88,6 +131,9 @@ public class BankInvestmentAccount extends BankAccount {
 
     // Remove the investment
     investments.remove(name);
+    if (portfolioValuation != null) {
+      portfolioValuation.investmentRemoved(investment);
+    }
 
     return totalAmount;
   }
@@ -95,10 +141,10 @@ public class BankInvestmentAccount extends BankAccount {
   /**
    * Gets all current investments
    *
-   * @return a map of investment name to Investment object
+   * @return an unmodifiable live view mapping investment name to Investment object
    */
   public Map<String, Investment> getInvestments() {
-    return new HashMap<>(investments); // Return a copy to prevent direct modification
+    return Collections.unmodifiableMap(investments); // View, no copy per call
   }
 
   /**
@@ -107,6 +153,15 @@ public class BankInvestmentAccount extends BankAccount {
    */
   public void applyMonthlyInterest() {
     double interestAmount = (getAmountStored() * interestRate) / 12; // Monthly interest
+    creditInterest(interestAmount);
+  }
+
+  /**
+   * Adds an already computed interest amount to the main balance
+   *
+   * @param interestAmount the interest to credit
+   */
+  void creditInterest(double interestAmount) {
     setAmountStored(getAmountStored() + interestAmount);
     recordTransaction(TransactionType.INTEREST, interestAmount, null);
   }
@@ -169,6 +224,20 @@ public class BankInvestmentAccount extends BankAccount {
       // Convert months to milliseconds (approximate)
       long monthsInMillis = months * 30L * 24L * 60L * 60L * 1000L;
       additionalTimeMillis += monthsInMillis;
+
+      if (portfolioValuation != null && investments.get(name) == this) {
+        portfolioValuation.investmentAdvanced(this, monthsInMillis);
+      }
+    }
+
+    /**
+     * Gets the natural time elapsed up to the given instant plus the simulated time
+     *
+     * @param nowMillis the instant to measure at, in epoch milliseconds
+     * @return the elapsed time in milliseconds
+     */
+    long getElapsedMillisAt(long nowMillis) {
+      return (nowMillis - startTimeMillis) + additionalTimeMillis;
     }
 
     /**
@@ -177,8 +246,7 @@ public class BankInvestmentAccount extends BankAccount {
      * @return the current value
      */
     public double getCurrentValue() {
-      // Calculate natural time elapsed plus simulated time
-      long totalTimeMillis = (System.currentTimeMillis() - startTimeMillis) + additionalTimeMillis;
+      long totalTimeMillis = getElapsedMillisAt(System.currentTimeMillis());
       double yearsElapsed = totalTimeMillis / (365.0 * 24 * 60 * 60 * 1000);
 
       // Compound interest formula: P * (1 + r)^t
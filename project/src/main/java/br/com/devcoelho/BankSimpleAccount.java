@@ -1,5 +1,7 @@
 package br.com.devcoelho;
 
+import java.util.Date;
+
 /** BankSimpleAccount */
 public class BankSimpleAccount extends BankAccount {
 
@@ -7,6 +9,18 @@ public class BankSimpleAccount extends BankAccount {
     super(client);
   }
 
+  /**
+   * Creates an account under a number that was already assigned, e.g. a saved account being
+   * restored
+   *
+   * @param client the account's owner
+   * @param accountNumber the assigned account number
+   * @param openingDate the opening date
+   */
+  public BankSimpleAccount(Person client, int accountNumber, Date openingDate) {
+    super(client, accountNumber, openingDate);
+  }
+
   @Override
   public void printExtract() {
     System.out.println("=== Account Extract ===");
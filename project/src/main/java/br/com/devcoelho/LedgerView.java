@@ -0,0 +1,46 @@
+package br.com.devcoelho;
+
+/**
+ * Read-only view of an account's transaction history, column by column.
+ *
+ * <p>Lets statements, charts and paged tables scan the history through its primitive columns
+ * instead of materializing one {@link Transaction} per row. Rows are indexed oldest first, and the
+ * view follows the history as transactions are recorded.
+ */
+public interface LedgerView {
+
+  /**
+   * Gets the number of transactions
+   *
+   * @return the number of rows
+   */
+  int size();
+
+  TransactionType getType(int index);
+
+  /**
+   * Gets the signed amount of a transaction
+   *
+   * @param index the row
+   * @return the amount in cents, negative for money leaving the account
+   */
+  long getAmountCents(int index);
+
+  long getTimestampMillis(int index);
+
+  /**
+   * Gets the destination account of a transaction
+   *
+   * @param index the row
+   * @return the account number, or {@link Transaction#NO_ACCOUNT}
+   */
+  int getDestinationAccountNumber(int index);
+
+  /**
+   * Gets a whole row
+   *
+   * @param index the row
+   * @return the transaction
+   */
+  Transaction get(int index);
+}
@@ -0,0 +1,82 @@
+package br.com.devcoelho;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies monthly interest to many investment accounts at once.
+ *
+ * <p>Balances and rates are copied into parallel primitive arrays indexed by account slot, so the
+ * accrual itself is a plain loop over {@code double[]} columns that the JIT can unroll and
+ * vectorize. The results are then written back to each account, recording the same INTEREST
+ * transactions as {@link BankInvestmentAccount#applyMonthlyInterest()}.
+ *
+ * <p>Writing back still costs one ledger entry per account and month, which outweighs the columnar
+ * accrual: {@code MonthlyInterestBenchmark} measures the batch slower than applying interest
+ * account by account, so the time simulations keep the per-account loop.
+ */
+public class MonthlyInterestBatch {
+
+  private final BankInvestmentAccount[] accounts;
+  private final double[] balances;
+  private final double[] annualRates;
+
+  /**
+   * Builds the columnar view of every investment account in the given list
+   *
+   * @param allAccounts the accounts to scan; non-investment accounts are ignored
+   */
+  public MonthlyInterestBatch(List<BankAccount> allAccounts) {
+    List<BankInvestmentAccount> investmentAccounts = new ArrayList<>();
+    for (BankAccount account : allAccounts) {
+      if (account instanceof BankInvestmentAccount) {
+        investmentAccounts.add((BankInvestmentAccount) account);
+      }
+    }
+
+    int size = investmentAccounts.size();
+    this.accounts = investmentAccounts.toArray(new BankInvestmentAccount[size]);
+    this.balances = new double[size];
+    this.annualRates = new double[size];
+
+    for (int slot = 0; slot < size; slot++) {
+      balances[slot] = accounts[slot].getAmountStored();
+      annualRates[slot] = accounts[slot].getInterestRate();
+    }
+  }
+
+  /**
+   * Gets the number of investment accounts in this batch
+   *
+   * @return the number of account slots
+   */
+  public int size() {
+    return accounts.length;
+  }
+
+  /**
+   * Applies the given number of months of interest to every account in the batch
+   *
+   * @param months number of months to accrue
+   */
+  public void apply(int months) {
+    double[] interest = new double[accounts.length];
+
+    for (int month = 0; month < months; month++) {
+      accrue(balances, annualRates, interest);
+
+      // Write the month's results back to the account ledgers
+      for (int slot = 0; slot < accounts.length; slot++) {
+        accounts[slot].creditInterest(interest[slot]);
+      }
+    }
+  }
+
+  /** Computes one month of interest for every slot and adds it to the balance column */
+  private static void accrue(double[] balances, double[] annualRates, double[] interest) {
+    for (int slot = 0; slot < balances.length; slot++) {
+      interest[slot] = (balances[slot] * annualRates[slot]) / 12;
+      balances[slot] += interest[slot];
+    }
+  }
+}
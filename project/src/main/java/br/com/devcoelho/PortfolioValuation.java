@@ -0,0 +1,164 @@
+package br.com.devcoelho;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps running totals for every investment held at a bank.
+ *
+ * <p>Investments are grouped into buckets by annual rate. Each bucket stores its principal and a
+ * growth weight, the sum of {@code principal * (1 + rate)^(years elapsed at the valuation epoch)}.
+ * Since all investments in a bucket compound at the same rate, the bucket's current value is its
+ * weight times {@code (1 + rate)^(years since the epoch)}. Totals are therefore answered without
+ * visiting individual positions, and are updated incrementally as investments are created,
+ * liquidated or advanced in time. Methods are synchronized since one valuation is shared by all
+ * investment accounts of a bank.
+ */
+public class PortfolioValuation {
+
+  private static final double MILLIS_PER_YEAR = 365.0 * 24 * 60 * 60 * 1000;
+
+  private final long epochMillis;
+  private final Map<Double, RateBucket> buckets = new HashMap<>();
+  private double totalPrincipal;
+  private int positionCount;
+
+  public PortfolioValuation() {
+    this.epochMillis = System.currentTimeMillis();
+  }
+
+  /**
+   * Gets the number of open investment positions
+   *
+   * @return the number of positions
+   */
+  public synchronized int getPositionCount() {
+    return positionCount;
+  }
+
+  /**
+   * Gets the total principal invested across all positions
+   *
+   * @return the total principal
+   */
+  public synchronized double getTotalPrincipal() {
+    return totalPrincipal;
+  }
+
+  /**
+   * Gets the current value of all positions (assets under management)
+   *
+   * @return the total current value
+   */
+  public synchronized double getCurrentValue() {
+    double yearsSinceEpoch = yearsSinceEpoch();
+    double total = 0.0;
+    for (RateBucket bucket : buckets.values()) {
+      total += bucket.currentValue(yearsSinceEpoch);
+    }
+    return total;
+  }
+
+  /**
+   * Gets the principal invested at each annual rate
+   *
+   * @return a map of annual rate to principal
+   */
+  public synchronized Map<Double, Double> getPrincipalByRate() {
+    Map<Double, Double> principalByRate = new HashMap<>();
+    for (RateBucket bucket : buckets.values()) {
+      principalByRate.put(bucket.annualRate, bucket.principal);
+    }
+    return principalByRate;
+  }
+
+  /**
+   * Gets the current value held at each annual rate
+   *
+   * @return a map of annual rate to current value
+   */
+  public synchronized Map<Double, Double> getCurrentValueByRate() {
+    double yearsSinceEpoch = yearsSinceEpoch();
+    Map<Double, Double> valueByRate = new HashMap<>();
+    for (RateBucket bucket : buckets.values()) {
+      valueByRate.put(bucket.annualRate, bucket.currentValue(yearsSinceEpoch));
+    }
+    return valueByRate;
+  }
+
+  /** Registers a newly created investment */
+  synchronized void investmentAdded(BankInvestmentAccount.Investment investment) {
+    RateBucket bucket =
+        buckets.computeIfAbsent(investment.getAnnualRate(), rate -> new RateBucket(rate));
+    bucket.principal += investment.getPrincipal();
+    bucket.weight += weightOf(investment);
+    bucket.positions++;
+
+    totalPrincipal += investment.getPrincipal();
+    positionCount++;
+  }
+
+  /** Unregisters an investment that was liquidated or replaced */
+  synchronized void investmentRemoved(BankInvestmentAccount.Investment investment) {
+    RateBucket bucket = buckets.get(investment.getAnnualRate());
+    if (bucket == null) {
+      return;
+    }
+
+    bucket.principal -= investment.getPrincipal();
+    bucket.weight -= weightOf(investment);
+    bucket.positions--;
+    if (bucket.positions == 0) {
+      // Drop the bucket so rounding residue doesn't accumulate
+      buckets.remove(investment.getAnnualRate());
+    }
+
+    totalPrincipal -= investment.getPrincipal();
+    positionCount--;
+    if (positionCount == 0) {
+      totalPrincipal = 0.0;
+    }
+  }
+
+  /** Updates the growth weight of an investment whose simulated time moved forward */
+  synchronized void investmentAdvanced(
+      BankInvestmentAccount.Investment investment, long advancedMillis) {
+    RateBucket bucket = buckets.get(investment.getAnnualRate());
+    if (bucket == null) {
+      return;
+    }
+
+    double previousYearsAtEpoch =
+        (investment.getElapsedMillisAt(epochMillis) - advancedMillis) / MILLIS_PER_YEAR;
+    double previousWeight =
+        investment.getPrincipal()
+            * Math.pow(1 + investment.getAnnualRate(), previousYearsAtEpoch);
+    bucket.weight += weightOf(investment) - previousWeight;
+  }
+
+  /** Value of the investment as if it were measured at the valuation epoch */
+  private double weightOf(BankInvestmentAccount.Investment investment) {
+    double yearsAtEpoch = investment.getElapsedMillisAt(epochMillis) / MILLIS_PER_YEAR;
+    return investment.getPrincipal() * Math.pow(1 + investment.getAnnualRate(), yearsAtEpoch);
+  }
+
+  private double yearsSinceEpoch() {
+    return (System.currentTimeMillis() - epochMillis) / MILLIS_PER_YEAR;
+  }
+
+  /** Aggregated positions sharing the same annual rate */
+  private static class RateBucket {
+    private final double annualRate;
+    private double principal;
+    private double weight;
+    private int positions;
+
+    RateBucket(double annualRate) {
+      this.annualRate = annualRate;
+    }
+
+    double currentValue(double yearsSinceEpoch) {
+      return weight * Math.pow(1 + annualRate, yearsSinceEpoch);
+    }
+  }
+}
@@ -0,0 +1,225 @@
+package br.com.devcoelho;
+
+import br.com.devcoelho.exceptions.InsufficientBalanceException;
+import br.com.devcoelho.exceptions.InvalidAccountException;
+import br.com.devcoelho.exceptions.InvalidOperationException;
+import br.com.devcoelho.persistence.FilePersistence;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A batch of deposits and withdrawals posted atomically, e.g. from a payroll or settlement file.
+ *
+ * <p>Posting a batch validates every entry first, grouping entries by account and checking that no
+ * account would go negative at any point. If anything is invalid, nothing is applied. Otherwise
+ * the whole batch is written to the posting log in one write, and then each account's balance is
+ * updated once and its history entries are appended in bulk. The balances are checked and updated
+ * while holding every affected account's {@link BankAccount#getLock() lock}, so no other deposit or
+ * withdrawal can change them in between.
+ *
+ * <p>Saving accounts records how much of the posting log they include, and loading them replays
+ * the batches logged after that point, so a posted batch survives a restart even if the accounts
+ * weren't saved after it.
+ */
+public class PostingBatch {
+
+  private final String batchId;
+  private final List<Posting> postings = new ArrayList<>();
+
+  public PostingBatch(String batchId) {
+    if (batchId == null || batchId.trim().isEmpty()) {
+      throw new IllegalArgumentException("Batch must have an id");
+    }
+    this.batchId = batchId;
+  }
+
+  public String getBatchId() {
+    return batchId;
+  }
+
+  /**
+   * Gets the postings added so far
+   *
+   * @return an unmodifiable view of the postings in order
+   */
+  public List<Posting> getPostings() {
+    return Collections.unmodifiableList(postings);
+  }
+
+  /**
+   * Adds a deposit to the batch
+   *
+   * @param accountNumber the account to credit
+   * @param amount the amount to deposit
+   */
+  public void addDeposit(int accountNumber, double amount) {
+    postings.add(new Posting(accountNumber, TransactionType.DEPOSIT, amount));
+  }
+
+  /**
+   * Adds a withdrawal to the batch
+   *
+   * @param accountNumber the account to debit
+   * @param amount the amount to withdraw
+   */
+  public void addWithdrawal(int accountNumber, double amount) {
+    postings.add(new Posting(accountNumber, TransactionType.WITHDRAWAL, amount));
+  }
+
+  /**
+   * Validates and applies the whole batch, or nothing of it
+   *
+   * @param accounts the accounts the batch may refer to
+   * @return the number of accounts updated
+   * @throws InvalidAccountException if a posting refers to an unknown account
+   * @throws InvalidOperationException if an amount is invalid or the batch can't be logged
+   * @throws InsufficientBalanceException if an account would go negative
+   */
+  public int post(Collection<BankAccount> accounts) {
+    return post(accounts, "");
+  }
+
+  /**
+   * Validates and applies the whole batch, or nothing of it, logging it to the posting log of the
+   * account files with the given prefix
+   *
+   * @param accounts the accounts the batch may refer to
+   * @param filePrefix prefix of the account files the accounts are saved to
+   * @return the number of accounts updated
+   * @throws InvalidAccountException if a posting refers to an unknown account
+   * @throws InvalidOperationException if an amount is invalid or the batch can't be logged
+   * @throws InsufficientBalanceException if an account would go negative
+   */
+  public int post(Collection<BankAccount> accounts, String filePrefix) {
+    Map<BankAccount, List<Posting>> postingsByAccount = group(accounts);
+    List<BankAccount> lockOrder = new ArrayList<>(postingsByAccount.keySet());
+    lockOrder.sort(Comparator.comparingInt(BankAccount::getAccountNumber));
+
+    // Saves take the same lock, so a logged batch is either in the saved balances or after the
+    // save's position in the log, never both
+    synchronized (PostingBatch.class) {
+      int locked = 0;
+      try {
+        for (BankAccount account : lockOrder) {
+          account.getLock().lock();
+          locked++;
+        }
+
+        checkBalances(postingsByAccount);
+        // Log the batch before touching any account, so a failed write leaves everything unchanged
+        if (!FilePersistence.appendPostingBatch(this, filePrefix)) {
+          throw new InvalidOperationException("Could not log posting batch " + batchId);
+        }
+        apply(postingsByAccount, System.currentTimeMillis());
+      } finally {
+        for (int i = locked - 1; i >= 0; i--) {
+          lockOrder.get(i).getLock().unlock();
+        }
+      }
+    }
+
+    return postingsByAccount.size();
+  }
+
+  /**
+   * Applies a batch read back from the posting log, validating it like {@link #post} but without
+   * logging it again
+   *
+   * @param accounts the accounts the batch may refer to
+   * @param timestampMillis the time the batch was first posted
+   * @return the number of accounts updated
+   * @throws InvalidAccountException if a posting refers to an unknown account
+   * @throws InvalidOperationException if an amount is invalid
+   * @throws InsufficientBalanceException if an account would go negative
+   */
+  public int replay(Collection<BankAccount> accounts, long timestampMillis) {
+    Map<BankAccount, List<Posting>> postingsByAccount = group(accounts);
+    checkBalances(postingsByAccount);
+    apply(postingsByAccount, timestampMillis);
+    return postingsByAccount.size();
+  }
+
+  /** Validates every posting and groups the postings by account, each account's in order */
+  private Map<BankAccount, List<Posting>> group(Collection<BankAccount> accounts) {
+    Map<Integer, BankAccount> accountsByNumber = new HashMap<>();
+    for (BankAccount account : accounts) {
+      accountsByNumber.put(account.getAccountNumber(), account);
+    }
+
+    Map<BankAccount, List<Posting>> postingsByAccount = new LinkedHashMap<>();
+    for (Posting posting : postings) {
+      // Also rejects NaN and infinity
+      if (!(posting.amount > 0 && Double.isFinite(posting.amount))) {
+        throw new InvalidOperationException(
+            "Posting amount must be positive for account #" + posting.accountNumber);
+      }
+
+      BankAccount account = accountsByNumber.get(posting.accountNumber);
+      if (account == null) {
+        throw new InvalidAccountException("Account #" + posting.accountNumber + " not found");
+      }
+      postingsByAccount.computeIfAbsent(account, a -> new ArrayList<>()).add(posting);
+    }
+    return postingsByAccount;
+  }
+
+  /** Checks that no account goes negative at any point of its postings */
+  private static void checkBalances(Map<BankAccount, List<Posting>> postingsByAccount) {
+    for (Map.Entry<BankAccount, List<Posting>> entry : postingsByAccount.entrySet()) {
+      double balance = entry.getKey().getAmountStored();
+      for (Posting posting : entry.getValue()) {
+        balance += posting.getSignedAmount();
+        if (balance < 0) {
+          throw new InsufficientBalanceException(
+              "Insufficient balance in account #" + posting.accountNumber + " for batch");
+        }
+      }
+    }
+  }
+
+  private static void apply(Map<BankAccount, List<Posting>> postingsByAccount, long timestamp) {
+    for (Map.Entry<BankAccount, List<Posting>> entry : postingsByAccount.entrySet()) {
+      entry.getKey().applyPostings(entry.getValue(), timestamp);
+    }
+  }
+
+  /** A single deposit or withdrawal in a batch */
+  public static final class Posting {
+    private final int accountNumber;
+    private final TransactionType type;
+    private final double amount;
+
+    Posting(int accountNumber, TransactionType type, double amount) {
+      this.accountNumber = accountNumber;
+      this.type = type;
+      this.amount = amount;
+    }
+
+    public int getAccountNumber() {
+      return accountNumber;
+    }
+
+    public TransactionType getType() {
+      return type;
+    }
+
+    public double getAmount() {
+      return amount;
+    }
+
+    /**
+     * Gets the amount as it affects the balance
+     *
+     * @return the amount, negative for withdrawals
+     */
+    public double getSignedAmount() {
+      return (type == TransactionType.WITHDRAWAL) ? -amount : amount;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package br.com.devcoelho;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary encoding for frequently repeated strings.
+ *
+ * <p>Each distinct value is stored once and identified by a small int id, so objects can hold the
+ * id instead of their own copy of the string, and two values are equal exactly when their ids are.
+ * Id 0 is reserved for null. The shared dictionaries below are used for account and address
+ * metadata. Lookups of known values and ids don't lock; only adding a new value does.
+ */
+public class StringDictionary {
+
+  /** Account agency names */
+  public static final StringDictionary AGENCIES = new StringDictionary();
+
+  /** City names */
+  public static final StringDictionary CITIES = new StringDictionary();
+
+  /** Neighborhood names */
+  public static final StringDictionary NEIGHBORHOODS = new StringDictionary();
+
+  /** Address types and address location types */
+  public static final StringDictionary ADDRESS_TYPES = new StringDictionary();
+
+  /** Id used for null values */
+  public static final int NULL_ID = 0;
+
+  private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+  private volatile String[] values = new String[16];
+  private int size = 1; // Slot 0 holds null
+
+  /**
+   * Gets the id for a value, adding it to the dictionary if needed
+   *
+   * @param value the value to encode
+   * @return the value's id, or {@link #NULL_ID} for null
+   */
+  public int idOf(String value) {
+    if (value == null) {
+      return NULL_ID;
+    }
+
+    Integer id = ids.get(value);
+    if (id != null) {
+      return id;
+    }
+    return add(value);
+  }
+
+  /**
+   * Gets the value for an id
+   *
+   * @param id an id returned by {@link #idOf(String)}
+   * @return the value, or null for {@link #NULL_ID}
+   */
+  public String valueOf(int id) {
+    String[] current = values;
+    if (id < 0 || id >= current.length || (id != NULL_ID && current[id] == null)) {
+      throw new IllegalArgumentException("Unknown dictionary id: " + id);
+    }
+    return current[id];
+  }
+
+  /**
+   * Gets the number of distinct values, not counting null
+   *
+   * @return the number of encoded values
+   */
+  public synchronized int size() {
+    return size - 1;
+  }
+
+  private synchronized int add(String value) {
+    Integer existing = ids.get(value);
+    if (existing != null) {
+      return existing; // Added by another thread meanwhile
+    }
+
+    String[] current = values;
+    if (size == current.length) {
+      current = Arrays.copyOf(current, current.length * 2);
+    }
+    int id = size++;
+    current[id] = value;
+    values = current; // Publish the value before its id
+
+    ids.put(value, id);
+    return id;
+  }
+}
@@ -3,13 +3,38 @@ package br.com.devcoelho;
 import br.com.devcoelho.interfaces.BankInterface;
 import java.util.Date;
 
-/** Represents a transaction in the bank system */
-public class Transaction {
-  private TransactionType type;
-  private double amount;
-  private Date date;
-  private BankInterface sourceAccount;
-  private BankInterface destinationAccount;
+/**
+ * Represents a transaction in the bank system.
+ *
+ * <p>Transactions are immutable and only hold primitives: the amount in cents, the timestamp in
+ * epoch milliseconds, the type ordinal and the account numbers involved. They don't keep
+ * references to the accounts themselves, so a long history never pins other accounts in memory.
+ */
+public final class Transaction {
+
+  /** Account number used when a transaction has no source or destination account */
+  public static final int NO_ACCOUNT = 0;
+
+  private static final TransactionType[] TYPES = TransactionType.values();
+
+  private final long timestampMillis;
+  private final long amountCents;
+  private final byte type;
+  private final int sourceAccountNumber;
+  private final int destinationAccountNumber;
+
+  public Transaction(
+      TransactionType type,
+      long amountCents,
+      long timestampMillis,
+      int sourceAccountNumber,
+      int destinationAccountNumber) {
+    this.type = (byte) type.ordinal();
+    this.amountCents = amountCents;
+    this.timestampMillis = timestampMillis;
+    this.sourceAccountNumber = sourceAccountNumber;
+    this.destinationAccountNumber = destinationAccountNumber;
+  }
 
   public Transaction(
       TransactionType type,
@@ -17,51 +42,86 @@ public class Transaction {
       Date date,
       BankInterface sourceAccount,
       BankInterface destinationAccount) {
-    this.type = type;
-    this.amount = amount;
-    this.date = date;
-    this.sourceAccount = sourceAccount;
-    this.destinationAccount = destinationAccount;
+    this(
+        type,
+        toCents(amount),
+        date.getTime(),
+        accountNumberOf(sourceAccount),
+        accountNumberOf(destinationAccount));
+  }
+
+  /**
+   * Converts an amount in currency units to whole cents
+   *
+   * @param amount the amount (e.g. 12.34)
+   * @return the amount in cents, rounded to the nearest cent
+   */
+  public static long toCents(double amount) {
+    return Math.round(amount * 100);
+  }
+
+  /**
+   * Gets the type for a stored ordinal
+   *
+   * @param ordinal the ordinal of the transaction type
+   * @return the matching transaction type
+   */
+  static TransactionType typeOf(byte ordinal) {
+    return TYPES[ordinal];
+  }
+
+  static int accountNumberOf(BankInterface account) {
+    return (account instanceof BankAccount)
+        ? ((BankAccount) account).getAccountNumber()
+        : NO_ACCOUNT;
   }
 
   public TransactionType getType() {
-    return type;
+    return TYPES[type];
   }
 
-  public void setType(TransactionType type) {
-    this.type = type;
+  byte getTypeOrdinal() {
+    return type;
   }
 
   public double getAmount() {
-    return amount;
+    return amountCents / 100.0;
+  }
+
+  public long getAmountCents() {
+    return amountCents;
   }
 
   public Date getDate() {
-    return date;
+    return new Date(timestampMillis);
+  }
+
+  public long getTimestampMillis() {
+    return timestampMillis;
   }
 
-  public BankInterface getSourceAccount() {
-    return sourceAccount;
+  public int getSourceAccountNumber() {
+    return sourceAccountNumber;
   }
 
-  public BankInterface getDestinationAccount() {
-    return destinationAccount;
+  public int getDestinationAccountNumber() {
+    return destinationAccountNumber;
   }
 
-  public void setDestinationAccount(BankInterface destinationAccount) {
-    this.destinationAccount = destinationAccount;
+  public boolean hasDestinationAccount() {
+    return destinationAccountNumber != NO_ACCOUNT;
   }
 
   @Override
   public String toString() {
     String accountInfo = "";
 
-    if (type == TransactionType.TRANSFER && destinationAccount != null) {
-      accountInfo =
-          String.format(" to Account #%d", ((BankAccount) destinationAccount).getAccountNumber());
+    if (getType() == TransactionType.TRANSFER && hasDestinationAccount()) {
+      accountInfo = String.format(" to Account #%d", destinationAccountNumber);
     }
 
     return String.format(
-        "[%s] %s: $%.2f%s", date, type.getDescription(), Math.abs(amount), accountInfo);
+        "[%s] %s: $%.2f%s",
+        getDate(), getType().getDescription(), Math.abs(getAmount()), accountInfo);
   }
 }
@@ -0,0 +1,159 @@
+package br.com.devcoelho;
+
+import java.util.Arrays;
+
+/**
+ * Columnar storage for transactions.
+ *
+ * <p>Each field of {@link Transaction} lives in its own growable primitive array, so a stored
+ * transaction costs 25 bytes (timestamp, cents, type, source and destination account numbers)
+ * with no object header or references. {@link #get(int)} materializes a short-lived {@link
+ * Transaction} on demand, and the primitive accessors allow scans without allocating at all.
+ */
+public class TransactionColumns {
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private long[] timestamps;
+  private long[] amountsCents;
+  private byte[] types;
+  private int[] sourceAccounts;
+  private int[] destinationAccounts;
+  private int size;
+
+  public TransactionColumns() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public TransactionColumns(int initialCapacity) {
+    if (initialCapacity < 0) {
+      throw new IllegalArgumentException("Capacity cannot be negative");
+    }
+    this.timestamps = new long[initialCapacity];
+    this.amountsCents = new long[initialCapacity];
+    this.types = new byte[initialCapacity];
+    this.sourceAccounts = new int[initialCapacity];
+    this.destinationAccounts = new int[initialCapacity];
+  }
+
+  /**
+   * Gets the number of stored transactions
+   *
+   * @return the number of rows
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Appends a transaction, copying its fields into the columns
+   *
+   * @param transaction the transaction to store
+   */
+  public void add(Transaction transaction) {
+    add(
+        transaction.getType(),
+        transaction.getAmountCents(),
+        transaction.getTimestampMillis(),
+        transaction.getSourceAccountNumber(),
+        transaction.getDestinationAccountNumber());
+  }
+
+  /**
+   * Appends a transaction from its raw fields without allocating a Transaction
+   *
+   * @param type the transaction type
+   * @param amountCents the signed amount in cents
+   * @param timestampMillis the timestamp in epoch milliseconds
+   * @param sourceAccountNumber the source account number
+   * @param destinationAccountNumber the destination account number, or {@link
+   *     Transaction#NO_ACCOUNT}
+   */
+  public void add(
+      TransactionType type,
+      long amountCents,
+      long timestampMillis,
+      int sourceAccountNumber,
+      int destinationAccountNumber) {
+    if (size == timestamps.length) {
+      grow(size + 1);
+    }
+
+    timestamps[size] = timestampMillis;
+    amountsCents[size] = amountCents;
+    types[size] = (byte) type.ordinal();
+    sourceAccounts[size] = sourceAccountNumber;
+    destinationAccounts[size] = destinationAccountNumber;
+    size++;
+  }
+
+  /**
+   * Materializes the transaction stored at the given row
+   *
+   * @param index the row index
+   * @return a Transaction holding the row's values
+   */
+  public Transaction get(int index) {
+    checkIndex(index);
+    return new Transaction(
+        Transaction.typeOf(types[index]),
+        amountsCents[index],
+        timestamps[index],
+        sourceAccounts[index],
+        destinationAccounts[index]);
+  }
+
+  public long getTimestampMillis(int index) {
+    checkIndex(index);
+    return timestamps[index];
+  }
+
+  public long getAmountCents(int index) {
+    checkIndex(index);
+    return amountsCents[index];
+  }
+
+  public TransactionType getType(int index) {
+    checkIndex(index);
+    return Transaction.typeOf(types[index]);
+  }
+
+  public int getSourceAccountNumber(int index) {
+    checkIndex(index);
+    return sourceAccounts[index];
+  }
+
+  public int getDestinationAccountNumber(int index) {
+    checkIndex(index);
+    return destinationAccounts[index];
+  }
+
+  /**
+   * Makes room for at least the given number of rows
+   *
+   * @param minCapacity the number of rows to hold without growing
+   */
+  public void ensureCapacity(int minCapacity) {
+    if (minCapacity > timestamps.length) {
+      grow(minCapacity);
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  private void grow(int minCapacity) {
+    int newCapacity =
+        Math.max(
+            minCapacity,
+            Math.max(DEFAULT_CAPACITY, timestamps.length + (timestamps.length >> 1)));
+    timestamps = Arrays.copyOf(timestamps, newCapacity);
+    amountsCents = Arrays.copyOf(amountsCents, newCapacity);
+    types = Arrays.copyOf(types, newCapacity);
+    sourceAccounts = Arrays.copyOf(sourceAccounts, newCapacity);
+    destinationAccounts = Arrays.copyOf(destinationAccounts, newCapacity);
+  }
+}
@@ -0,0 +1,131 @@
+package br.com.devcoelho;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Per-account transaction history stored column by column.
+ *
+ * <p>Behaves like an append-only {@code List<Transaction>}, so it can be used wherever the history
+ * is read as a list, but rows are kept in a {@link TransactionColumns} rather than as one object
+ * per transaction. Appending through {@link #append} doesn't allocate, and the primitive accessors
+ * let statements, charts and reports scan the columns sequentially. {@link #view()} hands those
+ * accessors out without the ability to append.
+ */
+public class TransactionLedger extends AbstractList<Transaction> implements RandomAccess {
+
+  private final TransactionColumns columns;
+  private final LedgerView view = new View();
+
+  public TransactionLedger() {
+    this.columns = new TransactionColumns();
+  }
+
+  public TransactionLedger(int initialCapacity) {
+    this.columns = new TransactionColumns(initialCapacity);
+  }
+
+  /**
+   * Gets a read-only view of the ledger's columns
+   *
+   * @return a live view, shared by every caller
+   */
+  public LedgerView view() {
+    return view;
+  }
+
+  /**
+   * Appends a transaction from its raw fields
+   *
+   * @param type the transaction type
+   * @param amountCents the signed amount in cents
+   * @param timestampMillis the timestamp in epoch milliseconds
+   * @param sourceAccountNumber the source account number
+   * @param destinationAccountNumber the destination account number, or {@link
+   *     Transaction#NO_ACCOUNT}
+   */
+  public void append(
+      TransactionType type,
+      long amountCents,
+      long timestampMillis,
+      int sourceAccountNumber,
+      int destinationAccountNumber) {
+    columns.add(type, amountCents, timestampMillis, sourceAccountNumber, destinationAccountNumber);
+    modCount++;
+  }
+
+  /**
+   * Makes room for at least the given number of transactions, e.g. before a bulk append
+   *
+   * @param minCapacity the number of transactions to hold without growing
+   */
+  public void ensureCapacity(int minCapacity) {
+    columns.ensureCapacity(minCapacity);
+  }
+
+  @Override
+  public boolean add(Transaction transaction) {
+    columns.add(transaction);
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public Transaction get(int index) {
+    return columns.get(index);
+  }
+
+  @Override
+  public int size() {
+    return columns.size();
+  }
+
+  public long getTimestampMillis(int index) {
+    return columns.getTimestampMillis(index);
+  }
+
+  public long getAmountCents(int index) {
+    return columns.getAmountCents(index);
+  }
+
+  public TransactionType getType(int index) {
+    return columns.getType(index);
+  }
+
+  public int getDestinationAccountNumber(int index) {
+    return columns.getDestinationAccountNumber(index);
+  }
+
+  /** Read-only view that delegates to the columns */
+  private final class View implements LedgerView {
+    @Override
+    public int size() {
+      return columns.size();
+    }
+
+    @Override
+    public TransactionType getType(int index) {
+      return columns.getType(index);
+    }
+
+    @Override
+    public long getAmountCents(int index) {
+      return columns.getAmountCents(index);
+    }
+
+    @Override
+    public long getTimestampMillis(int index) {
+      return columns.getTimestampMillis(index);
+    }
+
+    @Override
+    public int getDestinationAccountNumber(int index) {
+      return columns.getDestinationAccountNumber(index);
+    }
+
+    @Override
+    public Transaction get(int index) {
+      return columns.get(index);
+    }
+  }
+}
@@ -0,0 +1,8 @@
+package br.com.devcoelho.exceptions;
+
+/** Exception thrown when calls to a failing external service are short-circuited */
+public class ServiceUnavailableException extends RuntimeException {
+  public ServiceUnavailableException(String message) {
+    super(message);
+  }
+}
@@ -3,17 +3,38 @@ package br.com.devcoelho.persistence;
 import br.com.devcoelho.*;
 import br.com.devcoelho.exceptions.InsufficientBalanceException;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
-
-/** Handles saving and loading banking data to and from text files */
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handles saving and loading banking data to and from text files.
+ *
+ * <p>A save of accounts is a snapshot. Its account, investment and transaction files start with a
+ * {@code SNAPSHOT} line holding the snapshot id; the account file's line also holds the length of
+ * the posting log at the time. The files are written under temporary names and renamed into
+ * place, account file first: that rename commits the snapshot. If the process stops before the
+ * other files are renamed, loading finishes the renames from the temporary files that carry the
+ * committed id. Loading replays only the posting batches logged after the recorded length.
+ */
 public class FilePersistence {
   private static final String CLIENTS_FILE = "clients.txt";
   private static final String ACCOUNTS_FILE = "accounts.txt";
   private static final String INVESTMENTS_FILE = "investments.txt";
   private static final String TRANSACTIONS_FILE = "transactions.txt";
-  private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+  private static final String SEQUENCE_FILE = "sequence.txt";
+  private static final String POSTINGS_FILE = "postings.txt";
+  private static final String SNAPSHOT = "SNAPSHOT";
+  private static final String CHECKPOINT = "CHECKPOINT";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final long NO_SNAPSHOT = -1;
+  private static final AtomicLong SNAPSHOT_IDS = new AtomicLong();
+  // SimpleDateFormat isn't thread-safe, and shards save and load on their own threads
+  private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT =
+      ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"));
 
   /**
    * Saves all clients to a text file
@@ -136,11 +157,76 @@ public class FilePersistence {
    * Saves all accounts to text files
    *
    * @param accounts list of accounts to save
+   * @return true if the accounts were saved, false if nothing was replaced
+   */
+  public static boolean saveAccounts(List<BankAccount> accounts) {
+    return saveAccounts(accounts, "");
+  }
+
+  /**
+   * Saves accounts to text files whose names start with the given prefix
+   *
+   * @param accounts list of accounts to save
+   * @param filePrefix prefix for the account, investment and transaction file names
+   * @return true if the accounts were saved, false if nothing was replaced
+   */
+  public static boolean saveAccounts(List<BankAccount> accounts, String filePrefix) {
+    long now = System.currentTimeMillis();
+    long snapshotId = SNAPSHOT_IDS.accumulateAndGet(now, (last, time) -> Math.max(last + 1, time));
+    return saveAccounts(accounts, filePrefix, snapshotId);
+  }
+
+  /**
+   * Saves accounts as the snapshot with the given id, e.g. one a shard has journaled
+   *
+   * @param accounts list of accounts to save
+   * @param filePrefix prefix for the account, investment and transaction file names
+   * @param snapshotId the id recorded in the files; must differ from the last saved one
+   * @return true if the accounts were saved, false if nothing was replaced
+   */
+  public static boolean saveAccounts(
+      List<BankAccount> accounts, String filePrefix, long snapshotId) {
+    // Posting batches can't be logged or applied while the balances and log length are read
+    synchronized (PostingBatch.class) {
+      long postingLogLength = new File(filePrefix + POSTINGS_FILE).length();
+      if (!writeAccounts(accounts, filePrefix, snapshotId, postingLogLength)) {
+        return false;
+      }
+      checkpointPostings(filePrefix, snapshotId);
+    }
+    saveAccountSequence(filePrefix);
+    return true;
+  }
+
+  /**
+   * Gets the id of the snapshot the saved accounts belong to
+   *
+   * @param filePrefix prefix of the account files
+   * @return the snapshot id, or -1 if there are no saved accounts or they predate snapshot ids
    */
-  public static void saveAccounts(List<BankAccount> accounts) {
-    try (PrintWriter accountWriter = new PrintWriter(new FileWriter(ACCOUNTS_FILE));
-        PrintWriter investmentWriter = new PrintWriter(new FileWriter(INVESTMENTS_FILE));
-        PrintWriter transactionWriter = new PrintWriter(new FileWriter(TRANSACTIONS_FILE))) {
+  public static long loadSnapshotId(String filePrefix) {
+    return snapshotId(new File(filePrefix + ACCOUNTS_FILE));
+  }
+
+  /**
+   * Writes the snapshot's files under temporary names, then renames them into place, committing
+   * the snapshot with the account file's rename
+   *
+   * @return true if the account file was replaced
+   */
+  private static boolean writeAccounts(
+      List<BankAccount> accounts, String filePrefix, long snapshotId, long postingLogLength) {
+    File accountFile = new File(filePrefix + ACCOUNTS_FILE + TEMP_SUFFIX);
+    File investmentFile = new File(filePrefix + INVESTMENTS_FILE + TEMP_SUFFIX);
+    File transactionFile = new File(filePrefix + TRANSACTIONS_FILE + TEMP_SUFFIX);
+
+    try (PrintWriter accountWriter = new PrintWriter(new FileWriter(accountFile));
+        PrintWriter investmentWriter = new PrintWriter(new FileWriter(investmentFile));
+        PrintWriter transactionWriter = new PrintWriter(new FileWriter(transactionFile))) {
+
+      accountWriter.println(SNAPSHOT + "|" + snapshotId + "|" + postingLogLength);
+      investmentWriter.println(SNAPSHOT + "|" + snapshotId);
+      transactionWriter.println(SNAPSHOT + "|" + snapshotId);
 
       for (BankAccount account : accounts) {
         // Save basic account information
@@ -163,7 +249,7 @@ public class FilePersistence {
                 + "|"
                 + interestRate
                 + "|"
-                + DATE_FORMAT.format(account.getOpeningDate()));
+                + DATE_FORMAT.get().format(account.getOpeningDate()));
 
         // Save investments if this is an investment account
         if (account instanceof BankInvestmentAccount) {
@@ -188,11 +274,8 @@ public class FilePersistence {
         for (Transaction transaction : account.getTransactionHistory()) {
           String destAccountNumber = "";
 
-          if (transaction.getDestinationAccount() != null
-              && transaction.getDestinationAccount() instanceof BankAccount) {
-            destAccountNumber =
-                String.valueOf(
-                    ((BankAccount) transaction.getDestinationAccount()).getAccountNumber());
+          if (transaction.hasDestinationAccount()) {
+            destAccountNumber = String.valueOf(transaction.getDestinationAccountNumber());
           }
 
           transactionWriter.println(
@@ -202,15 +285,284 @@ public class FilePersistence {
                   + "|"
                   + transaction.getAmount()
                   + "|"
-                  + DATE_FORMAT.format(transaction.getDate())
+                  + DATE_FORMAT.get().format(transaction.getDate())
                   + "|"
                   + destAccountNumber);
         }
       }
 
-      System.out.println("Accounts saved successfully to text files");
+      // PrintWriter doesn't throw; a failed write only shows up here
+      if (accountWriter.checkError()
+          || investmentWriter.checkError()
+          || transactionWriter.checkError()) {
+        throw new IOException("could not write the account files");
+      }
+    } catch (IOException e) {
+      System.err.println("Error saving accounts: " + e.getMessage());
+      return false;
+    }
+
+    try {
+      moveIntoPlace(accountFile, filePrefix + ACCOUNTS_FILE);
     } catch (IOException e) {
       System.err.println("Error saving accounts: " + e.getMessage());
+      return false;
+    }
+
+    // Committed; if these renames don't happen, loading finishes them
+    try {
+      moveIntoPlace(investmentFile, filePrefix + INVESTMENTS_FILE);
+      moveIntoPlace(transactionFile, filePrefix + TRANSACTIONS_FILE);
+    } catch (IOException e) {
+      System.err.println("Error renaming account files: " + e.getMessage());
+    }
+    System.out.println("Accounts saved successfully to text files");
+    return true;
+  }
+
+  private static void moveIntoPlace(File file, String fileName) throws IOException {
+    Files.move(
+        file.toPath(),
+        new File(fileName).toPath(),
+        StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Reads the {@code SNAPSHOT} line a file starts with
+   *
+   * @return the line's fields, or null if the file is missing or has no such line
+   */
+  private static String[] readSnapshotHeader(File file) {
+    if (!file.exists()) {
+      return null;
+    }
+
+    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+      String line = reader.readLine();
+      String[] parts = (line != null) ? line.split("\\|") : null;
+      return (parts != null && parts.length >= 2 && parts[0].equals(SNAPSHOT)) ? parts : null;
+    } catch (IOException e) {
+      System.err.println("Error reading " + file + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Makes a snapshot file match the committed account file: if the save stopped after the account
+   * file was renamed into place, the file's temporary copy holds the committed snapshot
+   */
+  private static void completeSnapshotFile(String fileName, long snapshotId) {
+    if (snapshotId == NO_SNAPSHOT || snapshotId(new File(fileName)) == snapshotId) {
+      return;
+    }
+
+    File temporary = new File(fileName + TEMP_SUFFIX);
+    if (snapshotId(temporary) == snapshotId) {
+      try {
+        moveIntoPlace(temporary, fileName);
+      } catch (IOException e) {
+        System.err.println("Error completing " + fileName + ": " + e.getMessage());
+      }
+    }
+  }
+
+  private static long snapshotId(File file) {
+    String[] header = readSnapshotHeader(file);
+    try {
+      return (header != null) ? Long.parseLong(header[1]) : NO_SNAPSHOT;
+    } catch (NumberFormatException e) {
+      return NO_SNAPSHOT;
+    }
+  }
+
+  /**
+   * Appends a posting batch to the posting log in a single write
+   *
+   * @param batch the batch to log
+   * @param filePrefix prefix of the account files the batch's accounts are saved to
+   * @return true if the whole batch was written, false otherwise
+   */
+  public static boolean appendPostingBatch(PostingBatch batch, String filePrefix) {
+    StringBuilder lines = new StringBuilder();
+    String timestamp = DATE_FORMAT.get().format(new Date());
+    lines
+        .append("BATCH|")
+        .append(batch.getBatchId())
+        .append('|')
+        .append(batch.getPostings().size())
+        .append('|')
+        .append(timestamp)
+        .append(System.lineSeparator());
+
+    for (PostingBatch.Posting posting : batch.getPostings()) {
+      lines
+          .append("POSTING|")
+          .append(batch.getBatchId())
+          .append('|')
+          .append(posting.getAccountNumber())
+          .append('|')
+          .append(posting.getType())
+          .append('|')
+          .append(posting.getAmount())
+          .append(System.lineSeparator());
+    }
+
+    try (Writer writer = new FileWriter(filePrefix + POSTINGS_FILE, true)) {
+      writer.write(lines.toString());
+      return true;
+    } catch (IOException e) {
+      System.err.println("Error logging posting batch: " + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Marks where the committed snapshot's coverage of the posting log ends. The account file
+   * records the same point as a length, so a missing checkpoint, e.g. after a crash right after
+   * the commit, loses nothing
+   *
+   * @param filePrefix prefix of the account files that were saved
+   * @param snapshotId the id of the committed snapshot
+   */
+  private static void checkpointPostings(String filePrefix, long snapshotId) {
+    File postingsFile = new File(filePrefix + POSTINGS_FILE);
+    if (!postingsFile.exists()) {
+      return; // Nothing logged yet
+    }
+
+    try (Writer writer = new FileWriter(postingsFile, true)) {
+      writer.write(
+          CHECKPOINT
+              + "|"
+              + snapshotId
+              + "|"
+              + DATE_FORMAT.get().format(new Date())
+              + System.lineSeparator());
+    } catch (IOException e) {
+      System.err.println("Error checkpointing posting log: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Replays the posting batches the saved accounts don't include: those logged after the length
+   * recorded in the account file, or for account files without one, after the last checkpoint.
+   * Batches whose lines weren't all written were never applied, and are skipped
+   *
+   * @param accountMap map of accounts by account number
+   * @param filePrefix prefix for the posting log file name
+   */
+  private static void replayPostings(Map<Integer, BankAccount> accountMap, String filePrefix) {
+    File postingsFile = new File(filePrefix + POSTINGS_FILE);
+    if (!postingsFile.exists()) {
+      return;
+    }
+
+    String[] snapshot = readSnapshotHeader(new File(filePrefix + ACCOUNTS_FILE));
+    boolean legacy = snapshot == null || snapshot.length < 3;
+    List<String> uncovered = new ArrayList<>();
+    try (FileInputStream input = new FileInputStream(postingsFile);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input))) {
+      long coveredLength = legacy ? 0 : Long.parseLong(snapshot[2]);
+      if (coveredLength > postingsFile.length()) {
+        System.err.println("Posting log " + postingsFile + " is shorter than the saved accounts");
+        return;
+      }
+      input.getChannel().position(coveredLength);
+
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(CHECKPOINT + "|")) {
+          if (legacy) {
+            uncovered.clear();
+          }
+        } else {
+          uncovered.add(line);
+        }
+      }
+    } catch (IOException | NumberFormatException e) {
+      System.err.println("Error reading posting log: " + e.getMessage());
+      return;
+    }
+
+    int replayed = 0;
+    for (int i = 0; i < uncovered.size(); i++) {
+      String[] header = uncovered.get(i).split("\\|");
+      if (header.length < 4 || !header[0].equals("BATCH")) {
+        continue;
+      }
+
+      try {
+        int count = Integer.parseInt(header[2]);
+        long timestampMillis = DATE_FORMAT.get().parse(header[3]).getTime();
+        PostingBatch batch = new PostingBatch(header[1]);
+        int read = 0;
+        while (read < count && i + 1 < uncovered.size()) {
+          String[] parts = uncovered.get(i + 1).split("\\|");
+          if (parts.length < 5 || !parts[0].equals("POSTING") || !parts[1].equals(header[1])) {
+            break;
+          }
+          int accountNumber = Integer.parseInt(parts[2]);
+          double amount = Double.parseDouble(parts[4]);
+          if (TransactionType.valueOf(parts[3]) == TransactionType.WITHDRAWAL) {
+            batch.addWithdrawal(accountNumber, amount);
+          } else {
+            batch.addDeposit(accountNumber, amount);
+          }
+          read++;
+          i++;
+        }
+
+        if (read < count) {
+          System.err.println("Skipping incomplete posting batch " + header[1]);
+          continue;
+        }
+        batch.replay(accountMap.values(), timestampMillis);
+        replayed++;
+      } catch (ParseException | RuntimeException e) {
+        System.err.println("Skipping posting batch " + header[1] + ": " + e.getMessage());
+      }
+    }
+
+    if (replayed > 0) {
+      System.out.println("Replayed " + replayed + " posting batches from " + postingsFile);
+    }
+  }
+
+  /**
+   * Saves the account number high-water mark so numbers are never reused after a restart. Each
+   * set of account files gets its own sequence file, so shards saving in parallel don't write
+   * the same file
+   *
+   * @param filePrefix prefix of the account files the mark is saved with
+   */
+  private static void saveAccountSequence(String filePrefix) {
+    try (PrintWriter writer = new PrintWriter(new FileWriter(filePrefix + SEQUENCE_FILE))) {
+      writer.println(BankAccount.getAccountNumberAllocator().getHighWaterMark());
+    } catch (IOException e) {
+      System.err.println("Error saving account sequence: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Restores the account number high-water mark saved by {@link #saveAccountSequence(String)}
+   *
+   * @param filePrefix prefix of the account files the mark was saved with
+   */
+  private static void loadAccountSequence(String filePrefix) {
+    File sequenceFile = new File(filePrefix + SEQUENCE_FILE);
+    if (!sequenceFile.exists()) {
+      return;
+    }
+
+    try (BufferedReader reader = new BufferedReader(new FileReader(sequenceFile))) {
+      String line = reader.readLine();
+      if (line != null && !line.trim().isEmpty()) {
+        int highWaterMark = Integer.parseInt(line.trim());
+        BankAccount.getAccountNumberAllocator().advancePast(highWaterMark - 1);
+      }
+    } catch (IOException | NumberFormatException e) {
+      System.err.println("Error loading account sequence: " + e.getMessage());
     }
   }
 
@@ -222,6 +574,19 @@ public class FilePersistence {
    * @return list of loaded accounts
    */
   public static List<BankAccount> loadAccounts(List<Person> clients, Bank bank) {
+    return loadAccounts(clients, bank, "");
+  }
+
+  /**
+   * Loads accounts from text files whose names start with the given prefix
+   *
+   * @param clients list of clients for account association
+   * @param bank the bank instance for account creation
+   * @param filePrefix prefix for the account, investment and transaction file names
+   * @return list of loaded accounts
+   */
+  public static List<BankAccount> loadAccounts(
+      List<Person> clients, Bank bank, String filePrefix) {
     Map<Integer, BankAccount> accountMap = new HashMap<>();
     Map<String, Person> clientByCpfMap = new HashMap<>();
 
@@ -229,18 +594,26 @@ public class FilePersistence {
     for (Person client : clients) {
       clientByCpfMap.put(client.getCpf(), client);
       // Add client to bank if not already added
-      if (!bank.getClients().contains(client)) {
+      if (bank.findClientByCpf(client.getCpf()) == null) {
         bank.addClient(client);
       }
     }
 
+    // Restore the account number sequence before any account is created
+    loadAccountSequence(filePrefix);
+
     // Load base account information
-    File accountFile = new File(ACCOUNTS_FILE);
+    File accountFile = new File(filePrefix + ACCOUNTS_FILE);
     if (!accountFile.exists()) {
       System.out.println("No accounts file found. Starting with empty account list.");
       return new ArrayList<>();
     }
 
+    // Finish a save that stopped after committing the account file
+    long snapshotId = loadSnapshotId(filePrefix);
+    completeSnapshotFile(filePrefix + INVESTMENTS_FILE, snapshotId);
+    completeSnapshotFile(filePrefix + TRANSACTIONS_FILE, snapshotId);
+
     try (BufferedReader reader = new BufferedReader(new FileReader(accountFile))) {
       String line;
       while ((line = reader.readLine()) != null) {
@@ -253,7 +626,7 @@ public class FilePersistence {
           String clientCpf = parts[3];
           String accountType = parts[4];
           double interestRate = Double.parseDouble(parts[5]);
-          Date openingDate = DATE_FORMAT.parse(parts[6]);
+          Date openingDate = DATE_FORMAT.get().parse(parts[6]);
 
           // Find client
           Person client = clientByCpfMap.get(clientCpf);
@@ -266,45 +639,27 @@ public class FilePersistence {
             continue;
           }
 
-          // Create appropriate account type
+          // Restore the appropriate account type under its saved number; restoring doesn't draw
+          // numbers from the allocator
           BankAccount account;
           if (accountType.equals("INVESTMENT")) {
-            account = new BankInvestmentAccount(client);
+            account = new BankInvestmentAccount(client, accountNumber, openingDate);
             ((BankInvestmentAccount) account).setInterestRate(interestRate);
+            ((BankInvestmentAccount) account)
+                .setPortfolioValuation(bank.getPortfolioValuation());
           } else {
-            account = new BankSimpleAccount(client);
+            account = new BankSimpleAccount(client, accountNumber, openingDate);
           }
 
-          // Set account properties using reflection
+          // Set agency (shared through the agency dictionary)
+          account.setAgency(agency);
+
+          // Set balance using reflection
           try {
-            // Set account number
-            java.lang.reflect.Field accountNumberField =
-                BankAccount.class.getDeclaredField("accountNumber");
-            accountNumberField.setAccessible(true);
-            accountNumberField.set(account, accountNumber);
-
-            // Set agency
-            java.lang.reflect.Field agencyField = BankAccount.class.getDeclaredField("agency");
-            agencyField.setAccessible(true);
-            agencyField.set(account, agency);
-
-            // Set balance
             java.lang.reflect.Field balanceField =
                 BankAccount.class.getDeclaredField("amountStored");
             balanceField.setAccessible(true);
             balanceField.set(account, balance);
-
-            // Set opening date
-            java.lang.reflect.Field openingDateField =
-                BankAccount.class.getDeclaredField("openingDate");
-            openingDateField.setAccessible(true);
-            openingDateField.set(account, openingDate);
-
-            // Set empty transaction history list
-            java.lang.reflect.Field transactionHistoryField =
-                BankAccount.class.getDeclaredField("transactionHistory");
-            transactionHistoryField.setAccessible(true);
-            transactionHistoryField.set(account, new ArrayList<Transaction>());
           } catch (Exception e) {
             System.err.println("Error setting account fields: " + e.getMessage());
             continue;
@@ -314,13 +669,24 @@ public class FilePersistence {
         }
       }
 
-      System.out.println("Loaded " + accountMap.size() + " accounts from " + ACCOUNTS_FILE);
+      System.out.println(
+          "Loaded " + accountMap.size() + " accounts from " + filePrefix + ACCOUNTS_FILE);
+
+      // New accounts must be numbered after every restored one, even without a sequence file
+      int highestAccountNumber = 0;
+      for (int accountNumber : accountMap.keySet()) {
+        highestAccountNumber = Math.max(highestAccountNumber, accountNumber);
+      }
+      BankAccount.getAccountNumberAllocator().advancePast(highestAccountNumber);
 
       // Load investments for investment accounts
-      loadInvestments(accountMap);
+      loadInvestments(accountMap, filePrefix);
 
       // Load transactions for all accounts
-      loadTransactions(accountMap);
+      loadTransactions(accountMap, filePrefix);
+
+      // Apply the batches posted since the accounts were saved
+      replayPostings(accountMap, filePrefix);
 
     } catch (IOException | ParseException e) {
       System.err.println("Error loading accounts: " + e.getMessage());
@@ -333,9 +699,10 @@ public class FilePersistence {
    * Loads investments for investment accounts
    *
    * @param accountMap map of accounts by account number
+   * @param filePrefix prefix for the investment file name
    */
-  private static void loadInvestments(Map<Integer, BankAccount> accountMap) {
-    File investmentFile = new File(INVESTMENTS_FILE);
+  private static void loadInvestments(Map<Integer, BankAccount> accountMap, String filePrefix) {
+    File investmentFile = new File(filePrefix + INVESTMENTS_FILE);
     if (!investmentFile.exists()) {
       return;
     }
@@ -390,9 +757,10 @@ public class FilePersistence {
    * Loads transactions for all accounts
    *
    * @param accountMap map of accounts by account number
+   * @param filePrefix prefix for the transaction file name
    */
-  private static void loadTransactions(Map<Integer, BankAccount> accountMap) {
-    File transactionFile = new File(TRANSACTIONS_FILE);
+  private static void loadTransactions(Map<Integer, BankAccount> accountMap, String filePrefix) {
+    File transactionFile = new File(filePrefix + TRANSACTIONS_FILE);
     if (!transactionFile.exists()) {
       return;
     }
@@ -406,31 +774,31 @@ public class FilePersistence {
           int accountNumber = Integer.parseInt(parts[0]);
           TransactionType type = TransactionType.valueOf(parts[1]);
           double amount = Double.parseDouble(parts[2]);
-          Date date = DATE_FORMAT.parse(parts[3]);
+          Date date = DATE_FORMAT.get().parse(parts[3]);
 
           // Get destination account if available
-          BankAccount destAccount = null;
+          int destAccountNumber = Transaction.NO_ACCOUNT;
           if (parts.length >= 5 && !parts[4].isEmpty()) {
-            int destAccountNumber = Integer.parseInt(parts[4]);
-            destAccount = accountMap.get(destAccountNumber);
+            destAccountNumber = Integer.parseInt(parts[4]);
           }
 
           BankAccount account = accountMap.get(accountNumber);
           if (account != null) {
-            // Create and add transaction
-            Transaction transaction = new Transaction(type, amount, date, account, destAccount);
-
-            // Add transaction to account's history
+            // Append transaction to account's history
             try {
               java.lang.reflect.Field transactionHistoryField =
                   BankAccount.class.getDeclaredField("transactionHistory");
               transactionHistoryField.setAccessible(true);
 
-              @SuppressWarnings("unchecked")
-              List<Transaction> transactions =
-                  (List<Transaction>) transactionHistoryField.get(account);
+              TransactionLedger transactions =
+                  (TransactionLedger) transactionHistoryField.get(account);
 
-              transactions.add(transaction);
+              transactions.append(
+                  type,
+                  Transaction.toCents(amount),
+                  date.getTime(),
+                  accountNumber,
+                  destAccountNumber);
             } catch (Exception e) {
               System.err.println("Error adding transaction: " + e.getMessage());
             }
@@ -0,0 +1,129 @@
+package br.com.devcoelho.server;
+
+import br.com.devcoelho.Bank;
+import br.com.devcoelho.BankAccount;
+import br.com.devcoelho.BankInvestmentAccount;
+import br.com.devcoelho.exceptions.InvalidOperationException;
+import java.io.IOException;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Account endpoints.
+ *
+ * <ul>
+ *   <li>{@code POST /accounts} with {@code cpf} and {@code type} (SIMPLE or INVESTMENT)
+ *   <li>{@code GET /accounts/{number}}
+ *   <li>{@code POST /accounts/{number}/deposit} and {@code /withdraw} with {@code amount}
+ *   <li>{@code POST /accounts/{number}/transfer} with {@code to} and {@code amount}
+ *   <li>{@code GET /accounts/{number}/statement}, optionally with {@code ?limit=}
+ *   <li>{@code GET /accounts/{number}/investments}
+ *   <li>{@code POST /accounts/{number}/investments} with {@code name}, {@code amount} and {@code
+ *       rate}
+ *   <li>{@code DELETE /accounts/{number}/investments/{name}} to liquidate an investment
+ * </ul>
+ */
+class AccountHandler extends JsonHandler {
+
+  private static final int DEFAULT_STATEMENT_LIMIT = 100;
+
+  private final BankOperations operations;
+
+  AccountHandler(BankOperations operations) {
+    this.operations = operations;
+  }
+
+  @Override
+  protected JsonResponse route(Request request) throws IOException {
+    List<String> path = request.getPath();
+    String method = request.getMethod();
+
+    if (path.isEmpty()) {
+      if (!method.equals("POST")) {
+        return JsonResponse.notFound();
+      }
+      JSONObject body = request.readBody();
+      Bank.AccountType type = Bank.AccountType.valueOf(body.optString("type", "SIMPLE"));
+      int accountNumber = operations.openAccount(body.getString("cpf"), type);
+      return JsonResponse.created(operations.read(accountNumber, JsonViews::account));
+    }
+
+    int accountNumber = request.getAccountNumber(0);
+    String action = (path.size() > 1) ? path.get(1) : "";
+
+    switch (method + " " + action) {
+      case "GET ":
+        return JsonResponse.ok(operations.read(accountNumber, JsonViews::account));
+      case "POST deposit":
+        operations.deposit(accountNumber, amount(request.readBody(), "amount"));
+        return JsonResponse.ok(operations.read(accountNumber, JsonViews::account));
+      case "POST withdraw":
+        operations.withdraw(accountNumber, amount(request.readBody(), "amount"));
+        return JsonResponse.ok(operations.read(accountNumber, JsonViews::account));
+      case "POST transfer":
+        JSONObject transfer = request.readBody();
+        operations.transfer(accountNumber, transfer.getInt("to"), amount(transfer, "amount"));
+        return JsonResponse.ok(operations.read(accountNumber, JsonViews::account));
+      case "GET statement":
+        int limit = parseLimit(request.getQueryParameter("limit"));
+        return JsonResponse.ok(
+            operations.read(accountNumber, account -> JsonViews.statement(account, limit)));
+      case "GET investments":
+        return JsonResponse.ok(operations.read(accountNumber, AccountHandler::investments));
+      case "POST investments":
+        JSONObject investment = request.readBody();
+        operations.createInvestment(
+            accountNumber,
+            investment.getString("name"),
+            amount(investment, "amount"),
+            rate(investment, "rate"));
+        return JsonResponse.created(operations.read(accountNumber, AccountHandler::investments));
+      case "DELETE investments":
+        if (path.size() != 3) {
+          return JsonResponse.notFound();
+        }
+        double returned = operations.liquidateInvestment(accountNumber, path.get(2));
+        return JsonResponse.ok(new JSONObject().put("returnedAmount", returned));
+      default:
+        return JsonResponse.notFound();
+    }
+  }
+
+  private static JSONArray investments(BankAccount account) {
+    if (!(account instanceof BankInvestmentAccount)) {
+      throw new InvalidOperationException(
+          "Account #" + account.getAccountNumber() + " is not an investment account");
+    }
+    return JsonViews.investments((BankInvestmentAccount) account);
+  }
+
+  /** Reads an amount, which must be a positive finite number; NaN would slip past balance checks */
+  private static double amount(JSONObject body, String key) {
+    double value = body.getDouble(key);
+    if (!Double.isFinite(value) || value <= 0) {
+      throw new IllegalArgumentException("Invalid " + key + ": must be a positive number");
+    }
+    return value;
+  }
+
+  /** Reads an interest rate, which must be a finite number that isn't negative */
+  private static double rate(JSONObject body, String key) {
+    double value = body.getDouble(key);
+    if (!Double.isFinite(value) || value < 0) {
+      throw new IllegalArgumentException("Invalid " + key + ": must not be negative");
+    }
+    return value;
+  }
+
+  private static int parseLimit(String limit) {
+    if (limit == null) {
+      return DEFAULT_STATEMENT_LIMIT;
+    }
+    try {
+      return Math.max(0, Integer.parseInt(limit));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid limit: " + limit);
+    }
+  }
+}
@@ -0,0 +1,279 @@
+package br.com.devcoelho.server;
+
+import br.com.devcoelho.Address;
+import br.com.devcoelho.AddressType;
+import br.com.devcoelho.Bank;
+import br.com.devcoelho.BankAccount;
+import br.com.devcoelho.BankInvestmentAccount;
+import br.com.devcoelho.Person;
+import br.com.devcoelho.exceptions.InvalidAccountException;
+import br.com.devcoelho.exceptions.InvalidOperationException;
+import br.com.devcoelho.persistence.FilePersistence;
+import br.com.devcoelho.service.ViaCepService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+
+/**
+ * Thread-safe facade over a {@link Bank} and its accounts, used by the HTTP server.
+ *
+ * <p>Accounts aren't thread-safe on their own, so every operation on an account runs while holding
+ * that account's {@link BankAccount#getLock() lock}, the same lock posting batches take. Transfers
+ * lock both accounts in account-number order, so two transfers in opposite directions can't
+ * deadlock. Clients live in the bank's registry, which is already safe for concurrent use.
+ */
+public class BankOperations {
+
+  private final Bank bank;
+  private final ViaCepService cepService;
+  private final Map<Integer, BankAccount> accounts = new ConcurrentHashMap<>();
+  private final Map<Person, Set<Integer>> accountNumbersByClient = new ConcurrentHashMap<>();
+
+  public BankOperations(Bank bank) {
+    this(bank, new ViaCepService());
+  }
+
+  /**
+   * Creates the operations with a specific CEP service
+   *
+   * @param bank the bank to operate on
+   * @param cepService the service used to validate CEPs
+   */
+  public BankOperations(Bank bank, ViaCepService cepService) {
+    this.bank = bank;
+    this.cepService = cepService;
+  }
+
+  public Bank getBank() {
+    return bank;
+  }
+
+  /** Loads clients and accounts from the persistence files */
+  public void loadAll() {
+    List<Person> clients = FilePersistence.loadClients();
+    for (BankAccount account : FilePersistence.loadAccounts(clients, bank)) {
+      register(account);
+    }
+  }
+
+  /**
+   * Saves clients and accounts to the persistence files; call once no requests are running
+   *
+   * @return true if the accounts were saved, false if the previous save was kept
+   */
+  public boolean saveAll() {
+    FilePersistence.saveClients(new ArrayList<>(bank.getClients()));
+    return FilePersistence.saveAccounts(new ArrayList<>(accounts.values()));
+  }
+
+  /**
+   * Registers a new client
+   *
+   * @param name the client name
+   * @param cpf the client CPF
+   * @param cep the CEP of the client's home address, or null to register without an address
+   * @return the registered client
+   * @throws InvalidOperationException if the CPF is already registered
+   */
+  public Person registerClient(String name, String cpf, String cep) {
+    if (name == null || name.trim().isEmpty()) {
+      throw new IllegalArgumentException("Client must have a name");
+    }
+    if (cpf == null || (cpf.length() != 11 && cpf.length() != 14)) {
+      throw new IllegalArgumentException("Invalid CPF. It must have 11 digits.");
+    }
+
+    Person client = new Person();
+    client.setName(name);
+    client.setCpf(cpf);
+
+    if (cep != null && !cep.isEmpty()) {
+      Address address = new Address();
+      if (!address.validateAndFillAddressByCep(cep)) {
+        throw new IllegalArgumentException("Invalid or not found ZIP Code: " + cep);
+      }
+      AddressType addressType = new AddressType();
+      addressType.setAddressType("RESIDENTIAL");
+      addressType.setAddressLocationType("HOME");
+      address.setAddressLocationT(addressType);
+      client.getAddress().add(address);
+    }
+
+    if (!bank.addClient(client)) {
+      throw new InvalidOperationException("CPF already registered: " + cpf);
+    }
+    return client;
+  }
+
+  /**
+   * Finds a registered client
+   *
+   * @param cpf the client CPF
+   * @return the client, or null if not registered
+   */
+  public Person findClient(String cpf) {
+    return bank.findClientByCpf(cpf);
+  }
+
+  /**
+   * Gets the numbers of the accounts owned by a client
+   *
+   * @param client the client
+   * @return the account numbers in ascending order
+   */
+  public List<Integer> getAccountNumbers(Person client) {
+    Set<Integer> numbers = (client != null) ? accountNumbersByClient.get(client) : null;
+    return (numbers != null) ? new ArrayList<>(numbers) : Collections.emptyList();
+  }
+
+  /**
+   * Checks a CEP against the CEP service. Blocks on the network, so run it off shared threads
+   *
+   * @param cep the CEP to check
+   * @return true if the CEP exists
+   */
+  public boolean isCepValid(String cep) {
+    return cep != null && !cep.isEmpty() && cepService.getAddressByCep(cep) != null;
+  }
+
+  /**
+   * Opens an account for a registered client
+   *
+   * @param cpf the client CPF
+   * @param accountType the type of account
+   * @return the new account number
+   */
+  public int openAccount(String cpf, Bank.AccountType accountType) {
+    Person client = bank.findClientByCpf(cpf);
+    if (client == null) {
+      throw new IllegalArgumentException("Client not registered with this bank");
+    }
+
+    BankAccount account = bank.createAccount(client, accountType);
+    register(account);
+    return account.getAccountNumber();
+  }
+
+  /** Indexes an account by number and by owner */
+  private void register(BankAccount account) {
+    accounts.put(account.getAccountNumber(), account);
+    accountNumbersByClient
+        .computeIfAbsent(account.getClient(), client -> new ConcurrentSkipListSet<>())
+        .add(account.getAccountNumber());
+  }
+
+  /**
+   * Reads an account while holding its lock
+   *
+   * @param accountNumber the account number
+   * @param view builds the result from the account; must not keep references to it
+   * @return the result of the view
+   */
+  public <T> T read(int accountNumber, Function<BankAccount, T> view) {
+    BankAccount account = find(accountNumber);
+    account.getLock().lock();
+    try {
+      return view.apply(account);
+    } finally {
+      account.getLock().unlock();
+    }
+  }
+
+  public void deposit(int accountNumber, double value) {
+    BankAccount account = find(accountNumber);
+    account.getLock().lock();
+    try {
+      account.depositAmount(value);
+    } finally {
+      account.getLock().unlock();
+    }
+  }
+
+  public void withdraw(int accountNumber, double value) {
+    BankAccount account = find(accountNumber);
+    account.getLock().lock();
+    try {
+      account.withdrawAmount(value);
+    } finally {
+      account.getLock().unlock();
+    }
+  }
+
+  /**
+   * Transfers funds between two accounts, holding both locks
+   *
+   * @param sourceAccountNumber the account to debit
+   * @param destinationAccountNumber the account to credit
+   * @param value the amount to transfer
+   */
+  public void transfer(int sourceAccountNumber, int destinationAccountNumber, double value) {
+    if (sourceAccountNumber == destinationAccountNumber) {
+      throw new InvalidOperationException("Cannot transfer to the same account");
+    }
+
+    BankAccount source = find(sourceAccountNumber);
+    BankAccount destination = find(destinationAccountNumber);
+
+    // Always lock the lower account number first
+    BankAccount first = (sourceAccountNumber < destinationAccountNumber) ? source : destination;
+    BankAccount second = (first == source) ? destination : source;
+    first.getLock().lock();
+    try {
+      second.getLock().lock();
+      try {
+        source.transferAmount(value, destination);
+      } finally {
+        second.getLock().unlock();
+      }
+    } finally {
+      first.getLock().unlock();
+    }
+  }
+
+  public void createInvestment(int accountNumber, String name, double amount, double annualRate) {
+    BankInvestmentAccount account = findInvestmentAccount(accountNumber);
+    account.getLock().lock();
+    try {
+      account.createInvestment(name, amount, annualRate);
+    } finally {
+      account.getLock().unlock();
+    }
+  }
+
+  /**
+   * Liquidates an investment back into the account balance
+   *
+   * @return the amount returned to the balance
+   */
+  public double liquidateInvestment(int accountNumber, String name) {
+    BankInvestmentAccount account = findInvestmentAccount(accountNumber);
+    account.getLock().lock();
+    try {
+      return account.liquidateInvestment(name);
+    } finally {
+      account.getLock().unlock();
+    }
+  }
+
+  private BankAccount find(int accountNumber) {
+    BankAccount account = accounts.get(accountNumber);
+    if (account == null) {
+      throw new InvalidAccountException("Account #" + accountNumber + " not found");
+    }
+    return account;
+  }
+
+  private BankInvestmentAccount findInvestmentAccount(int accountNumber) {
+    BankAccount account = find(accountNumber);
+    if (!(account instanceof BankInvestmentAccount)) {
+      throw new InvalidOperationException(
+          "Account #" + accountNumber + " is not an investment account");
+    }
+    return (BankInvestmentAccount) account;
+  }
+}
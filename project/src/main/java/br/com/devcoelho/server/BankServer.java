@@ -0,0 +1,194 @@
+package br.com.devcoelho.server;
+
+import br.com.devcoelho.Bank;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless banking server exposing client, account, deposit, withdraw, transfer, investment and
+ * statement operations as JSON over HTTP.
+ *
+ * <p>Built on the JDK's {@code com.sun.net.httpserver}, so it needs no external services. Requests
+ * run according to the server's {@link ExecutionMode}; see {@link ClientHandler} and {@link
+ * AccountHandler} for the endpoints. Requests that fan out, such as a client summary, run their
+ * subtasks in a {@link RequestScope}.
+ */
+public class BankServer {
+
+  public static final int DEFAULT_PORT = 8080;
+  public static final int DEFAULT_WORKER_THREADS = 64;
+
+  private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+  private final BankOperations operations;
+  private final HttpServer server;
+  private final ExecutionMode executionMode;
+  private final ExecutorService executor;
+  private final ExecutorService subtaskExecutor;
+
+  /**
+   * Creates a server that handles requests on a fixed pool of worker threads
+   *
+   * @param operations the bank operations to expose
+   * @param port the port to listen on, or 0 for any free port
+   * @param workerThreads the number of threads handling requests
+   */
+  public BankServer(BankOperations operations, int port, int workerThreads) throws IOException {
+    this(operations, port, ExecutionMode.FIXED_POOL, workerThreads);
+  }
+
+  /**
+   * Creates a server; call {@link #start()} to begin accepting requests
+   *
+   * @param operations the bank operations to expose
+   * @param port the port to listen on, or 0 for any free port
+   * @param executionMode how requests are mapped to threads
+   * @param workerThreads the number of threads handling requests in {@link
+   *     ExecutionMode#FIXED_POOL} mode; ignored otherwise
+   */
+  public BankServer(
+      BankOperations operations, int port, ExecutionMode executionMode, int workerThreads)
+      throws IOException {
+    // Small JSON responses otherwise wait on Nagle's algorithm and the client's delayed ACK,
+    // adding ~40ms to every keep-alive request. Must be set before the first server is created
+    if (System.getProperty(NO_DELAY_PROPERTY) == null) {
+      System.setProperty(NO_DELAY_PROPERTY, "true");
+    }
+
+    this.operations = operations;
+    this.server = HttpServer.create(new InetSocketAddress(port), 0);
+    this.executionMode = executionMode;
+    if (executionMode == ExecutionMode.FIXED_POOL) {
+      this.executor =
+          Executors.newFixedThreadPool(workerThreads, new WorkerThreadFactory("bank-server-"));
+      // Subtasks get their own threads, so a saturated pool can't deadlock waiting on them
+      this.subtaskExecutor = newThreadPerTaskExecutor("bank-server-subtask-");
+    } else {
+      this.executor = newThreadPerTaskExecutor("bank-server-");
+      this.subtaskExecutor = executor;
+    }
+
+    server.createContext("/clients", new ClientHandler(operations, subtaskExecutor));
+    server.createContext("/accounts", new AccountHandler(operations));
+    server.setExecutor(executor);
+  }
+
+  public BankOperations getOperations() {
+    return operations;
+  }
+
+  public ExecutionMode getExecutionMode() {
+    return executionMode;
+  }
+
+  /**
+   * Gets the port the server listens on, useful when it was created with port 0
+   *
+   * @return the bound port
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  public void start() {
+    server.start();
+  }
+
+  /** Stops accepting requests and waits briefly for running ones to finish */
+  public void stop() {
+    server.stop(1);
+    executor.shutdown();
+    subtaskExecutor.shutdown();
+    try {
+      executor.awaitTermination(5, TimeUnit.SECONDS);
+      subtaskExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Runs the server until the process is stopped, loading data at startup and saving it on exit
+   *
+   * @param args optional port, number of worker threads and execution mode
+   */
+  public static void main(String[] args) throws IOException {
+    int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+    int workerThreads = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_WORKER_THREADS;
+    ExecutionMode executionMode =
+        (args.length > 2) ? ExecutionMode.valueOf(args[2]) : ExecutionMode.FIXED_POOL;
+
+    BankOperations operations = new BankOperations(new Bank("Potato's Bank", "777"));
+    operations.loadAll();
+
+    BankServer bankServer = new BankServer(operations, port, executionMode, workerThreads);
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(
+                () -> {
+                  System.out.println("Stopping server and saving data...");
+                  bankServer.stop();
+                  if (!operations.saveAll()) {
+                    System.err.println("Accounts were not saved; the previous save was kept");
+                  }
+                }));
+
+    bankServer.start();
+    System.out.println(
+        operations.getBank().getName()
+            + " server listening on port "
+            + bankServer.getPort()
+            + " ("
+            + executionMode
+            + ")");
+  }
+
+  /**
+   * Creates an executor that starts a thread per task: a virtual thread when the runtime supports
+   * them (Java 21+), otherwise a platform thread from an unbounded cached pool
+   */
+  private static ExecutorService newThreadPerTaskExecutor(String threadNamePrefix) {
+    try {
+      // Looked up reflectively since the project still compiles for Java 17
+      Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) virtual.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool(new WorkerThreadFactory(threadNamePrefix));
+    }
+  }
+
+  /** How requests are mapped to threads */
+  public enum ExecutionMode {
+    /** A fixed pool of worker threads; caps the number of requests handled at once */
+    FIXED_POOL,
+    /**
+     * A new thread per request, so requests blocked on I/O don't hold back others. Uses virtual
+     * threads when the runtime supports them
+     */
+    THREAD_PER_REQUEST
+  }
+
+  /** Names worker threads so they're recognizable in thread dumps */
+  private static class WorkerThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    WorkerThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable task) {
+      Thread thread = new Thread(task, prefix + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package br.com.devcoelho.server;
+
+import br.com.devcoelho.Address;
+import br.com.devcoelho.Person;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Client endpoints.
+ *
+ * <ul>
+ *   <li>{@code POST /clients} with {@code name}, {@code cpf} and an optional {@code cep}
+ *   <li>{@code GET /clients/{cpf}}
+ *   <li>{@code GET /clients/{cpf}/summary} with every account and a fresh CEP check of every
+ *       address. The account reads and CEP lookups run in parallel in a {@link RequestScope}
+ * </ul>
+ */
+class ClientHandler extends JsonHandler {
+
+  private final BankOperations operations;
+  private final Executor subtaskExecutor;
+
+  ClientHandler(BankOperations operations, Executor subtaskExecutor) {
+    this.operations = operations;
+    this.subtaskExecutor = subtaskExecutor;
+  }
+
+  @Override
+  protected JsonResponse route(Request request) throws IOException {
+    List<String> path = request.getPath();
+
+    if (path.isEmpty() && request.getMethod().equals("POST")) {
+      JSONObject body = request.readBody();
+      Person client =
+          operations.registerClient(
+              body.getString("name"), body.getString("cpf"), body.optString("cep", null));
+      return JsonResponse.created(JsonViews.client(client, List.of()));
+    }
+
+    if (path.size() == 1 && request.getMethod().equals("GET")) {
+      Person client = operations.findClient(path.get(0));
+      if (client == null) {
+        return JsonResponse.error(404, "Client " + path.get(0) + " not found");
+      }
+      return JsonResponse.ok(JsonViews.client(client, operations.getAccountNumbers(client)));
+    }
+
+    if (path.size() == 2 && path.get(1).equals("summary") && request.getMethod().equals("GET")) {
+      Person client = operations.findClient(path.get(0));
+      if (client == null) {
+        return JsonResponse.error(404, "Client " + path.get(0) + " not found");
+      }
+      return JsonResponse.ok(summary(client));
+    }
+
+    return JsonResponse.notFound();
+  }
+
+  /** Loads the client's accounts and validates their CEPs concurrently */
+  private JSONObject summary(Person client) {
+    List<RequestScope.Subtask<JSONObject>> accounts = new ArrayList<>();
+    List<RequestScope.Subtask<JSONObject>> addresses = new ArrayList<>();
+
+    try (RequestScope scope = new RequestScope(subtaskExecutor)) {
+      for (int accountNumber : operations.getAccountNumbers(client)) {
+        accounts.add(scope.fork(() -> operations.read(accountNumber, JsonViews::account)));
+      }
+      for (Address address : new ArrayList<>(client.getAddress())) {
+        addresses.add(
+            scope.fork(
+                () ->
+                    JsonViews.address(address, operations.isCepValid(address.getCepNumber()))));
+      }
+      scope.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while loading client summary");
+    }
+
+    JSONArray accountViews = new JSONArray();
+    for (RequestScope.Subtask<JSONObject> account : accounts) {
+      accountViews.put(account.get());
+    }
+    JSONArray addressViews = new JSONArray();
+    for (RequestScope.Subtask<JSONObject> address : addresses) {
+      addressViews.put(address.get());
+    }
+
+    return new JSONObject()
+        .put("name", client.getName())
+        .put("cpf", client.getCpf())
+        .put("addresses", addressViews)
+        .put("accounts", accountViews);
+  }
+}
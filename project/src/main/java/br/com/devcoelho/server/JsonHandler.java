@@ -0,0 +1,159 @@
+package br.com.devcoelho.server;
+
+import br.com.devcoelho.exceptions.InsufficientBalanceException;
+import br.com.devcoelho.exceptions.InvalidAccountException;
+import br.com.devcoelho.exceptions.InvalidOperationException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Base class for the server's JSON endpoints.
+ *
+ * <p>Splits the request path into segments below the handler's context, hands the request to
+ * {@link #route}, and writes the result as JSON. Bank exceptions are mapped to HTTP status codes:
+ * unknown accounts to 404, rejected operations and insufficient balance to 409, and invalid input
+ * to 400.
+ */
+abstract class JsonHandler implements HttpHandler {
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    JsonResponse response;
+    try {
+      response = route(new Request(exchange));
+    } catch (InvalidAccountException e) {
+      response = JsonResponse.error(404, e.getMessage());
+    } catch (InsufficientBalanceException | InvalidOperationException e) {
+      response = JsonResponse.error(409, e.getMessage());
+    } catch (IllegalArgumentException | JSONException e) {
+      response = JsonResponse.error(400, e.getMessage());
+    } catch (RuntimeException e) {
+      System.err.println("Error handling " + exchange.getRequestURI() + ": " + e.getMessage());
+      response = JsonResponse.error(500, "Internal error");
+    }
+
+    try {
+      byte[] body = response.getBody().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+      exchange.sendResponseHeaders(response.getStatus(), body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Handles a request
+   *
+   * @param request the parsed request
+   * @return the response to send
+   */
+  protected abstract JsonResponse route(Request request) throws IOException;
+
+  /** An incoming request with its path split into segments below the handler's context */
+  static class Request {
+    private final HttpExchange exchange;
+    private final List<String> path = new ArrayList<>();
+    private final Map<String, String> query = new HashMap<>();
+
+    Request(HttpExchange exchange) {
+      this.exchange = exchange;
+
+      String context = exchange.getHttpContext().getPath();
+      String fullPath = exchange.getRequestURI().getPath();
+      for (String segment : fullPath.substring(context.length()).split("/")) {
+        if (!segment.isEmpty()) {
+          path.add(segment);
+        }
+      }
+
+      String rawQuery = exchange.getRequestURI().getQuery();
+      if (rawQuery != null) {
+        for (String pair : rawQuery.split("&")) {
+          int separator = pair.indexOf('=');
+          if (separator > 0) {
+            query.put(pair.substring(0, separator), pair.substring(separator + 1));
+          }
+        }
+      }
+    }
+
+    String getMethod() {
+      return exchange.getRequestMethod();
+    }
+
+    /** Gets the path segments below the handler's context */
+    List<String> getPath() {
+      return path;
+    }
+
+    String getQueryParameter(String name) {
+      return query.get(name);
+    }
+
+    /** Parses a path segment as an account number */
+    int getAccountNumber(int segment) {
+      try {
+        return Integer.parseInt(path.get(segment));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid account number: " + path.get(segment));
+      }
+    }
+
+    /** Reads the request body as a JSON object; an empty body is an empty object */
+    JSONObject readBody() throws IOException {
+      try (InputStream in = exchange.getRequestBody()) {
+        String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        return body.trim().isEmpty() ? new JSONObject() : new JSONObject(body);
+      }
+    }
+  }
+
+  /** Status and JSON body of a response */
+  static final class JsonResponse {
+    private final int status;
+    private final String body;
+
+    private JsonResponse(int status, String body) {
+      this.status = status;
+      this.body = body;
+    }
+
+    static JsonResponse ok(Object json) {
+      return new JsonResponse(200, json.toString());
+    }
+
+    static JsonResponse created(Object json) {
+      return new JsonResponse(201, json.toString());
+    }
+
+    static JsonResponse notFound() {
+      return error(404, "No such resource");
+    }
+
+    static JsonResponse error(int status, String message) {
+      JSONObject body = new JSONObject().put("error", String.valueOf(message));
+      return new JsonResponse(status, body.toString());
+    }
+
+    int getStatus() {
+      return status;
+    }
+
+    String getBody() {
+      return body;
+    }
+  }
+}
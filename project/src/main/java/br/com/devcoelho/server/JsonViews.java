@@ -0,0 +1,102 @@
+package br.com.devcoelho.server;
+
+import br.com.devcoelho.Address;
+import br.com.devcoelho.BankAccount;
+import br.com.devcoelho.BankInvestmentAccount;
+import br.com.devcoelho.Person;
+import br.com.devcoelho.Transaction;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/** Builds the JSON representations returned by the server */
+final class JsonViews {
+
+  private JsonViews() {}
+
+  static JSONObject client(Person client, List<Integer> accountNumbers) {
+    JSONArray addresses = new JSONArray();
+    for (Address address : client.getAddress()) {
+      addresses.put(address.getFormattedAddress());
+    }
+
+    return new JSONObject()
+        .put("name", client.getName())
+        .put("cpf", client.getCpf())
+        .put("addresses", addresses)
+        .put("accounts", new JSONArray(accountNumbers));
+  }
+
+  static JSONObject address(Address address, boolean cepValid) {
+    return new JSONObject()
+        .put("address", address.getFormattedAddress())
+        .put("cep", String.valueOf(address.getCepNumber()))
+        .put("cepValid", cepValid);
+  }
+
+  /** Must be called while holding the account's lock */
+  static JSONObject account(BankAccount account) {
+    JSONObject json =
+        new JSONObject()
+            .put("accountNumber", account.getAccountNumber())
+            .put("agency", account.getAgency())
+            .put("ownerCpf", account.getClient().getCpf())
+            .put("balance", account.getAmountStored())
+            .put("openingDate", account.getOpeningDate().getTime());
+
+    if (account instanceof BankInvestmentAccount) {
+      json.put("type", "INVESTMENT")
+          .put("interestRate", ((BankInvestmentAccount) account).getInterestRate());
+    } else {
+      json.put("type", "SIMPLE");
+    }
+    return json;
+  }
+
+  /**
+   * Builds an account statement, newest transaction first. Must be called while holding the
+   * account's lock
+   *
+   * @param account the account
+   * @param limit the maximum number of transactions to include
+   */
+  static JSONObject statement(BankAccount account, int limit) {
+    JSONArray transactions = new JSONArray();
+    List<Transaction> history = account.getTransactionHistory();
+    for (int i = history.size() - 1; i >= 0 && transactions.length() < limit; i--) {
+      transactions.put(transaction(history.get(i)));
+    }
+
+    return new JSONObject()
+        .put("accountNumber", account.getAccountNumber())
+        .put("balance", account.getAmountStored())
+        .put("transactionCount", history.size())
+        .put("transactions", transactions);
+  }
+
+  /** Must be called while holding the account's lock */
+  static JSONArray investments(BankInvestmentAccount account) {
+    JSONArray investments = new JSONArray();
+    for (BankInvestmentAccount.Investment investment : account.getInvestments().values()) {
+      investments.put(
+          new JSONObject()
+              .put("name", investment.getName())
+              .put("principal", investment.getPrincipal())
+              .put("annualRate", investment.getAnnualRate())
+              .put("currentValue", investment.getCurrentValue()));
+    }
+    return investments;
+  }
+
+  private static JSONObject transaction(Transaction transaction) {
+    JSONObject json =
+        new JSONObject()
+            .put("type", transaction.getType().name())
+            .put("amount", transaction.getAmount())
+            .put("timestamp", transaction.getTimestampMillis());
+    if (transaction.hasDestinationAccount()) {
+      json.put("destinationAccount", transaction.getDestinationAccountNumber());
+    }
+    return json;
+  }
+}
@@ -0,0 +1,115 @@
+package br.com.devcoelho.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the subtasks of a single request concurrently, in the style of structured concurrency.
+ *
+ * <p>Subtasks are forked inside a try-with-resources block and joined before the request goes on.
+ * The first failing subtask cancels the others and its exception is rethrown by {@link #join()}.
+ * Closing the scope cancels anything still running, so no subtask outlives its request.
+ *
+ * <pre>{@code
+ * try (RequestScope scope = new RequestScope(executor)) {
+ *   RequestScope.Subtask<A> a = scope.fork(() -> loadA());
+ *   RequestScope.Subtask<B> b = scope.fork(() -> loadB());
+ *   scope.join();
+ *   return combine(a.get(), b.get());
+ * }
+ * }</pre>
+ */
+final class RequestScope implements AutoCloseable {
+
+  private final CompletionService<Object> completion;
+  private final List<Future<Object>> subtasks = new ArrayList<>();
+  private boolean joined;
+
+  RequestScope(Executor executor) {
+    this.completion = new ExecutorCompletionService<>(executor);
+  }
+
+  /**
+   * Starts a subtask
+   *
+   * @param task the work to run concurrently
+   * @return a handle whose result is available after {@link #join()}
+   */
+  @SuppressWarnings("unchecked")
+  <T> Subtask<T> fork(Callable<T> task) {
+    if (joined) {
+      throw new IllegalStateException("Scope already joined");
+    }
+    Future<Object> future = completion.submit((Callable<Object>) task);
+    subtasks.add(future);
+    return new Subtask<>(future);
+  }
+
+  /**
+   * Waits for every subtask, failing fast if one of them fails
+   *
+   * @throws RuntimeException the exception of the first failing subtask
+   * @throws InterruptedException if the request thread is interrupted while waiting
+   */
+  void join() throws InterruptedException {
+    joined = true;
+    for (int i = 0; i < subtasks.size(); i++) {
+      Future<Object> done = completion.take();
+      try {
+        done.get();
+      } catch (ExecutionException e) {
+        cancelAll();
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new IllegalStateException("Subtask failed", cause);
+      }
+    }
+  }
+
+  /** Cancels any subtask that is still running */
+  @Override
+  public void close() {
+    cancelAll();
+  }
+
+  private void cancelAll() {
+    for (Future<Object> subtask : subtasks) {
+      subtask.cancel(true);
+    }
+  }
+
+  /** Handle to a forked subtask */
+  static final class Subtask<T> {
+    private final Future<Object> future;
+
+    private Subtask(Future<Object> future) {
+      this.future = future;
+    }
+
+    /**
+     * Gets the subtask's result
+     *
+     * @return the result
+     * @throws IllegalStateException if the subtask hasn't completed successfully
+     */
+    @SuppressWarnings("unchecked")
+    T get() {
+      if (!future.isDone() || future.isCancelled()) {
+        throw new IllegalStateException("Subtask not completed");
+      }
+      try {
+        return (T) future.get();
+      } catch (InterruptedException | ExecutionException e) {
+        throw new IllegalStateException("Subtask failed", e);
+      }
+    }
+  }
+}
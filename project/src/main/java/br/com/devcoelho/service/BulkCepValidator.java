@@ -0,0 +1,332 @@
+package br.com.devcoelho.service;
+
+import br.com.devcoelho.Address;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Validates many CEPs at once, e.g. when importing clients.
+ *
+ * <p>CEPs are normalized to 8 digits and deduplicated, so each distinct CEP is looked up once.
+ * Lookups go through {@link ViaCepService#getAddressByCepAsync}, so waiting on the API doesn't
+ * hold a thread. A semaphore caps the number of lookups in flight, and an optional rate limit
+ * spaces out their start times. Each result is passed to a listener as soon as it arrives, and a
+ * {@link Report} with counts and throughput is returned at the end.
+ */
+public class BulkCepValidator {
+
+  public static final int DEFAULT_MAX_CONCURRENCY = 32;
+
+  private final ViaCepService cepService;
+  private final int maxConcurrency;
+  private final long minIntervalNanos;
+
+  public BulkCepValidator(ViaCepService cepService) {
+    this(cepService, DEFAULT_MAX_CONCURRENCY, 0);
+  }
+
+  /**
+   * Creates a validator
+   *
+   * @param cepService the service used for the lookups
+   * @param maxConcurrency the maximum number of lookups in flight
+   * @param maxRequestsPerSecond the maximum number of lookups started per second, or 0 for no limit
+   */
+  public BulkCepValidator(
+      ViaCepService cepService, int maxConcurrency, double maxRequestsPerSecond) {
+    if (maxConcurrency <= 0 || maxRequestsPerSecond < 0) {
+      throw new IllegalArgumentException("Concurrency must be positive and rate non-negative");
+    }
+
+    this.cepService = cepService;
+    this.maxConcurrency = maxConcurrency;
+    this.minIntervalNanos =
+        (maxRequestsPerSecond > 0)
+            ? (long) (TimeUnit.SECONDS.toNanos(1) / maxRequestsPerSecond)
+            : 0;
+  }
+
+  /**
+   * Validates CEPs, streaming each result to a listener
+   *
+   * @param ceps the CEPs to validate, in any format; duplicates are looked up once
+   * @param listener receives one result per distinct CEP, in completion order; called by one
+   *     thread at a time
+   * @return the counts and throughput of the run
+   * @throws InterruptedException if interrupted while waiting for a lookup slot
+   */
+  public Report validate(Collection<String> ceps, Consumer<Result> listener)
+      throws InterruptedException {
+    long start = System.nanoTime();
+    Set<String> distinct = new LinkedHashSet<>();
+    int malformed = 0;
+    for (String cep : ceps) {
+      String numericCep = (cep != null) ? cep.replaceAll("\\D", "") : "";
+      if (numericCep.length() == 8) {
+        distinct.add(numericCep);
+      } else {
+        malformed++;
+      }
+    }
+
+    Report report = new Report(ceps.size(), distinct.size(), malformed);
+    Semaphore slots = new Semaphore(maxConcurrency);
+    long nextStart = System.nanoTime();
+
+    for (String numericCep : distinct) {
+      slots.acquire();
+      if (minIntervalNanos > 0) {
+        long wait = nextStart - System.nanoTime();
+        if (wait > 0) {
+          TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        nextStart = Math.max(nextStart, System.nanoTime() - minIntervalNanos) + minIntervalNanos;
+      }
+
+      cepService
+          .getAddressByCepAsync(numericCep)
+          .whenComplete(
+              (address, failure) -> {
+                try {
+                  Result result = new Result(numericCep, address, failure);
+                  synchronized (report) {
+                    report.count(result);
+                    listener.accept(result);
+                  }
+                } finally {
+                  slots.release();
+                }
+              });
+    }
+
+    // Every slot is back once the last lookup has completed
+    slots.acquire(maxConcurrency);
+    slots.release(maxConcurrency);
+
+    synchronized (report) {
+      report.elapsedNanos = System.nanoTime() - start;
+      return report;
+    }
+  }
+
+  /**
+   * Validates CEPs and collects the results
+   *
+   * @param ceps the CEPs to validate, in any format
+   * @return the result for each distinct CEP, keyed by its 8 digits
+   * @throws InterruptedException if interrupted while waiting for a lookup slot
+   */
+  public Map<String, Result> validateAll(Collection<String> ceps) throws InterruptedException {
+    Map<String, Result> results = new LinkedHashMap<>();
+    validate(ceps, result -> results.put(result.getCep(), result));
+    return results;
+  }
+
+  /**
+   * Validates the CEPs of a set of addresses and fills in the addresses whose CEP exists
+   *
+   * @param addresses the addresses to validate, e.g. those of imported clients
+   * @return the counts and throughput of the run
+   * @throws InterruptedException if interrupted while waiting for a lookup slot
+   */
+  public Report validateAddresses(Collection<Address> addresses) throws InterruptedException {
+    List<String> ceps = new ArrayList<>();
+    for (Address address : addresses) {
+      ceps.add(address.getCepNumber());
+    }
+
+    Map<String, Result> results = new LinkedHashMap<>();
+    Report report = validate(ceps, result -> results.put(result.getCep(), result));
+
+    for (Address address : addresses) {
+      String cep = address.getCepNumber();
+      Result result = (cep != null) ? results.get(cep.replaceAll("\\D", "")) : null;
+      if (result != null && result.isValid()) {
+        address.fillFromValidated(result.getAddress());
+      }
+    }
+    return report;
+  }
+
+  /**
+   * Validates the CEPs in a file and prints the report
+   *
+   * @param args the file, with one CEP per line or pipe-separated lines starting with the CEP,
+   *     then optionally the maximum concurrency and lookups per second
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0) {
+      System.err.println("Usage: BulkCepValidator <file> [maxConcurrency] [maxRequestsPerSecond]");
+      return;
+    }
+
+    int maxConcurrency = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_MAX_CONCURRENCY;
+    double maxRequestsPerSecond = (args.length > 2) ? Double.parseDouble(args[2]) : 0;
+
+    List<String> ceps = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new FileReader(args[0]))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        ceps.add(line.split("\\|", 2)[0]);
+      }
+    } catch (IOException e) {
+      System.err.println("Error reading CEPs from " + args[0] + ": " + e.getMessage());
+      return;
+    }
+
+    BulkCepValidator validator =
+        new BulkCepValidator(new ViaCepService(), maxConcurrency, maxRequestsPerSecond);
+    Report report =
+        validator.validate(
+            ceps,
+            result -> {
+              if (result.getFailure() != null) {
+                System.err.println(result.getCep() + ": " + result.getFailure());
+              }
+            });
+    System.out.println(report);
+    System.exit(0);
+  }
+
+  /** Outcome of one CEP lookup */
+  public static final class Result {
+    private final String cep;
+    private final Address address;
+    private final Throwable failure;
+
+    private Result(String cep, Address address, Throwable failure) {
+      this.cep = cep;
+      this.address = address;
+      this.failure = failure;
+    }
+
+    /** Gets the CEP as 8 digits */
+    public String getCep() {
+      return cep;
+    }
+
+    /**
+     * Gets the address found for the CEP
+     *
+     * @return the address, or null if the CEP doesn't exist or the lookup failed
+     */
+    public Address getAddress() {
+      return address;
+    }
+
+    /**
+     * Gets the reason the lookup failed
+     *
+     * @return the failure, or null if the API answered
+     */
+    public Throwable getFailure() {
+      return failure;
+    }
+
+    public boolean isValid() {
+      return address != null;
+    }
+
+    @Override
+    public String toString() {
+      if (failure != null) {
+        return cep + ": failed (" + failure + ")";
+      }
+      return cep + ": " + (isValid() ? "valid" : "not found");
+    }
+  }
+
+  /** Counts and throughput of a bulk validation run */
+  public static final class Report {
+    private final int total;
+    private final int distinct;
+    private final int malformed;
+    private int valid;
+    private int notFound;
+    private int failed;
+    private long elapsedNanos;
+
+    private Report(int total, int distinct, int malformed) {
+      this.total = total;
+      this.distinct = distinct;
+      this.malformed = malformed;
+    }
+
+    private void count(Result result) {
+      if (result.getFailure() != null) {
+        failed++;
+      } else if (result.isValid()) {
+        valid++;
+      } else {
+        notFound++;
+      }
+    }
+
+    /** Gets the number of CEPs given, duplicates included */
+    public int getTotal() {
+      return total;
+    }
+
+    /** Gets the number of distinct well-formed CEPs, i.e. the number of lookups */
+    public int getDistinct() {
+      return distinct;
+    }
+
+    /** Gets the number of CEPs that weren't 8 digits and so weren't looked up */
+    public int getMalformed() {
+      return malformed;
+    }
+
+    public int getValid() {
+      return valid;
+    }
+
+    public int getNotFound() {
+      return notFound;
+    }
+
+    /** Gets the number of lookups that failed, e.g. because the API couldn't be reached */
+    public int getFailed() {
+      return failed;
+    }
+
+    public long getElapsedMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * Gets the lookup throughput
+     *
+     * @return distinct CEPs validated per second
+     */
+    public double getLookupsPerSecond() {
+      return (elapsedNanos == 0) ? 0 : distinct * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "Validated %d CEPs (%d distinct, %d malformed) in %d ms, %.0f lookups/s: "
+              + "%d valid, %d not found, %d failed",
+          total,
+          distinct,
+          malformed,
+          getElapsedMillis(),
+          getLookupsPerSecond(),
+          valid,
+          notFound,
+          failed);
+    }
+  }
+}
@@ -0,0 +1,207 @@
+package br.com.devcoelho.service;
+
+import br.com.devcoelho.Address;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, expiring cache of CEP lookups in front of {@link ViaCepService}.
+ *
+ * <p>Entries are kept in least-recently-used order and the oldest is evicted once the cache is
+ * full. Found addresses expire after the TTL; CEPs the API reported as nonexistent are cached too
+ * (negative caching) with their own, usually shorter, TTL. Keys are the 8-digit CEP as an int.
+ * Hit, miss and eviction counts are kept for monitoring.
+ *
+ * <p>Cached addresses are copied on the way in and out, so callers can fill in the house number
+ * without affecting other lookups. Safe for concurrent use.
+ */
+public class CepCache {
+
+  public static final int DEFAULT_CAPACITY = 10_000;
+  public static final long DEFAULT_TTL_MILLIS = 24L * 60 * 60 * 1000;
+  public static final long DEFAULT_NEGATIVE_TTL_MILLIS = 60L * 60 * 1000;
+
+  private final int capacity;
+  private final long ttlMillis;
+  private final long negativeTtlMillis;
+  private final Map<Integer, Entry> entries;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong negativeHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  public CepCache() {
+    this(DEFAULT_CAPACITY, DEFAULT_TTL_MILLIS, DEFAULT_NEGATIVE_TTL_MILLIS);
+  }
+
+  /**
+   * Creates a cache
+   *
+   * @param capacity the maximum number of CEPs kept
+   * @param ttlMillis how long a found address is kept
+   * @param negativeTtlMillis how long a nonexistent CEP is remembered
+   */
+  public CepCache(int capacity, long ttlMillis, long negativeTtlMillis) {
+    if (capacity <= 0 || ttlMillis <= 0 || negativeTtlMillis < 0) {
+      throw new IllegalArgumentException("Capacity and TTLs must be positive");
+    }
+
+    this.capacity = capacity;
+    this.ttlMillis = ttlMillis;
+    this.negativeTtlMillis = negativeTtlMillis;
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+            if (size() > CepCache.this.capacity) {
+              evictions.incrementAndGet();
+              return true;
+            }
+            return false;
+          }
+        };
+  }
+
+  /**
+   * Looks up a CEP
+   *
+   * @param cep the CEP as an int
+   * @return the lookup result, or null if the CEP isn't cached or has expired
+   */
+  public Lookup get(int cep) {
+    long now = System.currentTimeMillis();
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(cep);
+      if (entry != null && entry.expiresAt <= now) {
+        entries.remove(cep);
+        entry = null;
+      }
+    }
+
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    if (entry.address == null) {
+      negativeHits.incrementAndGet();
+      return Lookup.NOT_FOUND;
+    }
+    hits.incrementAndGet();
+    return new Lookup(ViaCepService.copyOf(entry.address));
+  }
+
+  /**
+   * Caches a found address
+   *
+   * @param cep the CEP as an int
+   * @param address the address the API returned
+   */
+  public void put(int cep, Address address) {
+    store(cep, new Entry(ViaCepService.copyOf(address), System.currentTimeMillis() + ttlMillis));
+  }
+
+  /**
+   * Caches a CEP the API reported as nonexistent
+   *
+   * @param cep the CEP as an int
+   */
+  public void putNotFound(int cep) {
+    if (negativeTtlMillis > 0) {
+      store(cep, new Entry(null, System.currentTimeMillis() + negativeTtlMillis));
+    }
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /** Gets the number of lookups answered with a cached address */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /** Gets the number of lookups answered with a cached "not found" */
+  public long getNegativeHitCount() {
+    return negativeHits.get();
+  }
+
+  /** Gets the number of lookups that had to go to the API */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /** Gets the number of entries dropped to make room for new ones */
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  /**
+   * Gets the share of lookups answered from the cache, found or not
+   *
+   * @return the hit rate between 0 and 1, or 0 before any lookup
+   */
+  public double getHitRate() {
+    long answered = hits.get() + negativeHits.get();
+    long total = answered + misses.get();
+    return (total == 0) ? 0 : (double) answered / total;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "CepCache[size=%d, hits=%d, negativeHits=%d, misses=%d, evictions=%d, hitRate=%.2f]",
+        size(),
+        getHitCount(),
+        getNegativeHitCount(),
+        getMissCount(),
+        getEvictionCount(),
+        getHitRate());
+  }
+
+  private void store(int cep, Entry entry) {
+    synchronized (entries) {
+      entries.put(cep, entry);
+    }
+  }
+
+  /** Result of a cache lookup: a copy of the address, or no address if the CEP doesn't exist */
+  public static final class Lookup {
+    static final Lookup NOT_FOUND = new Lookup(null);
+
+    private final Address address;
+
+    private Lookup(Address address) {
+      this.address = address;
+    }
+
+    /**
+     * Gets the cached address
+     *
+     * @return the address, or null if the CEP is known not to exist
+     */
+    public Address getAddress() {
+      return address;
+    }
+  }
+
+  private static final class Entry {
+    private final Address address;
+    private final long expiresAt;
+
+    private Entry(Address address, long expiresAt) {
+      this.address = address;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -0,0 +1,364 @@
+package br.com.devcoelho.service;
+
+import br.com.devcoelho.Address;
+import br.com.devcoelho.BrazilianState;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistent CEP cache that survives restarts.
+ *
+ * <p>Addresses are appended to a compact binary file, one record per CEP:
+ *
+ * <pre>
+ * int length | int cep | UTF street | UTF complement | UTF neighborhood | UTF city | UTF state
+ * </pre>
+ *
+ * <p>An index from the 8-digit CEP (as an int) to the record's file offset is kept in primitive
+ * arrays with open addressing. It is rebuilt by scanning the file when the store is opened. A
+ * lookup is an index probe and one positional read. When a CEP is stored again, the new record
+ * is appended and the index points at it. The file is created on the first write and can be
+ * pre-warmed from a bulk file with {@link #importFile(String)}.
+ *
+ * <p>Records are appended at the end of the file as this instance knows it, so two instances on
+ * the same file would overwrite each other's records. Stores are therefore obtained through
+ * {@link #open(String)}, which hands out one instance per file for the whole process. That
+ * instance is safe for concurrent use.
+ */
+public class CepStore implements AutoCloseable {
+
+  public static final String DEFAULT_FILE = "cep-cache.dat";
+
+  private static final int EMPTY = -1;
+  private static final int INITIAL_INDEX_SIZE = 1 << 10;
+
+  // Stores opened so far, by canonical path
+  private static final Map<String, CepStore> OPEN_STORES = new HashMap<>();
+
+  private final File file;
+  private FileChannel channel;
+  private long fileSize;
+
+  private int[] keys;
+  private long[] offsets;
+  private int size;
+
+  /**
+   * Opens a store, indexing the records already in the file. Only {@link #open(String)} should
+   * create stores, so each file has a single instance
+   *
+   * @param fileName the store file; created on the first write if it doesn't exist
+   * @throws IOException if an existing file can't be read
+   */
+  CepStore(String fileName) throws IOException {
+    this.file = new File(fileName);
+    this.keys = new int[INITIAL_INDEX_SIZE];
+    this.offsets = new long[INITIAL_INDEX_SIZE];
+    Arrays.fill(keys, EMPTY);
+
+    if (file.exists()) {
+      buildIndex();
+    }
+  }
+
+  /**
+   * Gets the store for a file, opening it on first use. Later calls for the same file, under any
+   * name, return the same instance
+   *
+   * @param fileName the store file; created on the first write if it doesn't exist
+   * @return the process-wide store for the file
+   * @throws IOException if an existing file can't be read
+   */
+  public static CepStore open(String fileName) throws IOException {
+    String path = new File(fileName).getCanonicalPath();
+    synchronized (OPEN_STORES) {
+      CepStore store = OPEN_STORES.get(path);
+      if (store == null) {
+        store = new CepStore(path);
+        OPEN_STORES.put(path, store);
+      }
+      return store;
+    }
+  }
+
+  /**
+   * Gets the store at {@link #DEFAULT_FILE}, shared by every service using it
+   *
+   * @return the store, or null if it couldn't be opened
+   */
+  public static CepStore openDefault() {
+    try {
+      return open(DEFAULT_FILE);
+    } catch (IOException e) {
+      System.err.println("Error opening CEP store " + DEFAULT_FILE + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Gets the number of CEPs stored
+   *
+   * @return the number of distinct CEPs
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Looks up a stored address
+   *
+   * @param cep the CEP as an int
+   * @return a new Address with the stored fields, or null if the CEP isn't stored
+   */
+  public Address get(int cep) {
+    try {
+      long offset;
+      FileChannel readChannel;
+      synchronized (this) {
+        int slot = find(cep);
+        if (keys[slot] == EMPTY) {
+          return null;
+        }
+        offset = offsets[slot];
+        readChannel = openChannel();
+      }
+
+      // Positional reads don't move the channel position, so they can run outside the lock
+      return readRecord(readChannel, offset);
+    } catch (IOException e) {
+      System.err.println("Error reading CEP store " + file + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Stores an address, replacing any earlier one for the same CEP
+   *
+   * @param cep the CEP as an int
+   * @param address the address to store
+   */
+  public synchronized void put(int cep, Address address) {
+    if (cep < 0) {
+      throw new IllegalArgumentException("Invalid CEP: " + cep);
+    }
+
+    try {
+      byte[] record = encode(cep, address);
+      FileChannel writeChannel = openChannel();
+      long offset = fileSize;
+      ByteBuffer buffer = ByteBuffer.wrap(record);
+      while (buffer.hasRemaining()) {
+        writeChannel.write(buffer, offset + buffer.position());
+      }
+      fileSize += record.length;
+      index(cep, offset);
+    } catch (IOException e) {
+      System.err.println("Error writing CEP store " + file + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Pre-warms the store from a pipe-separated file with lines of the form {@code
+   * cep|street|complement|neighborhood|city|uf}
+   *
+   * @param fileName the bulk file
+   * @return the number of addresses imported
+   */
+  public int importFile(String fileName) {
+    int imported = 0;
+    try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] parts = line.split("\\|", -1);
+        if (parts.length < 6) {
+          continue;
+        }
+
+        String numericCep = parts[0].replaceAll("\\D", "");
+        if (numericCep.length() != 8) {
+          continue;
+        }
+
+        Address address = new Address();
+        address.setAddress(parts[1]);
+        address.setHouseComplement(parts[2]);
+        address.setNeighborhood(parts[3]);
+        address.setCityName(parts[4]);
+        address.setState(BrazilianState.fromAbbreviation(parts[5]));
+        address.setCepNumber(numericCep.substring(0, 5) + "-" + numericCep.substring(5));
+        address.setHouseNumber("");
+        put(Integer.parseInt(numericCep), address);
+        imported++;
+      }
+      System.out.println("Imported " + imported + " CEPs from " + fileName);
+    } catch (IOException e) {
+      System.err.println("Error importing CEPs from " + fileName + ": " + e.getMessage());
+    }
+    return imported;
+  }
+
+  /**
+   * Closes the file. The store stays registered, and reopens the file if it's used again
+   */
+  @Override
+  public synchronized void close() {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        System.err.println("Error closing CEP store " + file + ": " + e.getMessage());
+      }
+      channel = null;
+    }
+  }
+
+  /** Scans the file, indexing each record; a truncated last record is cut off */
+  private void buildIndex() throws IOException {
+    long offset = 0;
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      while (true) {
+        int length;
+        try {
+          length = in.readInt();
+        } catch (EOFException e) {
+          break;
+        }
+        if (length < 4 || offset + 4 + length > file.length()) {
+          break; // Partially written record
+        }
+
+        int cep = in.readInt();
+        in.skipNBytes(length - 4);
+        index(cep, offset);
+        offset += 4 + length;
+      }
+    }
+
+    fileSize = offset;
+    if (offset < file.length()) {
+      System.err.println("Truncating incomplete record at the end of " + file);
+      openChannel().truncate(offset);
+    }
+  }
+
+  private FileChannel openChannel() throws IOException {
+    if (channel == null) {
+      channel =
+          FileChannel.open(
+              file.toPath(),
+              StandardOpenOption.CREATE,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE);
+    }
+    return channel;
+  }
+
+  private static byte[] encode(int cep, Address address) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0); // Length, filled in below
+    out.writeInt(cep);
+    out.writeUTF(nullToEmpty(address.getAddress()));
+    out.writeUTF(nullToEmpty(address.getHouseComplement()));
+    out.writeUTF(nullToEmpty(address.getNeighborhood()));
+    out.writeUTF(nullToEmpty(address.getCityName()));
+    out.writeUTF((address.getState() != null) ? address.getState().getAbbreviation() : "");
+    out.flush();
+
+    byte[] record = bytes.toByteArray();
+    ByteBuffer.wrap(record).putInt(0, record.length - 4);
+    return record;
+  }
+
+  private static Address readRecord(FileChannel readChannel, long offset) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(8);
+    readFully(readChannel, header, offset);
+    int length = header.getInt(0);
+    int cep = header.getInt(4);
+
+    ByteBuffer payload = ByteBuffer.allocate(length - 4);
+    readFully(readChannel, payload, offset + 8);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload.array()));
+
+    Address address = new Address();
+    address.setAddress(in.readUTF());
+    address.setHouseComplement(in.readUTF());
+    address.setNeighborhood(in.readUTF());
+    address.setCityName(in.readUTF());
+    String state = in.readUTF();
+    address.setState(state.isEmpty() ? null : BrazilianState.fromAbbreviation(state));
+    String numericCep = String.format("%08d", cep);
+    address.setCepNumber(numericCep.substring(0, 5) + "-" + numericCep.substring(5));
+    address.setHouseNumber("");
+    return address;
+  }
+
+  private static void readFully(FileChannel readChannel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      if (readChannel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException("Unexpected end of CEP store");
+      }
+    }
+  }
+
+  private static String nullToEmpty(String value) {
+    return (value == null) ? "" : value;
+  }
+
+  /** Linear probing; returns the slot holding the CEP or the empty slot where it belongs */
+  private int find(int cep) {
+    int mask = keys.length - 1;
+    int slot = (cep * 0x9E3779B9) >>> 1 & mask;
+    while (keys[slot] != EMPTY && keys[slot] != cep) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void index(int cep, long offset) {
+    int slot = find(cep);
+    if (keys[slot] == EMPTY) {
+      keys[slot] = cep;
+      size++;
+    }
+    offsets[slot] = offset;
+
+    // Keep the table at most half full so probe sequences stay short
+    if (size * 2 > keys.length) {
+      rehash(keys.length * 2);
+    }
+  }
+
+  private void rehash(int newSize) {
+    int[] oldKeys = keys;
+    long[] oldOffsets = offsets;
+    keys = new int[newSize];
+    offsets = new long[newSize];
+    Arrays.fill(keys, EMPTY);
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != EMPTY) {
+        int slot = find(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        offsets[slot] = oldOffsets[i];
+      }
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package br.com.devcoelho.service;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker guarding calls to an external dependency.
+ *
+ * <p>While {@link State#CLOSED}, calls go through. After a number of consecutive failures the
+ * breaker opens, and calls fail fast without touching the dependency. Once the open period has
+ * passed, the breaker goes half-open and lets a single probe call through: a success closes it
+ * again, a failure re-opens it for another period. Safe for concurrent use.
+ *
+ * <p>Callers ask {@link #tryAcquire()} before each call and report the outcome with {@link
+ * #recordSuccess()} or {@link #recordFailure()}.
+ */
+public class CircuitBreaker {
+
+  public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+  public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+
+  private final int failureThreshold;
+  private final long openNanos;
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private long openedAt;
+  private boolean probeInFlight;
+
+  private long rejectedCalls;
+  private long timesOpened;
+
+  public CircuitBreaker() {
+    this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION);
+  }
+
+  /**
+   * Creates a breaker
+   *
+   * @param failureThreshold the number of consecutive failures that opens the breaker
+   * @param openDuration how long the breaker stays open before probing the dependency
+   */
+  public CircuitBreaker(int failureThreshold, Duration openDuration) {
+    if (failureThreshold <= 0 || openDuration.isNegative()) {
+      throw new IllegalArgumentException("Threshold must be positive and duration non-negative");
+    }
+
+    this.failureThreshold = failureThreshold;
+    this.openNanos = openDuration.toNanos();
+  }
+
+  /**
+   * Asks for permission to call the dependency
+   *
+   * @return true if the call may go ahead, and its outcome must then be recorded; false if it
+   *     should fail fast
+   */
+  public synchronized boolean tryAcquire() {
+    if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+      state = State.HALF_OPEN;
+      probeInFlight = false;
+    }
+
+    switch (state) {
+      case CLOSED:
+        return true;
+      case HALF_OPEN:
+        if (!probeInFlight) {
+          probeInFlight = true;
+          return true;
+        }
+        break;
+      default:
+        break;
+    }
+    rejectedCalls++;
+    return false;
+  }
+
+  /** Records a call that succeeded, closing a half-open breaker */
+  public synchronized void recordSuccess() {
+    consecutiveFailures = 0;
+    if (state == State.HALF_OPEN) {
+      state = State.CLOSED;
+      probeInFlight = false;
+    }
+  }
+
+  /** Records a call that failed, opening the breaker once the threshold is reached */
+  public synchronized void recordFailure() {
+    consecutiveFailures++;
+    if (state == State.HALF_OPEN
+        || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+      state = State.OPEN;
+      openedAt = System.nanoTime();
+      probeInFlight = false;
+      timesOpened++;
+    }
+  }
+
+  /**
+   * Gets the current state, as of the last call; an open breaker whose period has passed reports
+   * OPEN until the next call probes the dependency
+   *
+   * @return the breaker state
+   */
+  public synchronized State getState() {
+    return state;
+  }
+
+  /** Gets the number of calls failed fast while the breaker was open */
+  public synchronized long getRejectedCalls() {
+    return rejectedCalls;
+  }
+
+  /** Gets the number of times the breaker has opened */
+  public synchronized long getTimesOpened() {
+    return timesOpened;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "CircuitBreaker[state="
+        + state
+        + ", consecutiveFailures="
+        + consecutiveFailures
+        + ", timesOpened="
+        + timesOpened
+        + ", rejected="
+        + rejectedCalls
+        + "]";
+  }
+
+  /** Breaker states */
+  public enum State {
+    /** Calls go through */
+    CLOSED,
+    /** Calls fail fast */
+    OPEN,
+    /** A single probe call is let through to test the dependency */
+    HALF_OPEN
+  }
+}
@@ -0,0 +1,91 @@
+package br.com.devcoelho.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of call latencies with power-of-two microsecond buckets.
+ *
+ * <p>Bucket {@code i} counts latencies below {@code 2^i} microseconds and at or above the previous
+ * bucket's bound, so percentiles are reported as the bucket's upper bound and are at most twice
+ * the real value. Recording is lock-free and allocation-free, so it can sit on every call.
+ */
+public class LatencyHistogram {
+
+  private static final int BUCKETS = 40;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong totalMicros = new AtomicLong();
+  private final AtomicLong maxMicros = new AtomicLong();
+
+  /**
+   * Records one call
+   *
+   * @param nanos the call latency in nanoseconds
+   */
+  public void record(long nanos) {
+    long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+    int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    counts.incrementAndGet(bucket);
+    totalMicros.addAndGet(micros);
+    maxMicros.accumulateAndGet(micros, Math::max);
+  }
+
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  public double getMeanMillis() {
+    long count = getCount();
+    return (count == 0) ? 0 : totalMicros.get() / 1000.0 / count;
+  }
+
+  public double getMaxMillis() {
+    return maxMicros.get() / 1000.0;
+  }
+
+  /**
+   * Gets a latency percentile
+   *
+   * @param percentile the percentile between 0 and 1, e.g. 0.99
+   * @return the upper bound of the bucket holding the percentile, in milliseconds, or 0 if nothing
+   *     was recorded
+   */
+  public double getPercentileMillis(double percentile) {
+    long[] snapshot = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      count += snapshot[i];
+    }
+    if (count == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(percentile * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min((1L << i) / 1000.0, getMaxMillis());
+      }
+    }
+    return getMaxMillis();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "LatencyHistogram[count=%d, mean=%.1fms, p50=%.1fms, p99=%.1fms, max=%.1fms]",
+        getCount(),
+        getMeanMillis(),
+        getPercentileMillis(0.5),
+        getPercentileMillis(0.99),
+        getMaxMillis());
+  }
+}
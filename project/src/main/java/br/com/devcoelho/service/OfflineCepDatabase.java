@@ -0,0 +1,264 @@
+package br.com.devcoelho.service;
+
+import br.com.devcoelho.Address;
+import br.com.devcoelho.BrazilianState;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local CEP dataset for environments without outbound network.
+ *
+ * <p>Loaded from a pipe-separated file with lines of the form {@code
+ * cep|street|complement|neighborhood|city|uf}. The first field is either a single CEP ({@code
+ * 01001-000}) or a range of two CEPs ({@code 13840-000 13849-999}), as used for cities where
+ * only the locality is known. After non-digits are stripped, 8 digits make a CEP and 16 digits
+ * make a range. Ranges are expected not to overlap.
+ *
+ * <p>Exact CEPs are kept in a sorted {@code int[]} and found by binary search. Ranges are kept in
+ * sorted start/end arrays, and the range containing a CEP is found by binary search on the
+ * starts. Text fields are interned into a string table and referenced by int ids, so each entry
+ * costs a few ints. Lookups don't touch the disk or the network. Immutable once loaded, so safe
+ * for concurrent use.
+ */
+public class OfflineCepDatabase {
+
+  private final String[] strings;
+
+  // Exact CEPs, sorted, with parallel field columns (string table ids)
+  private final int[] ceps;
+  private final int[] streets;
+  private final int[] complements;
+  private final int[] neighborhoods;
+  private final int[] cities;
+  private final byte[] states;
+
+  // CEP ranges, sorted by start, with their locality
+  private final int[] rangeStarts;
+  private final int[] rangeEnds;
+  private final int[] rangeCities;
+  private final byte[] rangeStates;
+
+  private OfflineCepDatabase(Builder builder) {
+    this.strings = builder.strings.toArray(new String[0]);
+
+    int count = builder.exact.size();
+    Integer[] order = sortedOrder(builder.exact);
+    this.ceps = new int[count];
+    this.streets = new int[count];
+    this.complements = new int[count];
+    this.neighborhoods = new int[count];
+    this.cities = new int[count];
+    this.states = new byte[count];
+    for (int i = 0; i < count; i++) {
+      int[] row = builder.exact.get(order[i]);
+      ceps[i] = row[0];
+      streets[i] = row[1];
+      complements[i] = row[2];
+      neighborhoods[i] = row[3];
+      cities[i] = row[4];
+      states[i] = (byte) row[5];
+    }
+
+    int rangeCount = builder.ranges.size();
+    Integer[] rangeOrder = sortedOrder(builder.ranges);
+    this.rangeStarts = new int[rangeCount];
+    this.rangeEnds = new int[rangeCount];
+    this.rangeCities = new int[rangeCount];
+    this.rangeStates = new byte[rangeCount];
+    for (int i = 0; i < rangeCount; i++) {
+      int[] row = builder.ranges.get(rangeOrder[i]);
+      rangeStarts[i] = row[0];
+      rangeEnds[i] = row[1];
+      rangeCities[i] = row[2];
+      rangeStates[i] = (byte) row[3];
+    }
+  }
+
+  /**
+   * Loads a dataset file
+   *
+   * @param fileName the pipe-separated dataset
+   * @return the loaded database
+   * @throws IOException if the file can't be read
+   */
+  public static OfflineCepDatabase load(String fileName) throws IOException {
+    Builder builder = new Builder();
+    int skipped = 0;
+
+    try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] parts = line.split("\\|", -1);
+        if (parts.length < 6) {
+          skipped++;
+          continue;
+        }
+
+        String digits = parts[0].replaceAll("\\D", "");
+        int state = stateOrdinal(parts[5]);
+        if (digits.length() == 8) {
+          builder.addExact(Integer.parseInt(digits), parts[1], parts[2], parts[3], parts[4], state);
+        } else if (digits.length() == 16) {
+          int start = Integer.parseInt(digits.substring(0, 8));
+          int end = Integer.parseInt(digits.substring(8));
+          if (start > end) {
+            skipped++;
+            continue;
+          }
+          builder.addRange(start, end, parts[4], state);
+        } else {
+          skipped++;
+        }
+      }
+    }
+
+    OfflineCepDatabase database = builder.build();
+    System.out.println(
+        "Loaded "
+            + database.size()
+            + " CEPs and "
+            + database.rangeCount()
+            + " CEP ranges from "
+            + fileName
+            + ((skipped > 0) ? " (" + skipped + " invalid lines skipped)" : ""));
+    return database;
+  }
+
+  /**
+   * Gets the number of exact CEPs
+   *
+   * @return the number of CEPs with a full address
+   */
+  public int size() {
+    return ceps.length;
+  }
+
+  /**
+   * Gets the number of CEP ranges
+   *
+   * @return the number of ranges with a locality
+   */
+  public int rangeCount() {
+    return rangeStarts.length;
+  }
+
+  /**
+   * Looks up a CEP, first as an exact CEP and then within the ranges
+   *
+   * @param cep the CEP as an int
+   * @return a new Address, with only city and state for a range match, or null if unknown
+   */
+  public Address find(int cep) {
+    int index = Arrays.binarySearch(ceps, cep);
+    if (index >= 0) {
+      return toAddress(
+          cep,
+          strings[streets[index]],
+          strings[complements[index]],
+          strings[neighborhoods[index]],
+          strings[cities[index]],
+          states[index]);
+    }
+
+    // Last range starting at or before the CEP
+    int range = Arrays.binarySearch(rangeStarts, cep);
+    if (range < 0) {
+      range = -range - 2;
+    }
+    if (range >= 0 && cep <= rangeEnds[range]) {
+      return toAddress(cep, "", "", "", strings[rangeCities[range]], rangeStates[range]);
+    }
+    return null;
+  }
+
+  private static Address toAddress(
+      int cep, String street, String complement, String neighborhood, String city, byte state) {
+    Address address = new Address();
+    address.setAddress(street);
+    address.setHouseComplement(complement);
+    address.setNeighborhood(neighborhood);
+    address.setCityName(city);
+    address.setState((state >= 0) ? BrazilianState.values()[state] : null);
+    address.setCepNumber(formatCep(cep));
+    address.setHouseNumber(""); // Number needs to be provided by the user
+    return address;
+  }
+
+  /** Formats a CEP as 00000-000 without going through String.format */
+  private static String formatCep(int cep) {
+    char[] formatted = new char[9];
+    for (int i = 8; i >= 0; i--) {
+      if (i == 5) {
+        formatted[i] = '-';
+        continue;
+      }
+      formatted[i] = (char) ('0' + cep % 10);
+      cep /= 10;
+    }
+    return new String(formatted);
+  }
+
+  private static int stateOrdinal(String abbreviation) {
+    BrazilianState state = BrazilianState.fromAbbreviation(abbreviation.trim());
+    return (state != null) ? state.ordinal() : -1;
+  }
+
+  /** Gets the row indexes ordered by the rows' first column (the CEP or range start) */
+  private static Integer[] sortedOrder(List<int[]> rows) {
+    Integer[] order = new Integer[rows.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Integer.compare(rows.get(a)[0], rows.get(b)[0]));
+    return order;
+  }
+
+  /** Collects rows and interns strings while a dataset is read */
+  private static class Builder {
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final Map<Integer, Integer> exactRows = new HashMap<>();
+    private final List<int[]> exact = new ArrayList<>();
+    private final List<int[]> ranges = new ArrayList<>();
+
+    void addExact(
+        int cep, String street, String complement, String neighborhood, String city, int state) {
+      int[] row = {
+        cep, intern(street), intern(complement), intern(neighborhood), intern(city), state
+      };
+
+      // A repeated CEP replaces the earlier line, so binary search never sees duplicates
+      Integer existing = exactRows.putIfAbsent(cep, exact.size());
+      if (existing != null) {
+        exact.set(existing, row);
+      } else {
+        exact.add(row);
+      }
+    }
+
+    void addRange(int start, int end, String city, int state) {
+      ranges.add(new int[] {start, end, intern(city), state});
+    }
+
+    OfflineCepDatabase build() {
+      return new OfflineCepDatabase(this);
+    }
+
+    private int intern(String value) {
+      String trimmed = value.trim();
+      Integer id = stringIds.get(trimmed);
+      if (id == null) {
+        id = strings.size();
+        strings.add(trimmed);
+        stringIds.put(trimmed, id);
+      }
+      return id;
+    }
+  }
+}
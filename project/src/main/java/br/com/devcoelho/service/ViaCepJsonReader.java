@@ -0,0 +1,297 @@
+package br.com.devcoelho.service;
+
+import br.com.devcoelho.Address;
+import br.com.devcoelho.BrazilianState;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming reader for ViaCEP responses.
+ *
+ * <p>Makes a single pass over the UTF-8 response bytes, picking out {@code logradouro}, {@code
+ * complemento}, {@code bairro}, {@code localidade}, {@code uf} and {@code erro} and skipping
+ * everything else, nested values included. Keys are matched against their bytes, so the only
+ * Strings created are the values of those fields, and no DOM or copy of the body as a String is
+ * built. Missing fields are read as empty.
+ */
+final class ViaCepJsonReader {
+
+  private static final byte[][] FIELDS = {
+    ascii("logradouro"), ascii("complemento"), ascii("bairro"), ascii("localidade"), ascii("uf"),
+  };
+  private static final int ERRO = FIELDS.length;
+  private static final byte[] ERRO_KEY = ascii("erro");
+  private static final byte[] TRUE = ascii("true");
+  private static final int UNKNOWN = -1;
+
+  private final byte[] body;
+  private int position;
+
+  private ViaCepJsonReader(byte[] body) {
+    this.body = body;
+  }
+
+  /**
+   * Reads a ViaCEP response
+   *
+   * @param body the response body, in UTF-8
+   * @param formattedCep the CEP the response is for, as 00000-000
+   * @return the address, or null if the response reports that the CEP doesn't exist
+   * @throws IOException if the body isn't a JSON object
+   */
+  static Address read(byte[] body, String formattedCep) throws IOException {
+    return new ViaCepJsonReader(body).readAddress(formattedCep);
+  }
+
+  private Address readAddress(String formattedCep) throws IOException {
+    String[] values = new String[FIELDS.length];
+    boolean erro = false;
+
+    expect('{');
+    if (peek() == '}') {
+      position++;
+    } else {
+      while (true) {
+        int field = readKey();
+        expect(':');
+        if (field == ERRO) {
+          erro = readTrue();
+        } else if (field != UNKNOWN && peek() == '"') {
+          values[field] = readString();
+        } else {
+          skipValue();
+        }
+
+        byte next = next();
+        if (next == '}') {
+          break;
+        }
+        if (next != ',') {
+          throw malformed();
+        }
+      }
+    }
+
+    if (erro) {
+      return null;
+    }
+
+    Address address = new Address();
+    address.setAddress(orEmpty(values[0]));
+    address.setNeighborhood(orEmpty(values[2]));
+    address.setCityName(orEmpty(values[3]));
+    address.setState(BrazilianState.fromAbbreviation(orEmpty(values[4])));
+    address.setCepNumber(formattedCep);
+
+    // Some fields aren't populated by the API
+    address.setHouseNumber(""); // Number needs to be provided by the user
+    address.setHouseComplement(orEmpty(values[1])); // May be empty
+    return address;
+  }
+
+  /** Reads an object key and identifies it without decoding it */
+  private int readKey() throws IOException {
+    expect('"');
+    int start = position;
+    skipStringBody();
+    int length = position - 1 - start;
+
+    for (int field = 0; field < FIELDS.length; field++) {
+      if (matches(FIELDS[field], start, length)) {
+        return field;
+      }
+    }
+    return matches(ERRO_KEY, start, length) ? ERRO : UNKNOWN;
+  }
+
+  private boolean matches(byte[] key, int start, int length) {
+    if (key.length != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (body[start + i] != key[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Reads {@code erro}, which ViaCEP sends either as a boolean or as the string "true" */
+  private boolean readTrue() throws IOException {
+    if (peek() == '"') {
+      return "true".equals(readString());
+    }
+    int start = position;
+    skipValue();
+    return matches(TRUE, start, position - start);
+  }
+
+  private String readString() throws IOException {
+    expect('"');
+    int start = position;
+    boolean escaped = false;
+    while (true) {
+      byte b = byteAt(position++);
+      if (b == '"') {
+        break;
+      }
+      if (b == '\\') {
+        escaped = true;
+        position++;
+      }
+    }
+
+    int end = position - 1;
+    if (!escaped) {
+      return new String(body, start, end - start, StandardCharsets.UTF_8);
+    }
+    return unescape(start, end);
+  }
+
+  /** Decodes a string body containing escapes; rare in ViaCEP responses */
+  private String unescape(int start, int end) throws IOException {
+    StringBuilder value = new StringBuilder(end - start);
+    int segment = start;
+    int i = start;
+    while (i < end) {
+      if (body[i] != '\\') {
+        i++;
+        continue;
+      }
+
+      value.append(new String(body, segment, i - segment, StandardCharsets.UTF_8));
+      byte escape = byteAt(i + 1);
+      i += 2;
+      switch (escape) {
+        case 'b':
+          value.append('\b');
+          break;
+        case 'f':
+          value.append('\f');
+          break;
+        case 'n':
+          value.append('\n');
+          break;
+        case 'r':
+          value.append('\r');
+          break;
+        case 't':
+          value.append('\t');
+          break;
+        case 'u':
+          if (i + 4 > end) {
+            throw malformed();
+          }
+          try {
+            String hex = new String(body, i, 4, StandardCharsets.US_ASCII);
+            value.append((char) Integer.parseInt(hex, 16));
+          } catch (NumberFormatException e) {
+            throw malformed();
+          }
+          i += 4;
+          break;
+        default:
+          value.append((char) escape); // \" \\ \/
+          break;
+      }
+      segment = i;
+    }
+    value.append(new String(body, segment, end - segment, StandardCharsets.UTF_8));
+    return value.toString();
+  }
+
+  /** Skips to just past the closing quote of a string whose opening quote was consumed */
+  private void skipStringBody() throws IOException {
+    while (true) {
+      byte b = byteAt(position++);
+      if (b == '"') {
+        return;
+      }
+      if (b == '\\') {
+        position++;
+      }
+    }
+  }
+
+  /** Skips any value: a string, an object or array with everything in it, or a literal */
+  private void skipValue() throws IOException {
+    byte first = peek();
+    if (first == '"') {
+      position++;
+      skipStringBody();
+      return;
+    }
+
+    if (first == '{' || first == '[') {
+      int depth = 0;
+      do {
+        byte b = byteAt(position++);
+        if (b == '"') {
+          skipStringBody();
+        } else if (b == '{' || b == '[') {
+          depth++;
+        } else if (b == '}' || b == ']') {
+          depth--;
+        }
+      } while (depth > 0);
+      return;
+    }
+
+    // Number, true, false or null
+    int start = position;
+    while (position < body.length) {
+      byte b = body[position];
+      if (b == ',' || b == '}' || b == ']' || isWhitespace(b)) {
+        break;
+      }
+      position++;
+    }
+    if (position == start) {
+      throw malformed();
+    }
+  }
+
+  private void expect(char expected) throws IOException {
+    if (next() != expected) {
+      throw malformed();
+    }
+  }
+
+  /** Gets the next non-whitespace byte and moves past it */
+  private byte next() throws IOException {
+    byte b = peek();
+    position++;
+    return b;
+  }
+
+  /** Gets the next non-whitespace byte without moving past it */
+  private byte peek() throws IOException {
+    while (isWhitespace(byteAt(position))) {
+      position++;
+    }
+    return body[position];
+  }
+
+  private byte byteAt(int index) throws IOException {
+    if (index >= body.length) {
+      throw malformed();
+    }
+    return body[index];
+  }
+
+  private IOException malformed() {
+    return new IOException("Malformed ViaCEP response at byte " + position);
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+  }
+
+  private static String orEmpty(String value) {
+    return (value == null) ? "" : value;
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
+}
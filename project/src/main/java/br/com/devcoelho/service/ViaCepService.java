@@ -1,21 +1,202 @@
 package br.com.devcoelho.service;
 
 import br.com.devcoelho.Address;
-import br.com.devcoelho.BrazilianState;
-import java.io.BufferedReader;
+import br.com.devcoelho.exceptions.ServiceUnavailableException;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import org.json.JSONObject;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service class responsible for interacting with the ViaCEP API to validate and retrieve address
- * information based on a CEP (Brazilian postal code)
+ * information based on a CEP (Brazilian postal code).
+ *
+ * <p>Lookups go through a {@link CepCache} first, so repeated lookups of the same CEP, including
+ * CEPs that don't exist, don't hit the network again. Network failures aren't cached. Found
+ * addresses are also kept in a {@link CepStore} on disk, which is consulted before the network so
+ * the cache survives restarts.
+ *
+ * <p>In offline mode, lookups are answered from a local {@link OfflineCepDatabase} first, and the
+ * API is only used for CEPs missing from it if remote fallback is enabled. The default service
+ * enables offline mode when the {@code cep.database} system property names a dataset file; set
+ * {@code cep.remoteFallback=false} to never call the API.
+ *
+ * <p>The API is called through a shared {@link HttpClient}, which keeps connections alive and
+ * negotiates HTTP/2. {@link #getAddressByCepAsync} doesn't block; concurrent lookups of the same
+ * CEP share a single in-flight request. The API URL can be pointed at a local stub server.
+ *
+ * <p>Each API call must finish within a latency budget, and calls go through a {@link
+ * CircuitBreaker}: once the API keeps failing, lookups that would need it fail fast with a {@link
+ * ServiceUnavailableException} instead of waiting, until a probe call succeeds. Call latencies
+ * are recorded in a {@link LatencyHistogram}.
  */
 public class ViaCepService {
 
-  private static final String VIA_CEP_API_URL = "https://viacep.com.br/ws/%s/json/";
+  public static final String VIA_CEP_API_URL = "https://viacep.com.br/ws/%s/json/";
+
+  public static final Duration DEFAULT_LATENCY_BUDGET = Duration.ofSeconds(2);
+
+  private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+  private final String apiUrl;
+  private final Duration latencyBudget;
+  private final CircuitBreaker circuitBreaker;
+  private final LatencyHistogram latencies = new LatencyHistogram();
+  private final Map<Integer, CompletableFuture<Address>> inFlight = new ConcurrentHashMap<>();
+  private final CepCache cache;
+  private final CepStore store;
+  private final OfflineCepDatabase offlineDatabase;
+  private final boolean remoteFallback;
+
+  /**
+   * Creates a service backed by the default on-disk store, which all default services share, in
+   * offline mode if the {@code cep.database} system property is set
+   */
+  public ViaCepService() {
+    this(
+        new CepCache(),
+        CepStore.openDefault(),
+        loadConfiguredDatabase(),
+        !"false".equalsIgnoreCase(System.getProperty("cep.remoteFallback")));
+  }
+
+  /**
+   * Creates a service with a specific cache and no on-disk store
+   *
+   * @param cache the cache consulted before the API
+   */
+  public ViaCepService(CepCache cache) {
+    this(cache, null);
+  }
+
+  /**
+   * Creates a service with a specific cache and on-disk store
+   *
+   * @param cache the in-memory cache consulted first
+   * @param store the on-disk store consulted before the API, or null for none
+   */
+  public ViaCepService(CepCache cache, CepStore store) {
+    this(cache, store, null, true);
+  }
+
+  /**
+   * Creates a service that can answer from a local dataset
+   *
+   * @param cache the in-memory cache consulted before the store and the API
+   * @param store the on-disk store consulted before the API, or null for none
+   * @param offlineDatabase the local dataset consulted first, or null for none
+   * @param remoteFallback whether CEPs missing from the dataset may be looked up remotely
+   */
+  public ViaCepService(
+      CepCache cache, CepStore store, OfflineCepDatabase offlineDatabase, boolean remoteFallback) {
+    this(VIA_CEP_API_URL, cache, store, offlineDatabase, remoteFallback);
+  }
+
+  /**
+   * Creates a service calling a specific API URL, e.g. a local stub server
+   *
+   * @param apiUrl the lookup URL, with {@code %s} where the 8-digit CEP goes
+   * @param cache the in-memory cache consulted before the store and the API
+   * @param store the on-disk store consulted before the API, or null for none
+   * @param offlineDatabase the local dataset consulted first, or null for none
+   * @param remoteFallback whether CEPs missing from the dataset may be looked up remotely
+   */
+  public ViaCepService(
+      String apiUrl,
+      CepCache cache,
+      CepStore store,
+      OfflineCepDatabase offlineDatabase,
+      boolean remoteFallback) {
+    this(
+        apiUrl,
+        cache,
+        store,
+        offlineDatabase,
+        remoteFallback,
+        DEFAULT_LATENCY_BUDGET,
+        new CircuitBreaker());
+  }
+
+  /**
+   * Creates a service with a specific latency budget and circuit breaker
+   *
+   * @param apiUrl the lookup URL, with {@code %s} where the 8-digit CEP goes
+   * @param cache the in-memory cache consulted before the store and the API
+   * @param store the on-disk store consulted before the API, or null for none
+   * @param offlineDatabase the local dataset consulted first, or null for none
+   * @param remoteFallback whether CEPs missing from the dataset may be looked up remotely
+   * @param latencyBudget the time an API call may take before it counts as failed
+   * @param circuitBreaker the breaker guarding the API
+   */
+  public ViaCepService(
+      String apiUrl,
+      CepCache cache,
+      CepStore store,
+      OfflineCepDatabase offlineDatabase,
+      boolean remoteFallback,
+      Duration latencyBudget,
+      CircuitBreaker circuitBreaker) {
+    this.apiUrl = apiUrl;
+    this.latencyBudget = latencyBudget;
+    this.circuitBreaker = circuitBreaker;
+    this.cache = cache;
+    this.store = store;
+    this.offlineDatabase = offlineDatabase;
+    this.remoteFallback = remoteFallback;
+  }
+
+  /**
+   * Creates a service that answers only from a local dataset
+   *
+   * @param offlineDatabase the local dataset
+   * @return a service that never calls the API
+   */
+  public static ViaCepService offline(OfflineCepDatabase offlineDatabase) {
+    return new ViaCepService(new CepCache(), null, offlineDatabase, false);
+  }
+
+  /**
+   * Gets the cache in front of the API, e.g. to read its hit/miss counts
+   *
+   * @return the lookup cache
+   */
+  public CepCache getCache() {
+    return cache;
+  }
+
+  /**
+   * Gets the on-disk store, e.g. to pre-warm it from a bulk file
+   *
+   * @return the store, or null if the service has none
+   */
+  public CepStore getStore() {
+    return store;
+  }
+
+  /**
+   * Gets the breaker guarding the API, e.g. to report its state
+   *
+   * @return the circuit breaker
+   */
+  public CircuitBreaker getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  /**
+   * Gets the latencies of the API calls made so far, failed ones included
+   *
+   * @return the latency histogram
+   */
+  public LatencyHistogram getLatencyHistogram() {
+    return latencies;
+  }
 
   /**
    * Validates and retrieves address information for a given CEP
@@ -24,81 +205,206 @@ public class ViaCepService {
    * @return Address object with populated data if successful, null otherwise
    */
   public Address getAddressByCep(String cep) {
+    try {
+      return getAddressByCepAsync(cep).join();
+    } catch (CompletionException e) {
+      System.err.println("Error looking up CEP " + cep + ": " + e.getCause());
+      return null;
+    }
+  }
+
+  /**
+   * Retrieves address information for a given CEP without blocking
+   *
+   * @param cep the CEP to retrieve information for (format: 00000000 or 00000-000)
+   * @return a future completed with a new Address, or with null if the CEP is malformed or doesn't
+   *     exist; completed exceptionally if the API couldn't be reached within the latency budget,
+   *     or with a {@link ServiceUnavailableException} while the circuit breaker is open
+   */
+  public CompletableFuture<Address> getAddressByCepAsync(String cep) {
     // Remove any non-numeric characters from the CEP
     String numericCep = cep.replaceAll("\\D", "");
 
     // Validate CEP format (must be 8 digits)
     if (numericCep.length() != 8) {
-      return null;
+      return CompletableFuture.completedFuture(null);
     }
 
-    try {
-      // Format the URL with the cleaned CEP
-      String apiUrl = String.format(VIA_CEP_API_URL, numericCep);
-      URL url = new URL(apiUrl);
-
-      // Open connection
-      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-      connection.setRequestMethod("GET");
-      connection.setConnectTimeout(5000);
-      connection.setReadTimeout(5000);
-
-      // Check for successful response
-      int responseCode = connection.getResponseCode();
-      if (responseCode != 200) {
-        return null;
+    int cepKey = Integer.parseInt(numericCep);
+    if (offlineDatabase != null) {
+      Address local = offlineDatabase.find(cepKey);
+      if (local != null || !remoteFallback) {
+        return CompletableFuture.completedFuture(local);
       }
+    }
 
-      // Read response
-      BufferedReader reader =
-          new BufferedReader(new InputStreamReader(connection.getInputStream()));
-      StringBuilder response = new StringBuilder();
-      String line;
+    CepCache.Lookup cached = cache.get(cepKey);
+    if (cached != null) {
+      return CompletableFuture.completedFuture(cached.getAddress());
+    }
 
-      while ((line = reader.readLine()) != null) {
-        response.append(line);
-      }
-      reader.close();
+    Address stored = (store != null) ? store.get(cepKey) : null;
+    if (stored != null) {
+      cache.put(cepKey, stored);
+      return CompletableFuture.completedFuture(stored);
+    }
 
-      // Parse JSON response
-      JSONObject jsonResponse = new JSONObject(response.toString());
+    // Every caller gets its own copy, since callers fill in the house number
+    return fetchCoalesced(cepKey, numericCep)
+        .thenApply(address -> (address != null) ? copyOf(address) : null);
+  }
 
-      // Check if there's an error in the response
-      if (jsonResponse.has("erro") && jsonResponse.getBoolean("erro")) {
-        return null;
-      }
+  /**
+   * Fetches a CEP from the API, sharing one request between concurrent lookups of the same CEP
+   *
+   * @param cepKey the CEP as an int
+   * @param numericCep the CEP as 8 digits
+   * @return the in-flight request
+   */
+  private CompletableFuture<Address> fetchCoalesced(int cepKey, String numericCep) {
+    CompletableFuture<Address> request = new CompletableFuture<>();
+    CompletableFuture<Address> existing = inFlight.putIfAbsent(cepKey, request);
+    if (existing != null) {
+      return existing;
+    }
+
+    if (!circuitBreaker.tryAcquire()) {
+      inFlight.remove(cepKey, request);
+      request.completeExceptionally(
+          new ServiceUnavailableException("ViaCEP is failing, lookups are paused"));
+      return request;
+    }
 
-      // Create and populate Address object
-      return mapJsonToAddress(jsonResponse, formatCep(numericCep));
+    CompletableFuture<Address> fetch;
+    try {
+      fetch = fetchAddress(numericCep);
+    } catch (RuntimeException e) {
+      circuitBreaker.recordFailure();
+      fetch = CompletableFuture.failedFuture(e);
+    }
 
+    fetch.whenComplete(
+        (address, failure) -> {
+          try {
+            // Cache before leaving the in-flight map, so later lookups find the result
+            if (failure == null) {
+              cacheResult(cepKey, address);
+            }
+          } catch (RuntimeException e) {
+            System.err.println("Error caching CEP " + numericCep + ": " + e.getMessage());
+          } finally {
+            // Coalesced callers wait on the request, so it is completed whatever happened above
+            inFlight.remove(cepKey, request);
+            if (failure == null) {
+              request.complete(address);
+            } else {
+              request.completeExceptionally(failure);
+            }
+          }
+        });
+    return request;
+  }
+
+  /** Caches an API result in memory and, for found CEPs, in the store */
+  private void cacheResult(int cepKey, Address address) {
+    if (address == null) {
+      cache.putNotFound(cepKey);
+    } else {
+      cache.put(cepKey, address);
+      if (store != null) {
+        store.put(cepKey, address);
+      }
+    }
+  }
+
+  /** Loads the dataset named by the cep.database system property, if any */
+  private static OfflineCepDatabase loadConfiguredDatabase() {
+    String fileName = System.getProperty("cep.database");
+    if (fileName == null || fileName.isEmpty()) {
+      return null;
+    }
+    try {
+      return OfflineCepDatabase.load(fileName);
     } catch (IOException e) {
-      e.printStackTrace();
+      System.err.println("Error loading CEP database " + fileName + ": " + e.getMessage());
       return null;
     }
   }
 
   /**
-   * Maps the JSON response from ViaCEP to an Address object
+   * Fetches the address of a CEP from the ViaCEP API
    *
-   * @param json the JSON response from ViaCEP
-   * @param formattedCep the formatted CEP (with hyphen)
-   * @return populated Address object
+   * @param numericCep the CEP as 8 digits
+   * @return a future completed with the address, or with null if the API says the CEP doesn't
+   *     exist; completed exceptionally if the API couldn't be reached or answered with an
+   *     unexpected status
    */
-  private Address mapJsonToAddress(JSONObject json, String formattedCep) {
-    Address address = new Address();
+  private CompletableFuture<Address> fetchAddress(String numericCep) {
+    HttpRequest request =
+        HttpRequest.newBuilder(URI.create(String.format(apiUrl, numericCep)))
+            .timeout(latencyBudget)
+            .header("Accept", "application/json")
+            .GET()
+            .build();
+
+    // The request timeout doesn't cover connecting, so the whole call is bounded as well
+    long start = System.nanoTime();
+    CompletableFuture<HttpResponse<byte[]>> exchange =
+        HttpClientHolder.CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+    return exchange
+        .thenApply(response -> parseResponse(response, numericCep))
+        .orTimeout(latencyBudget.toMillis(), TimeUnit.MILLISECONDS)
+        .whenComplete(
+            (address, failure) -> {
+              // Timing out only fails the returned future; cancelling aborts the exchange itself
+              exchange.cancel(true);
+              latencies.record(System.nanoTime() - start);
+              if (failure == null) {
+                circuitBreaker.recordSuccess();
+              } else {
+                circuitBreaker.recordFailure();
+              }
+            });
+  }
 
-    // Set address data from JSON response
-    address.setAddress(json.getString("logradouro"));
-    address.setNeighborhood(json.getString("bairro"));
-    address.setCityName(json.getString("localidade"));
-    address.setState(BrazilianState.fromAbbreviation(json.getString("uf")));
-    address.setCepNumber(formattedCep);
+  /**
+   * Parses a ViaCEP response
+   *
+   * @return the address, or null if the CEP doesn't exist
+   */
+  private Address parseResponse(HttpResponse<byte[]> response, String numericCep) {
+    // ViaCEP answers 400 for malformed CEPs
+    if (response.statusCode() == 400) {
+      return null;
+    }
 
-    // Some fields aren't populated by the API
-    address.setHouseNumber(""); // Number needs to be provided by the user
-    address.setHouseComplement(json.optString("complemento", "")); // May be empty
+    try {
+      if (response.statusCode() != 200) {
+        throw new IOException("ViaCEP answered with HTTP " + response.statusCode());
+      }
+      return ViaCepJsonReader.read(response.body(), formatCep(numericCep));
+    } catch (IOException e) {
+      throw new CompletionException(e);
+    }
+  }
 
-    return address;
+  /**
+   * Copies an address, so cached addresses aren't shared with callers
+   *
+   * @param address the address to copy
+   * @return a new Address with the same fields
+   */
+  static Address copyOf(Address address) {
+    Address copy = new Address();
+    copy.setAddress(address.getAddress());
+    copy.setHouseNumber(address.getHouseNumber());
+    copy.setHouseComplement(address.getHouseComplement());
+    copy.setNeighborhood(address.getNeighborhood());
+    copy.setCityName(address.getCityName());
+    copy.setState(address.getState());
+    copy.setCepNumber(address.getCepNumber());
+    copy.setAddressLocationT(address.getAddressLocationT());
+    return copy;
   }
 
   /**
@@ -110,4 +416,14 @@ public class ViaCepService {
   private String formatCep(String numericCep) {
     return numericCep.substring(0, 5) + "-" + numericCep.substring(5);
   }
+
+  /** Shared HTTP client, created on first use so offline-only services never start one */
+  private static final class HttpClientHolder {
+    private static final HttpClient CLIENT =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+  }
 }
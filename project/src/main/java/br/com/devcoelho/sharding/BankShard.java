@@ -0,0 +1,452 @@
+package br.com.devcoelho.sharding;
+
+import br.com.devcoelho.BankAccount;
+import br.com.devcoelho.exceptions.InvalidAccountException;
+import br.com.devcoelho.exceptions.InvalidOperationException;
+import br.com.devcoelho.persistence.FilePersistence;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * One partition of a {@link ShardedBank}.
+ *
+ * <p>A shard owns a subset of the accounts and a {@link ShardPipeline}. Every read and write of
+ * those accounts runs on the pipeline's business logic thread, so accounts never need locks and
+ * shards never contend with each other. State-changing commands are journaled and replicated by
+ * the pipeline before they are applied. Each shard persists to its own set of files.
+ *
+ * <p>The shard also remembers the ids of requests it has completed in an {@link IdempotencyCache},
+ * so retried operations are applied only once, the cross-shard transfers whose funds it holds, and
+ * the cross-shard transfers it has credited whose source hasn't committed them yet. Unlike request
+ * ids, credited transfers never expire: recovery relies on them to decide whether a held transfer
+ * is committed or released.
+ *
+ * <p>A snapshot is journaled as a {@code SNAPSHOT} command. Its accounts are saved by {@link
+ * FilePersistence} under the snapshot's id, and the rest of the shard's state goes to a state file
+ * carrying the same id, which is renamed into place once the accounts are committed. The journal
+ * is then compacted to start at the snapshot. Recovery restores the state saved with the accounts
+ * and replays the commands journaled after their snapshot.
+ */
+public class BankShard {
+
+  private static final String SNAPSHOT = "SNAPSHOT";
+  private static final String HELD = "HELD";
+  private static final String CREDITED = "CREDITED";
+  private static final String REQUEST = "REQUEST";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final long NO_SNAPSHOT = -1;
+
+  private final int index;
+  private final String filePrefix;
+  private final Map<Integer, BankAccount> accounts = new HashMap<>();
+  private final IdempotencyCache completedRequests =
+      new IdempotencyCache(IdempotencyCache.DEFAULT_CAPACITY, IdempotencyCache.DEFAULT_TTL_MILLIS);
+  private final Set<String> pendingRequests = new HashSet<>();
+  private final Map<String, HeldTransfer> heldTransfers = new LinkedHashMap<>();
+  private final Set<String> creditedTransfers = new LinkedHashSet<>();
+  private final ShardPipeline pipeline;
+
+  BankShard(int index, String filePrefix, Consumer<String> replicaSink) {
+    this.index = index;
+    this.filePrefix = filePrefix + "shard-" + index + "-";
+    this.pipeline =
+        new ShardPipeline(
+            "bank-shard-" + index,
+            ShardPipeline.DEFAULT_CAPACITY,
+            getJournalFile(),
+            replicaSink);
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * Gets the prefix of this shard's storage file names
+   *
+   * @return the file name prefix
+   */
+  public String getFilePrefix() {
+    return filePrefix;
+  }
+
+  /**
+   * Gets the name of this shard's journal file
+   *
+   * @return the journal file name
+   */
+  public String getJournalFile() {
+    return getFilePrefix() + "journal.txt";
+  }
+
+  /**
+   * Gets the name of the file holding the shard state saved with its accounts
+   *
+   * @return the state file name
+   */
+  public String getStateFile() {
+    return getFilePrefix() + "state.txt";
+  }
+
+  /**
+   * Runs an operation on the shard's business logic thread
+   *
+   * @param journalEntry the command as recorded in the journal, or null if it changes no state
+   * @param operation the operation; may only touch this shard's accounts
+   * @return a future completed with the operation's result
+   */
+  <T> CompletableFuture<T> submit(String journalEntry, Supplier<T> operation) {
+    return pipeline.submit(journalEntry, operation);
+  }
+
+  /** Adds an account to this shard; must run on the business logic thread */
+  void put(BankAccount account) {
+    accounts.put(account.getAccountNumber(), account);
+  }
+
+  /** Finds an account of this shard; must run on the business logic thread */
+  BankAccount get(int accountNumber) {
+    BankAccount account = accounts.get(accountNumber);
+    if (account == null) {
+      throw new InvalidAccountException("Account #" + accountNumber + " not found");
+    }
+    return account;
+  }
+
+  /**
+   * Claims a request id before applying its operation; must run on the business logic thread
+   *
+   * @param requestId the client request id
+   * @return false if the request was already completed, in which case it must not be applied
+   * @throws InvalidOperationException if the same request is still in progress
+   */
+  boolean beginRequest(String requestId) {
+    if (completedRequests.contains(requestId, System.currentTimeMillis())) {
+      return false;
+    }
+    if (!pendingRequests.add(requestId)) {
+      throw new InvalidOperationException("Request " + requestId + " is already in progress");
+    }
+    return true;
+  }
+
+  /** Records a claimed request as completed; must run on the business logic thread */
+  void completeRequest(String requestId) {
+    pendingRequests.remove(requestId);
+    completedRequests.record(requestId, System.currentTimeMillis());
+  }
+
+  /** Gives up a claimed request so it can be retried; must run on the business logic thread */
+  void abandonRequest(String requestId) {
+    pendingRequests.remove(requestId);
+  }
+
+  /** Remembers funds held for a transfer; must run on the business logic thread */
+  void addHeldTransfer(HeldTransfer transfer) {
+    heldTransfers.put(transfer.getTransferId(), transfer);
+  }
+
+  /**
+   * Forgets funds held for a transfer once it is committed or released; must run on the business
+   * logic thread
+   *
+   * @return the held transfer, or null if none is held under the id
+   */
+  HeldTransfer removeHeldTransfer(String transferId) {
+    return heldTransfers.remove(transferId);
+  }
+
+  /** Gets the transfers whose funds are held; must run on the business logic thread */
+  List<HeldTransfer> getHeldTransfers() {
+    return new ArrayList<>(heldTransfers.values());
+  }
+
+  /** Remembers that a transfer was credited here; must run on the business logic thread */
+  void addCreditedTransfer(String transferId) {
+    creditedTransfers.add(transferId);
+  }
+
+  /** Checks whether a transfer was credited here; must run on the business logic thread */
+  boolean isCredited(String transferId) {
+    return creditedTransfers.contains(transferId);
+  }
+
+  /**
+   * Forgets a credited transfer once its source has committed it; must run on the business logic
+   * thread
+   */
+  void removeCreditedTransfer(String transferId) {
+    creditedTransfers.remove(transferId);
+  }
+
+  /** Gets a snapshot of this shard's accounts; must run on the business logic thread */
+  List<BankAccount> snapshot() {
+    return new ArrayList<>(accounts.values());
+  }
+
+  /**
+   * Saves a snapshot of the shard, then compacts the journal to start at it
+   *
+   * @param snapshotId an id unique to the snapshot
+   * @return a future completed when the snapshot is saved, or failed if it couldn't be written
+   */
+  CompletableFuture<Void> save(long snapshotId) {
+    return pipeline.submitCheckpoint(
+        snapshotEntry(snapshotId),
+        () -> {
+          if (!saveSnapshot(snapshotId)) {
+            throw new IllegalStateException("Shard " + index + " could not be saved");
+          }
+          pipeline.compactJournal(snapshotEntry(snapshotId));
+          return null;
+        });
+  }
+
+  /** Writes the state file, then the accounts, then renames the state file into place */
+  private boolean saveSnapshot(long snapshotId) {
+    File stateFile = new File(getStateFile());
+    File temporary = new File(getStateFile() + TEMP_SUFFIX);
+    if (!writeState(temporary, snapshotId)
+        || !FilePersistence.saveAccounts(snapshot(), filePrefix, snapshotId)) {
+      return false;
+    }
+
+    try {
+      Files.move(
+          temporary.toPath(),
+          stateFile.toPath(),
+          StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+      return true;
+    } catch (IOException e) {
+      // The accounts are committed; recovery takes the state from the temporary file
+      System.err.println("Error renaming " + temporary + ": " + e.getMessage());
+      return false;
+    }
+  }
+
+  private boolean writeState(File file, long snapshotId) {
+    try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+      writer.println(snapshotEntry(snapshotId));
+      for (HeldTransfer transfer : heldTransfers.values()) {
+        writer.println(HELD + "|" + transfer.toJournalFields());
+      }
+      for (String transferId : creditedTransfers) {
+        writer.println(CREDITED + "|" + transferId);
+      }
+      completedRequests.forEach(
+          System.currentTimeMillis(),
+          (hash, recordedAt) -> writer.println(REQUEST + "|" + hash + "|" + recordedAt));
+      return !writer.checkError();
+    } catch (IOException e) {
+      System.err.println("Error saving shard state " + file + ": " + e.getMessage());
+      return false;
+    }
+  }
+
+  private static String snapshotEntry(long snapshotId) {
+    return SNAPSHOT + "|" + snapshotId;
+  }
+
+  /**
+   * Restores the state saved with the loaded accounts and gets the commands journaled after their
+   * snapshot; must run on the business logic thread, once the accounts are loaded
+   *
+   * @return the commands to replay, in journal order; all of them if no snapshot was saved
+   */
+  List<String> recoverJournal() {
+    long snapshotId = FilePersistence.loadSnapshotId(filePrefix);
+    if (snapshotId != NO_SNAPSHOT) {
+      loadState(snapshotId);
+    }
+
+    File file = new File(getJournalFile());
+    List<String> commands = new ArrayList<>();
+    if (!file.exists()) {
+      return commands;
+    }
+
+    String start = snapshotEntry(snapshotId);
+    boolean started = (snapshotId == NO_SNAPSHOT);
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.equals(start)) {
+          // Everything before the snapshot is already in the loaded accounts
+          commands.clear();
+          started = true;
+        } else if (!line.startsWith(SNAPSHOT + "|")) {
+          commands.add(line);
+        }
+      }
+    } catch (IOException e) {
+      System.err.println("Error reading journal " + file + ": " + e.getMessage());
+    }
+
+    if (!started) {
+      System.err.println("Journal " + file + " doesn't reach snapshot " + snapshotId);
+      commands.clear();
+    }
+    return commands;
+  }
+
+  /** Restores the held and credited transfers and request ids saved with a snapshot */
+  private void loadState(long snapshotId) {
+    File stateFile = new File(getStateFile());
+    File temporary = new File(getStateFile() + TEMP_SUFFIX);
+    if (!isStateOf(stateFile, snapshotId)) {
+      if (!isStateOf(temporary, snapshotId)) {
+        System.err.println("No shard state saved for snapshot " + snapshotId + " of " + filePrefix);
+        return;
+      }
+      // The save stopped after committing the accounts
+      try {
+        Files.move(
+            temporary.toPath(),
+            stateFile.toPath(),
+            StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (IOException e) {
+        System.err.println("Error completing " + stateFile + ": " + e.getMessage());
+        stateFile = temporary;
+      }
+    }
+
+    try (BufferedReader reader = new BufferedReader(new FileReader(stateFile))) {
+      reader.readLine(); // The snapshot line
+      String line;
+      while ((line = reader.readLine()) != null) {
+        restoreState(line.split("\\|"));
+      }
+    } catch (IOException e) {
+      System.err.println("Error reading shard state " + stateFile + ": " + e.getMessage());
+    }
+  }
+
+  private void restoreState(String[] parts) {
+    try {
+      if (parts[0].equals(HELD) && parts.length >= 5) {
+        HeldTransfer transfer = HeldTransfer.fromJournalFields(parts, 1);
+        heldTransfers.put(transfer.getTransferId(), transfer);
+        if (transfer.getRequestId() != null) {
+          pendingRequests.add(transfer.getRequestId());
+        }
+      } else if (parts[0].equals(CREDITED) && parts.length >= 2) {
+        creditedTransfers.add(parts[1]);
+      } else if (parts[0].equals(REQUEST) && parts.length >= 3) {
+        completedRequests.restore(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+      }
+    } catch (NumberFormatException e) {
+      System.err.println("Skipping malformed shard state entry: " + String.join("|", parts));
+    }
+  }
+
+  private static boolean isStateOf(File file, long snapshotId) {
+    if (!file.exists()) {
+      return false;
+    }
+    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+      return snapshotEntry(snapshotId).equals(reader.readLine());
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /** Stops the pipeline after pending operations finish */
+  void shutdown() {
+    pipeline.close();
+  }
+
+  /** Funds held at a source shard for a cross-shard transfer that isn't committed yet */
+  static final class HeldTransfer {
+    private final String transferId;
+    private final int sourceAccountNumber;
+    private final int destinationAccountNumber;
+    private final double value;
+    private final String requestId;
+
+    HeldTransfer(
+        String transferId,
+        int sourceAccountNumber,
+        int destinationAccountNumber,
+        double value,
+        String requestId) {
+      this.transferId = transferId;
+      this.sourceAccountNumber = sourceAccountNumber;
+      this.destinationAccountNumber = destinationAccountNumber;
+      this.value = value;
+      this.requestId = requestId;
+    }
+
+    /**
+     * Reads a transfer written by {@link #toJournalFields()}
+     *
+     * @param fields the journal entry's fields
+     * @param first the index of the transfer id
+     * @return the transfer
+     */
+    static HeldTransfer fromJournalFields(String[] fields, int first) {
+      return new HeldTransfer(
+          fields[first],
+          Integer.parseInt(fields[first + 1]),
+          Integer.parseInt(fields[first + 2]),
+          Double.parseDouble(fields[first + 3]),
+          (fields.length > first + 4) ? fields[first + 4] : null);
+    }
+
+    /** Formats the transfer as pipe-separated journal fields; the request id comes last */
+    String toJournalFields() {
+      return transferId
+          + "|"
+          + sourceAccountNumber
+          + "|"
+          + destinationAccountNumber
+          + "|"
+          + value
+          + ((requestId != null) ? "|" + requestId : "");
+    }
+
+    String getTransferId() {
+      return transferId;
+    }
+
+    int getSourceAccountNumber() {
+      return sourceAccountNumber;
+    }
+
+    int getDestinationAccountNumber() {
+      return destinationAccountNumber;
+    }
+
+    double getValue() {
+      return value;
+    }
+
+    /** Gets the client request id, or null if the transfer has none */
+    String getRequestId() {
+      return requestId;
+    }
+  }
+}
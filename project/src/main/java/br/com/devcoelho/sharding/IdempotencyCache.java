@@ -0,0 +1,186 @@
+package br.com.devcoelho.sharding;
+
+import java.util.Arrays;
+
+/**
+ * Remembers recently completed request ids so retried operations aren't applied twice.
+ *
+ * <p>Ids are stored as 64-bit hashes in a ring of {@link #GENERATIONS} open-addressed {@code
+ * long[]} tables. New ids go into the newest generation. When it is full or has spanned a third of
+ * the TTL, the ring advances and the oldest generation is cleared. Ids are therefore kept for at
+ * least the TTL as long as no more than three quarters of the capacity arrive within it; at higher
+ * rates generations fill early and the window shrinks to {@code capacity * 3 / 4} requests.
+ * {@link #capacityFor} sizes a cache for a request rate. The default keeps ids for 10 minutes at
+ * 1,000 requests per second per shard, in about 16 MB of tables per shard; keeping them for a day
+ * at that rate would take over 2 GB. Lookups cost a few array probes and allocate nothing.
+ *
+ * <p>A cache can be saved with {@link #forEach} and restored with {@link #restore}, e.g. as part of
+ * a shard's snapshot.
+ *
+ * <p>Not thread-safe; each shard uses its own cache from its business logic thread.
+ */
+class IdempotencyCache {
+
+  /** Receives the ids a cache keeps */
+  interface EntryConsumer {
+    void accept(long hash, long recordedAt);
+  }
+
+  static final long DEFAULT_TTL_MILLIS = 10L * 60 * 1000;
+  static final long DEFAULT_REQUESTS_PER_SECOND = 1_000;
+
+  private static final int GENERATIONS = 4;
+
+  static final int DEFAULT_CAPACITY = capacityFor(DEFAULT_REQUESTS_PER_SECOND, DEFAULT_TTL_MILLIS);
+  private static final long EMPTY = 0L;
+
+  private final long[][] tables = new long[GENERATIONS][];
+  private final long[] startedAt = new long[GENERATIONS];
+  private final long[] lastRecordedAt = new long[GENERATIONS];
+  private final int[] sizes = new int[GENERATIONS];
+  private final int generationCapacity;
+  private final long ttlMillis;
+  private int current;
+
+  IdempotencyCache(int capacity, long ttlMillis) {
+    if (capacity < GENERATIONS || ttlMillis <= 0) {
+      throw new IllegalArgumentException("Capacity and TTL must be positive");
+    }
+
+    this.generationCapacity = capacity / GENERATIONS;
+    this.ttlMillis = ttlMillis;
+
+    // Keep each table at most half full so probe sequences stay short
+    int tableSize = Integer.highestOneBit(generationCapacity * 2 - 1) << 1;
+    for (int i = 0; i < GENERATIONS; i++) {
+      tables[i] = new long[tableSize];
+      startedAt[i] = Long.MIN_VALUE;
+    }
+  }
+
+  /**
+   * Gets the capacity that keeps every id for the whole TTL at a sustained request rate. Only three
+   * of the four generations are guaranteed to be live over a TTL, so the capacity is a third more
+   * than the number of requests in one TTL
+   *
+   * @param requestsPerSecond the highest sustained rate of completed requests
+   * @param ttlMillis how long ids must be kept
+   * @return the capacity to create the cache with
+   */
+  static int capacityFor(long requestsPerSecond, long ttlMillis) {
+    long requestsPerTtl = Math.max(1, requestsPerSecond * ttlMillis / 1000);
+    long capacity = requestsPerTtl * GENERATIONS / (GENERATIONS - 1) + GENERATIONS;
+    if (capacity > Integer.MAX_VALUE / 4) {
+      throw new IllegalArgumentException("Rate and TTL need more than one cache can hold");
+    }
+    return (int) capacity;
+  }
+
+  /**
+   * Checks whether a request id was recorded within the TTL
+   *
+   * @param requestId the client request id
+   * @param nowMillis the current time
+   * @return true if the request was already completed
+   */
+  boolean contains(String requestId, long nowMillis) {
+    long hash = hash(requestId);
+    for (int i = 0; i < GENERATIONS; i++) {
+      if (isLive(i, nowMillis) && find(tables[i], hash) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Records a completed request id
+   *
+   * @param requestId the client request id
+   * @param nowMillis the time the request completed
+   */
+  void record(String requestId, long nowMillis) {
+    restore(hash(requestId), nowMillis);
+  }
+
+  /**
+   * Passes every id still within the TTL to a consumer, oldest first. Ids are only kept as hashes;
+   * each comes with the time its generation last recorded an id, which is what expires it
+   *
+   * @param nowMillis the current time
+   * @param consumer receives each id's hash and time
+   */
+  void forEach(long nowMillis, EntryConsumer consumer) {
+    for (int i = 1; i <= GENERATIONS; i++) {
+      int generation = (current + i) % GENERATIONS;
+      if (!isLive(generation, nowMillis)) {
+        continue;
+      }
+      for (long hash : tables[generation]) {
+        if (hash != EMPTY) {
+          consumer.accept(hash, lastRecordedAt[generation]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Records an id passed out by {@link #forEach}; restore ids in the order they were passed out
+   *
+   * @param hash the id's hash
+   * @param recordedAt the time that came with it
+   */
+  void restore(long hash, long recordedAt) {
+    if (startedAt[current] == Long.MIN_VALUE) {
+      startedAt[current] = recordedAt;
+    }
+
+    if (sizes[current] >= generationCapacity
+        || recordedAt - startedAt[current] >= ttlMillis / (GENERATIONS - 1)) {
+      advance(recordedAt);
+    }
+
+    long[] table = tables[current];
+    int slot = find(table, hash);
+    if (slot < 0) {
+      table[-slot - 1] = hash;
+      sizes[current]++;
+    }
+    lastRecordedAt[current] = Math.max(lastRecordedAt[current], recordedAt);
+  }
+
+  /** Starts a new generation, dropping the oldest one */
+  private void advance(long nowMillis) {
+    current = (current + 1) % GENERATIONS;
+    Arrays.fill(tables[current], EMPTY);
+    sizes[current] = 0;
+    startedAt[current] = nowMillis;
+  }
+
+  private boolean isLive(int generation, long nowMillis) {
+    return sizes[generation] > 0 && nowMillis - lastRecordedAt[generation] < ttlMillis;
+  }
+
+  /** Linear probing; returns the slot holding the hash, or -(free slot + 1) if absent */
+  private static int find(long[] table, long hash) {
+    int mask = table.length - 1;
+    int slot = (int) (hash ^ (hash >>> 32)) & mask;
+    while (table[slot] != EMPTY) {
+      if (table[slot] == hash) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -slot - 1;
+  }
+
+  /** 64-bit FNV-1a hash of the id; never returns the empty marker */
+  private static long hash(String requestId) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < requestId.length(); i++) {
+      hash ^= requestId.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return (hash == EMPTY) ? 1L : hash;
+  }
+}
@@ -0,0 +1,454 @@
+package br.com.devcoelho.sharding;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Single-writer command pipeline for a shard, in the style of the LMAX disruptor.
+ *
+ * <p>Commands are claimed and published into a preallocated ring buffer by any number of producer
+ * threads. Three consumer threads then process them in sequence order:
+ *
+ * <ul>
+ *   <li>the journaler appends each command's journal entry to the shard's journal file;
+ *   <li>the replicator hands each journal entry to a replica sink;
+ *   <li>the business logic thread runs the command once both stages above have passed it. It is
+ *       the only thread that touches the shard's accounts.
+ * </ul>
+ *
+ * <p>Consumers process everything available in one batch, so the journal is flushed once per
+ * batch rather than once per command. Producers wait when the ring is full.
+ *
+ * <p>If the journal can't be written, the command that failed and every later one complete
+ * exceptionally without being run, and {@link #submit} rejects new commands: nothing is
+ * acknowledged that the journal doesn't hold. A command submitted with {@link #submitCheckpoint}
+ * marks a point, such as a snapshot, that makes the journal before it unnecessary; once {@link
+ * #compactJournal} is called for it, the journaler drops everything before it from the file.
+ *
+ * <p>Producers register themselves before checking that the pipeline is open, and consumers only
+ * stop once the pipeline is closed and no producer is registered. A command accepted by {@link
+ * #submit} is therefore always processed, even if {@link #close()} runs at the same time.
+ */
+class ShardPipeline {
+
+  static final int DEFAULT_CAPACITY = 1 << 14;
+
+  private static final int SPIN_TRIES = 100;
+
+  private final Command[] ring;
+  private final int mask;
+  private final AtomicLongArray published;
+  private final AtomicLong claimed = new AtomicLong(-1);
+  private final AtomicInteger activeProducers = new AtomicInteger();
+  private final AtomicLong journaled = new AtomicLong(-1);
+  private final AtomicLong replicated = new AtomicLong(-1);
+  private final AtomicLong processed = new AtomicLong(-1);
+  private final String journalFile;
+  private final Consumer<String> replicaSink;
+  private final AtomicReference<String> compactTo = new AtomicReference<>();
+  private final Thread journaler;
+  private final Thread replicator;
+  private final Thread processor;
+  private volatile boolean running = true;
+  private volatile IOException journalFailure;
+  private volatile long journalFailedFrom = Long.MAX_VALUE;
+
+  /**
+   * Creates and starts a pipeline
+   *
+   * @param name name used for the consumer threads
+   * @param capacity ring size; must be a power of two
+   * @param journalFile file to append journal entries to, or null to disable journaling
+   * @param replicaSink receives every journal entry, or null to disable replication
+   */
+  ShardPipeline(String name, int capacity, String journalFile, Consumer<String> replicaSink) {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two");
+    }
+
+    this.ring = new Command[capacity];
+    this.mask = capacity - 1;
+    this.published = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      ring[i] = new Command();
+      published.set(i, -1);
+    }
+
+    this.journalFile = journalFile;
+    this.replicaSink = replicaSink;
+    this.journaler = startThread(name + "-journal", this::runJournaler);
+    this.replicator = startThread(name + "-replication", this::runReplicator);
+    this.processor = startThread(name, this::runProcessor);
+  }
+
+  /**
+   * Publishes a command to the pipeline
+   *
+   * @param journalEntry text recorded in the journal and sent to replicas, or null for commands
+   *     that don't change state
+   * @param operation the business logic, run on the processor thread
+   * @return a future completed with the operation's result
+   * @throws IllegalStateException if the pipeline is closed or its journal failed
+   */
+  <T> CompletableFuture<T> submit(String journalEntry, Supplier<T> operation) {
+    return publish(journalEntry, false, operation);
+  }
+
+  /**
+   * Publishes a command the journal can later be compacted to, see {@link #compactJournal}
+   *
+   * @param journalEntry text recorded in the journal and sent to replicas; unique to the command
+   * @param operation the business logic, run on the processor thread
+   * @return a future completed with the operation's result
+   * @throws IllegalStateException if the pipeline is closed or its journal failed
+   */
+  <T> CompletableFuture<T> submitCheckpoint(String journalEntry, Supplier<T> operation) {
+    return publish(journalEntry, true, operation);
+  }
+
+  /**
+   * Drops the journal entries written before a checkpoint command. The journaler compacts the file
+   * before its next batch; the file is replaced atomically, so a crash leaves either version
+   *
+   * @param checkpointEntry the journal entry of a command published with {@link
+   *     #submitCheckpoint}
+   */
+  void compactJournal(String checkpointEntry) {
+    if (journalFile != null) {
+      compactTo.set(checkpointEntry);
+    }
+  }
+
+  private <T> CompletableFuture<T> publish(
+      String journalEntry, boolean checkpoint, Supplier<T> operation) {
+    // Registering first keeps the consumers running until this command is published
+    activeProducers.incrementAndGet();
+    try {
+      if (!running) {
+        throw new IllegalStateException("Pipeline is closed");
+      }
+      if (journalFailure != null) {
+        throw new IllegalStateException("Journal " + journalFile + " failed", journalFailure);
+      }
+
+      long sequence = claimed.incrementAndGet();
+
+      // Wait until the business logic thread has freed the slot
+      int tries = 0;
+      while (sequence - ring.length > processed.get()) {
+        tries = idle(tries);
+      }
+
+      CompletableFuture<T> result = new CompletableFuture<>();
+      Command command = ring[index(sequence)];
+      command.journalEntry = journalEntry;
+      command.checkpoint = checkpoint;
+      command.operation = operation;
+      command.result = result;
+      published.set(index(sequence), sequence);
+      return result;
+    } finally {
+      activeProducers.decrementAndGet();
+    }
+  }
+
+  /** Stops the consumers once every published command has been processed */
+  void close() {
+    running = false;
+    try {
+      processor.join();
+      journaler.join();
+      replicator.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void runJournaler() {
+    Journal journal = null;
+    try {
+      if (journalFile != null) {
+        journal = new Journal(journalFile);
+      }
+
+      while (true) {
+        String checkpoint = compactTo.getAndSet(null);
+        if (checkpoint != null && journal != null) {
+          journal.compact(checkpoint);
+        }
+
+        long next = journaled.get() + 1;
+        long last = highestPublished(next);
+        if (last < next) {
+          // The business logic thread may still ask for a compaction
+          if (isDrained(journaled) && isDrained(processed) && compactTo.get() == null) {
+            break;
+          }
+          LockSupport.parkNanos(1000);
+          continue;
+        }
+
+        if (journal != null) {
+          for (long sequence = next; sequence <= last; sequence++) {
+            Command command = ring[index(sequence)];
+            if (command.journalEntry != null) {
+              journal.append(command.journalEntry, command.checkpoint);
+            }
+          }
+          journal.flush(); // Once per batch
+        }
+        journaled.set(last);
+      }
+    } catch (IOException e) {
+      System.err.println("Error writing journal " + journalFile + ": " + e.getMessage());
+      if (journal != null) {
+        journal.discardUnflushed();
+        journal = null;
+      }
+      // Fail every command not yet journaled; the processor completes them without running them
+      journalFailure = e;
+      journalFailedFrom = journaled.get() + 1;
+      skipRemaining(journaled);
+    } finally {
+      if (journal != null) {
+        try {
+          journal.close();
+        } catch (IOException e) {
+          System.err.println("Error closing journal " + journalFile + ": " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  private void runReplicator() {
+    while (true) {
+      long next = replicated.get() + 1;
+      long last = highestPublished(next);
+      if (last < next) {
+        if (isDrained(replicated)) {
+          break;
+        }
+        LockSupport.parkNanos(1000);
+        continue;
+      }
+
+      if (replicaSink != null) {
+        for (long sequence = next; sequence <= last; sequence++) {
+          String entry = ring[index(sequence)].journalEntry;
+          if (entry != null) {
+            try {
+              replicaSink.accept(entry);
+            } catch (RuntimeException e) {
+              System.err.println("Error replicating entry: " + e.getMessage());
+            }
+          }
+        }
+      }
+      replicated.set(last);
+    }
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private void runProcessor() {
+    int tries = 0;
+    while (true) {
+      long next = processed.get() + 1;
+      long last = Math.min(journaled.get(), replicated.get());
+      if (last < next) {
+        if (isDrained(processed)) {
+          break;
+        }
+        tries = idle(tries);
+        continue;
+      }
+      tries = 0;
+
+      for (long sequence = next; sequence <= last; sequence++) {
+        Command command = ring[index(sequence)];
+        CompletableFuture result = command.result;
+        Supplier<?> operation = command.operation;
+        command.operation = null;
+        command.result = null;
+
+        if (sequence >= journalFailedFrom) {
+          result.completeExceptionally(
+              new IllegalStateException(
+                  "Journal " + journalFile + " failed; command not applied", journalFailure));
+        } else {
+          try {
+            result.complete(operation.get());
+          } catch (Throwable t) {
+            result.completeExceptionally(t);
+          }
+        }
+        processed.set(sequence); // Frees the slot for producers
+      }
+    }
+  }
+
+  /** Gets the last sequence of the contiguous run of published commands starting at next */
+  private long highestPublished(long next) {
+    long sequence = next;
+    while (sequence <= claimed.get() && published.get(index(sequence)) == sequence) {
+      sequence++;
+    }
+    return sequence - 1;
+  }
+
+  /** Checks that the pipeline is closed, no producer is submitting and everything is consumed */
+  private boolean isDrained(AtomicLong consumed) {
+    return !running && activeProducers.get() == 0 && consumed.get() >= claimed.get();
+  }
+
+  private void skipRemaining(AtomicLong consumed) {
+    while (!isDrained(consumed)) {
+      long last = highestPublished(consumed.get() + 1);
+      if (last > consumed.get()) {
+        consumed.set(last);
+      } else {
+        LockSupport.parkNanos(1000);
+      }
+    }
+  }
+
+  private int index(long sequence) {
+    return (int) (sequence & mask);
+  }
+
+  /** Busy-spins briefly, then yields, then parks, so idle consumers don't burn a core */
+  private static int idle(int tries) {
+    if (tries < SPIN_TRIES) {
+      Thread.onSpinWait();
+    } else if (tries < SPIN_TRIES * 2) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(1000);
+    }
+    return tries + 1;
+  }
+
+  private static Thread startThread(String name, Runnable body) {
+    Thread thread = new Thread(body, name);
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+
+  /** Preallocated ring slot, reused for every command that lands on it */
+  private static class Command {
+    private String journalEntry;
+    private boolean checkpoint;
+    private Supplier<?> operation;
+    private CompletableFuture<?> result;
+  }
+
+  /** A journal file opened for appending, which remembers where its checkpoint entries start */
+  private static class Journal {
+    private final Path path;
+    private final Map<String, Long> checkpoints = new HashMap<>();
+    private OutputStream out;
+    private long length;
+    private long flushedLength;
+
+    Journal(String file) throws IOException {
+      this.path = new File(file).toPath();
+      open();
+    }
+
+    void append(String entry, boolean checkpoint) throws IOException {
+      if (checkpoint) {
+        checkpoints.put(entry, length);
+      }
+      byte[] line = (entry + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+      out.write(line);
+      length += line.length;
+    }
+
+    void flush() throws IOException {
+      out.flush();
+      flushedLength = length;
+    }
+
+    /**
+     * Replaces the file with a copy that starts at a checkpoint entry. If copying fails, the file
+     * is kept as it is
+     *
+     * @throws IOException if the file can't be reopened for appending
+     */
+    void compact(String checkpoint) throws IOException {
+      Long offset = checkpoints.get(checkpoint);
+      if (offset == null || offset == 0) {
+        return;
+      }
+
+      out.close();
+      Path copy = path.resolveSibling(path.getFileName() + ".tmp");
+      try {
+        try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ);
+            FileChannel target =
+                FileChannel.open(
+                    copy,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+          long size = source.size();
+          for (long position = offset; position < size; ) {
+            position += source.transferTo(position, size - position, target);
+          }
+        }
+        Files.move(
+            copy, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        length -= offset;
+        flushedLength = length;
+        checkpoints.values().removeIf(start -> start < offset);
+        checkpoints.replaceAll((entry, start) -> start - offset);
+      } catch (IOException e) {
+        System.err.println("Error compacting journal " + path + ": " + e.getMessage());
+      }
+      open();
+    }
+
+    /** Closes the file, cutting off a batch that was only partly written; best effort */
+    void discardUnflushed() {
+      try {
+        out.close();
+      } catch (IOException e) {
+        // The truncation below removes whatever did get written
+      }
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+        channel.truncate(flushedLength);
+      } catch (IOException e) {
+        System.err.println("Error truncating journal " + path + ": " + e.getMessage());
+      }
+    }
+
+    void close() throws IOException {
+      out.close();
+    }
+
+    private void open() throws IOException {
+      out = new BufferedOutputStream(new FileOutputStream(path.toFile(), true));
+      length = path.toFile().length();
+      flushedLength = length;
+    }
+  }
+}
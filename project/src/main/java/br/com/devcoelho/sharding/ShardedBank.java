@@ -0,0 +1,661 @@
+package br.com.devcoelho.sharding;
+
+import br.com.devcoelho.Bank;
+import br.com.devcoelho.BankAccount;
+import br.com.devcoelho.BankInvestmentAccount;
+import br.com.devcoelho.BankSimpleAccount;
+import br.com.devcoelho.Person;
+import br.com.devcoelho.exceptions.InvalidAccountException;
+import br.com.devcoelho.persistence.FilePersistence;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A bank whose accounts are partitioned across several in-process shards.
+ *
+ * <p>Accounts are routed to a shard by a hash of their account number. Each shard applies its
+ * operations on its own single business logic thread (see {@link ShardPipeline}), so throughput
+ * grows with the number of shards. Clients stay in the shared {@link Bank} registry, which is safe
+ * for concurrent use, but accounts are created by their shard and aren't registered with it.
+ * Transfers between accounts on different shards use a two-phase protocol: the destination is
+ * validated and the funds are held at the source, then the destination is credited and the hold
+ * is committed. If crediting fails, the hold is released. The destination remembers each credit
+ * until the source has committed it. Shards only pass account numbers and
+ * amounts to each other, and the steps in between run on the bank's own transfer threads, never
+ * on a shard thread or the common pool.
+ *
+ * <p>Deposits, withdrawals and transfers can carry a client request id. A request id is applied at
+ * most once within the idempotency TTL, so upstream systems can safely retry them; a retried
+ * request completes with {@code false} instead of being applied again.
+ *
+ * <p>{@link #loadAll} restores each shard from its last snapshot and replays the commands its
+ * journal recorded after it, so nothing acknowledged is lost if the process stops between
+ * snapshots. Transfers interrupted between holding and committing are then committed if their
+ * destination remembers crediting them and released otherwise; this doesn't depend on the
+ * idempotency TTL.
+ *
+ * <p>All operations are asynchronous and return futures. Account objects are created, read and
+ * changed only on their shard's thread, and are never handed out by this class.
+ */
+public class ShardedBank implements AutoCloseable {
+
+  private final Bank bank;
+  private final BankShard[] shards;
+  private final ExecutorService transferSteps;
+  private final String runId = Long.toString(System.currentTimeMillis(), 36);
+  private final AtomicLong transferIds = new AtomicLong();
+  private final AtomicLong snapshotIds = new AtomicLong(System.currentTimeMillis());
+
+  public ShardedBank(Bank bank, int shardCount) {
+    this(bank, shardCount, null);
+  }
+
+  /**
+   * Creates a sharded bank whose commands are also sent to a replica
+   *
+   * @param bank the shared client registry
+   * @param shardCount the number of shards
+   * @param replicaSink receives every journal entry of every shard, or null for no replication
+   */
+  public ShardedBank(Bank bank, int shardCount, Consumer<String> replicaSink) {
+    this(bank, shardCount, "", replicaSink);
+  }
+
+  /**
+   * Creates a sharded bank storing its files under a prefix, e.g. a directory
+   *
+   * @param bank the shared client registry
+   * @param shardCount the number of shards
+   * @param filePrefix prefix of every shard's file names
+   * @param replicaSink receives every journal entry of every shard, or null for no replication
+   */
+  public ShardedBank(Bank bank, int shardCount, String filePrefix, Consumer<String> replicaSink) {
+    if (shardCount <= 0) {
+      throw new IllegalArgumentException("Shard count must be positive");
+    }
+
+    this.bank = bank;
+    this.shards = new BankShard[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new BankShard(i, filePrefix, replicaSink);
+    }
+
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.transferSteps =
+        Executors.newFixedThreadPool(
+            Math.max(2, shardCount),
+            task -> {
+              Thread thread = new Thread(task, "bank-transfer-" + threadNumber.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * Gets the client registry shared by all shards
+   *
+   * @return the underlying bank
+   */
+  public Bank getBank() {
+    return bank;
+  }
+
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  /**
+   * Gets the shard that owns an account number
+   *
+   * @param accountNumber the account number
+   * @return the owning shard
+   */
+  public BankShard shardOf(int accountNumber) {
+    // Spread sequential numbers across shards (Fibonacci hashing)
+    int hash = accountNumber * 0x9E3779B9;
+    return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+  }
+
+  /**
+   * Opens an account for a registered client
+   *
+   * @param client the client who owns the account
+   * @param accountType the type of account to create
+   * @return a future completed with the new account number
+   */
+  public CompletableFuture<Integer> createAccount(Person client, Bank.AccountType accountType) {
+    if (client == null || bank.findClientByCpf(client.getCpf()) != client) {
+      throw new IllegalArgumentException("Client not registered with this bank");
+    }
+
+    // Only the number is chosen here; the account itself is built on its shard's thread
+    int accountNumber = BankAccount.getAccountNumberAllocator().next();
+    BankShard shard = shardOf(accountNumber);
+    return shard.submit(
+        journal("CREATE", accountNumber, client.getCpf(), accountType),
+        () -> {
+          shard.put(newAccount(client, accountType, accountNumber));
+          return accountNumber;
+        });
+  }
+
+  /** Builds a new account under an allocated number; runs on the owning shard */
+  private BankAccount newAccount(Person client, Bank.AccountType accountType, int accountNumber) {
+    switch (accountType) {
+      case SIMPLE:
+        return new BankSimpleAccount(client, accountNumber, new Date());
+      case INVESTMENT:
+        BankInvestmentAccount account =
+            new BankInvestmentAccount(client, accountNumber, new Date());
+        account.setPortfolioValuation(bank.getPortfolioValuation());
+        return account;
+      default:
+        throw new IllegalArgumentException("Unsupported account type");
+    }
+  }
+
+  public CompletableFuture<Void> deposit(int accountNumber, double value) {
+    BankShard shard = shardOf(accountNumber);
+    return shard.submit(
+        journal("DEPOSIT", accountNumber, value),
+        () -> {
+          applyOnce(shard, null, () -> shard.get(accountNumber).depositAmount(value));
+          return null;
+        });
+  }
+
+  /**
+   * Deposits into an account at most once per request id
+   *
+   * @param requestId the client request id
+   * @param accountNumber the account to credit
+   * @param value the amount to deposit
+   * @return a future completed with true if applied, or false if the request was a duplicate
+   */
+  public CompletableFuture<Boolean> deposit(String requestId, int accountNumber, double value) {
+    checkRequestId(requestId);
+    BankShard shard = shardOf(accountNumber);
+    return shard.submit(
+        journal("DEPOSIT", accountNumber, value, requestId),
+        () ->
+            applyOnce(
+                shard, requestId, () -> shard.get(accountNumber).depositAmount(value)));
+  }
+
+  public CompletableFuture<Void> withdraw(int accountNumber, double value) {
+    BankShard shard = shardOf(accountNumber);
+    return shard.submit(
+        journal("WITHDRAW", accountNumber, value),
+        () -> {
+          applyOnce(shard, null, () -> shard.get(accountNumber).withdrawAmount(value));
+          return null;
+        });
+  }
+
+  /**
+   * Withdraws from an account at most once per request id
+   *
+   * @param requestId the client request id
+   * @param accountNumber the account to debit
+   * @param value the amount to withdraw
+   * @return a future completed with true if applied, or false if the request was a duplicate
+   */
+  public CompletableFuture<Boolean> withdraw(String requestId, int accountNumber, double value) {
+    checkRequestId(requestId);
+    BankShard shard = shardOf(accountNumber);
+    return shard.submit(
+        journal("WITHDRAW", accountNumber, value, requestId),
+        () ->
+            applyOnce(
+                shard, requestId, () -> shard.get(accountNumber).withdrawAmount(value)));
+  }
+
+  public CompletableFuture<Double> getBalance(int accountNumber) {
+    BankShard shard = shardOf(accountNumber);
+    return shard.submit(null, () -> shard.get(accountNumber).getAmountStored());
+  }
+
+  /**
+   * Transfers funds between two accounts, on the same shard or not
+   *
+   * @param sourceAccountNumber the account to debit
+   * @param destinationAccountNumber the account to credit
+   * @param value the amount to transfer
+   * @return a future completed when the transfer is committed, or failed if it was aborted
+   */
+  public CompletableFuture<Void> transfer(
+      int sourceAccountNumber, int destinationAccountNumber, double value) {
+    return transferOnce(null, sourceAccountNumber, destinationAccountNumber, value)
+        .thenApply(applied -> null);
+  }
+
+  /**
+   * Transfers funds between two accounts at most once per request id
+   *
+   * <p>The request id is tracked by the source account's shard.
+   *
+   * @param requestId the client request id
+   * @param sourceAccountNumber the account to debit
+   * @param destinationAccountNumber the account to credit
+   * @param value the amount to transfer
+   * @return a future completed with true if committed or false if the request was a duplicate, or
+   *     failed if the transfer was aborted
+   */
+  public CompletableFuture<Boolean> transfer(
+      String requestId, int sourceAccountNumber, int destinationAccountNumber, double value) {
+    checkRequestId(requestId);
+    return transferOnce(requestId, sourceAccountNumber, destinationAccountNumber, value);
+  }
+
+  /** Runs a transfer, deduplicated by request id unless it is null */
+  private CompletableFuture<Boolean> transferOnce(
+      String requestId, int sourceAccountNumber, int destinationAccountNumber, double value) {
+    BankShard source = shardOf(sourceAccountNumber);
+    BankShard destination = shardOf(destinationAccountNumber);
+
+    if (source == destination) {
+      return source.submit(
+          journal("TRANSFER", sourceAccountNumber, destinationAccountNumber, value, requestId),
+          () ->
+              transferWithinShard(
+                  source, requestId, sourceAccountNumber, destinationAccountNumber, value));
+    }
+
+    BankShard.HeldTransfer transfer =
+        new BankShard.HeldTransfer(
+            runId + "-" + transferIds.incrementAndGet(),
+            sourceAccountNumber,
+            destinationAccountNumber,
+            value,
+            requestId);
+
+    // Phase 1: prepare the destination, then hold the funds at the source. Later steps run on
+    // the transfer threads, so a shard thread never waits on another shard's ring
+    return destination
+        .submit(null, () -> prepareDestination(destination, destinationAccountNumber))
+        .thenComposeAsync(
+            prepared ->
+                source.submit(
+                    "HOLD|" + transfer.toJournalFields(), () -> holdFunds(source, transfer)),
+            transferSteps)
+        .thenComposeAsync(
+            held ->
+                !held
+                    ? CompletableFuture.completedFuture(false)
+                    : completeTransfer(source, destination, transfer),
+            transferSteps);
+  }
+
+  /** Phase 2: credits the destination, then commits the hold, or releases it on failure */
+  private CompletableFuture<Boolean> completeTransfer(
+      BankShard source, BankShard destination, BankShard.HeldTransfer transfer) {
+    return destination
+        .submit(
+            journal(
+                "CREDIT",
+                transfer.getTransferId(),
+                transfer.getDestinationAccountNumber(),
+                transfer.getValue()),
+            () ->
+                credit(
+                    destination,
+                    transfer.getTransferId(),
+                    transfer.getDestinationAccountNumber(),
+                    transfer.getValue()))
+        .handle((credited, failure) -> failure)
+        .thenComposeAsync(
+            failure ->
+                (failure == null)
+                    ? commit(source, destination, transfer)
+                    : source.submit(
+                        "RELEASE|" + transfer.toJournalFields(),
+                        () -> {
+                          releaseHold(source, transfer.getTransferId());
+                          throw asCompletionException(failure);
+                        }),
+            transferSteps);
+  }
+
+  /** Commits a credited transfer at the source, then lets the destination forget the credit */
+  private CompletableFuture<Boolean> commit(
+      BankShard source, BankShard destination, BankShard.HeldTransfer transfer) {
+    return source
+        .submit(
+            "COMMIT|" + transfer.toJournalFields(),
+            () -> commitHold(source, transfer.getTransferId()))
+        .thenComposeAsync(
+            committed ->
+                settleCredit(destination, transfer.getTransferId()).thenApply(settled -> committed),
+            transferSteps);
+  }
+
+  /**
+   * Forgets a credit whose transfer is committed. A credit that isn't forgotten, e.g. because the
+   * destination is stopping, is only kept in memory and snapshots; it can't change balances
+   *
+   * @return a future completed once the credit is forgotten or can't be; it never fails
+   */
+  private static CompletableFuture<Void> settleCredit(BankShard destination, String transferId) {
+    try {
+      return destination
+          .submit(
+              "SETTLE|" + transferId,
+              () -> {
+                destination.removeCreditedTransfer(transferId);
+                return (Void) null;
+              })
+          .exceptionally(failure -> null);
+    } catch (IllegalStateException e) {
+      return CompletableFuture.completedFuture(null);
+    }
+  }
+
+  /**
+   * Applies an operation once per request id; runs on the shard's thread
+   *
+   * @return true if applied, false if the request was a duplicate
+   */
+  private static boolean applyOnce(BankShard shard, String requestId, Runnable operation) {
+    if (requestId == null) {
+      operation.run();
+      return true;
+    }
+    if (!shard.beginRequest(requestId)) {
+      return false;
+    }
+
+    try {
+      operation.run();
+    } catch (RuntimeException e) {
+      shard.abandonRequest(requestId);
+      throw e;
+    }
+    shard.completeRequest(requestId);
+    return true;
+  }
+
+  /** Transfers between two accounts of the same shard; runs on that shard */
+  private static boolean transferWithinShard(
+      BankShard shard,
+      String requestId,
+      int sourceAccountNumber,
+      int destinationAccountNumber,
+      double value) {
+    return applyOnce(
+        shard,
+        requestId,
+        () ->
+            shard
+                .get(sourceAccountNumber)
+                .transferAmount(value, shard.get(destinationAccountNumber)));
+  }
+
+  /** Checks that the destination can receive funds; runs on the destination shard */
+  private static boolean prepareDestination(BankShard destination, int accountNumber) {
+    if (!destination.get(accountNumber).isValid()) {
+      throw new InvalidAccountException("Destination account is invalid");
+    }
+    return true;
+  }
+
+  /**
+   * Takes the funds out of the source balance and claims the request id; runs on the source shard
+   *
+   * @return false if the request was a duplicate and nothing was held
+   */
+  private static boolean holdFunds(BankShard source, BankShard.HeldTransfer transfer) {
+    String requestId = transfer.getRequestId();
+    if (requestId != null && !source.beginRequest(requestId)) {
+      return false;
+    }
+
+    try {
+      source.get(transfer.getSourceAccountNumber()).holdAmount(transfer.getValue());
+    } catch (RuntimeException e) {
+      if (requestId != null) {
+        source.abandonRequest(requestId);
+      }
+      throw e;
+    }
+    source.addHeldTransfer(transfer);
+    return true;
+  }
+
+  /**
+   * Credits the destination of a transfer once and remembers it until the source commits, so
+   * recovery can tell whether it was credited; runs on the destination shard
+   */
+  private static boolean credit(
+      BankShard destination, String transferId, int accountNumber, double value) {
+    if (!destination.isCredited(transferId)) {
+      destination.get(accountNumber).depositAmount(value);
+      destination.addCreditedTransfer(transferId);
+    }
+    return true;
+  }
+
+  /** Records held funds as transferred; runs on the source shard */
+  private static boolean commitHold(BankShard source, String transferId) {
+    BankShard.HeldTransfer transfer = source.removeHeldTransfer(transferId);
+    if (transfer == null) {
+      return false; // Already resolved
+    }
+
+    source
+        .get(transfer.getSourceAccountNumber())
+        .commitTransferHold(transfer.getValue(), transfer.getDestinationAccountNumber());
+    if (transfer.getRequestId() != null) {
+      source.completeRequest(transfer.getRequestId());
+    }
+    return true;
+  }
+
+  /** Gives held funds back to the source; runs on the source shard */
+  private static void releaseHold(BankShard source, String transferId) {
+    BankShard.HeldTransfer transfer = source.removeHeldTransfer(transferId);
+    if (transfer == null) {
+      return; // Already resolved
+    }
+
+    source.get(transfer.getSourceAccountNumber()).releaseHold(transfer.getValue());
+    if (transfer.getRequestId() != null) {
+      source.abandonRequest(transfer.getRequestId());
+    }
+  }
+
+  /**
+   * Saves every shard to its own files, compacting each journal once its shard is saved
+   *
+   * @return a future completed when all shards are saved, or failed if any couldn't be
+   */
+  public CompletableFuture<Void> saveAll() {
+    CompletableFuture<?>[] saves = new CompletableFuture<?>[shards.length];
+    for (BankShard shard : shards) {
+      saves[shard.getIndex()] = shard.save(snapshotIds.incrementAndGet());
+    }
+    return CompletableFuture.allOf(saves);
+  }
+
+  /**
+   * Loads every shard from its own files and replays the commands journaled since, then resolves
+   * the transfers that were interrupted. Call before any other operation
+   *
+   * @param clients the clients that own the accounts
+   * @return a future completed when all shards are loaded
+   */
+  public CompletableFuture<Void> loadAll(List<Person> clients) {
+    CompletableFuture<?>[] loads = new CompletableFuture<?>[shards.length];
+    for (BankShard shard : shards) {
+      loads[shard.getIndex()] =
+          shard.submit(
+              null,
+              () -> {
+                for (BankAccount account :
+                    FilePersistence.loadAccounts(clients, bank, shard.getFilePrefix())) {
+                  shard.put(account);
+                }
+                int replayed = 0;
+                for (String entry : shard.recoverJournal()) {
+                  replay(shard, entry);
+                  replayed++;
+                }
+                if (replayed > 0) {
+                  System.out.println(
+                      "Replayed " + replayed + " journal entries into shard " + shard.getIndex());
+                }
+                return null;
+              });
+    }
+    // Resolving waits on the shards, so it can't run on one of their threads
+    return CompletableFuture.allOf(loads)
+        .thenComposeAsync(loaded -> resolveHeldTransfers(), transferSteps);
+  }
+
+  /**
+   * Applies a journaled command again, as it was applied when first submitted; runs on the shard.
+   * Commands that failed then fail the same way now, and are skipped
+   */
+  private void replay(BankShard shard, String entry) {
+    String[] fields = entry.split("\\|");
+    try {
+      switch (fields[0]) {
+        case "CREATE":
+          int accountNumber = Integer.parseInt(fields[1]);
+          Person client = bank.findClientByCpf(fields[2]);
+          if (client == null) {
+            System.err.println("Skipping account of unknown client: " + entry);
+            return;
+          }
+          shard.put(newAccount(client, Bank.AccountType.valueOf(fields[3]), accountNumber));
+          BankAccount.getAccountNumberAllocator().advancePast(accountNumber);
+          break;
+        case "DEPOSIT":
+          int depositAccount = Integer.parseInt(fields[1]);
+          double deposit = Double.parseDouble(fields[2]);
+          applyOnce(
+              shard, optional(fields, 3), () -> shard.get(depositAccount).depositAmount(deposit));
+          break;
+        case "WITHDRAW":
+          int withdrawalAccount = Integer.parseInt(fields[1]);
+          double withdrawal = Double.parseDouble(fields[2]);
+          applyOnce(
+              shard,
+              optional(fields, 3),
+              () -> shard.get(withdrawalAccount).withdrawAmount(withdrawal));
+          break;
+        case "TRANSFER":
+          transferWithinShard(
+              shard,
+              optional(fields, 4),
+              Integer.parseInt(fields[1]),
+              Integer.parseInt(fields[2]),
+              Double.parseDouble(fields[3]));
+          break;
+        case "HOLD":
+          holdFunds(shard, BankShard.HeldTransfer.fromJournalFields(fields, 1));
+          break;
+        case "CREDIT":
+          credit(shard, fields[1], Integer.parseInt(fields[2]), Double.parseDouble(fields[3]));
+          break;
+        case "COMMIT":
+          commitHold(shard, fields[1]);
+          break;
+        case "SETTLE":
+          shard.removeCreditedTransfer(fields[1]);
+          break;
+        case "RELEASE":
+          releaseHold(shard, fields[1]);
+          break;
+        default:
+          System.err.println("Skipping unknown journal entry: " + entry);
+      }
+    } catch (RuntimeException e) {
+      // Failed the same way when first applied
+    }
+  }
+
+  /**
+   * Commits the transfers still holding funds after recovery whose destination remembers crediting
+   * them, and releases the others
+   */
+  private CompletableFuture<Void> resolveHeldTransfers() {
+    List<CompletableFuture<?>> resolutions = new ArrayList<>();
+    for (BankShard source : shards) {
+      for (BankShard.HeldTransfer transfer : source.submit(null, source::getHeldTransfers).join()) {
+        BankShard destination = shardOf(transfer.getDestinationAccountNumber());
+        String transferId = transfer.getTransferId();
+        boolean credited =
+            destination.submit(null, () -> destination.isCredited(transferId)).join();
+        resolutions.add(
+            credited
+                ? commit(source, destination, transfer)
+                : source.submit(
+                    "RELEASE|" + transfer.toJournalFields(),
+                    () -> {
+                      releaseHold(source, transferId);
+                      return null;
+                    }));
+      }
+    }
+    return CompletableFuture.allOf(resolutions.toArray(new CompletableFuture<?>[0]));
+  }
+
+  /** Stops the transfer threads, then all shard workers after their pending operations finish */
+  @Override
+  public void close() {
+    transferSteps.shutdown();
+    try {
+      transferSteps.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    for (BankShard shard : shards) {
+      shard.shutdown();
+    }
+  }
+
+  /**
+   * Formats a journal entry as pipe-separated fields, like the persistence files. Null fields,
+   * such as a missing request id, are left out
+   */
+  private static String journal(String command, Object... fields) {
+    StringBuilder entry = new StringBuilder(command);
+    for (Object field : fields) {
+      if (field != null) {
+        entry.append('|').append(field);
+      }
+    }
+    return entry.toString();
+  }
+
+  /** Gets an optional trailing journal field, such as a request id */
+  private static String optional(String[] fields, int index) {
+    return (fields.length > index) ? fields[index] : null;
+  }
+
+  /** Request ids end up in the pipe-separated journal, so they can't contain separators */
+  private static void checkRequestId(String requestId) {
+    if (requestId == null
+        || requestId.isEmpty()
+        || requestId.indexOf('|') >= 0
+        || requestId.indexOf('\n') >= 0
+        || requestId.indexOf('\r') >= 0) {
+      throw new IllegalArgumentException("Invalid request id: " + requestId);
+    }
+  }
+
+  private static CompletionException asCompletionException(Throwable failure) {
+    return (failure instanceof CompletionException)
+        ? (CompletionException) failure
+        : new CompletionException(failure);
+  }
+}
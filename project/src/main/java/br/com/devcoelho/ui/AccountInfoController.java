@@ -2,10 +2,15 @@ package br.com.devcoelho.ui;
 
 import br.com.devcoelho.*;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
+import javafx.animation.PauseTransition;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -16,13 +21,21 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 /** Controller for the Account Information window */
 public class AccountInfoController {
 
+  // Time the search text must stay unchanged before the table is filtered
+  private static final Duration SEARCH_DELAY = Duration.millis(150);
+
   private Bank bank;
   private List<BankAccount> accounts;
   private TableView<AccountTableItem> accountTable;
+  private FilteredList<AccountTableItem> filteredItems;
+  private AccountSearchIndex searchIndex;
+  private String lastQuery;
+  private BitSet lastMatches;
   private VBox detailsBox;
   private TabPane tabPane;
 
@@ -109,19 +122,35 @@ public class AccountInfoController {
 
     // Search field
     TextField searchField = new TextField();
-    searchField.setPromptText("Search by account # or client name");
+    searchField.setPromptText("Indexing accounts...");
     searchField.setPrefHeight(30);
+    searchField.setDisable(true);
 
     // Create account table
     accountTable = createAccountTable();
 
-    // Add search functionality
+    // Build the search index in the background; search is enabled once it's ready. The index
+    // gets its own copy of the list, whose positions match the table items
+    List<BankAccount> indexedAccounts = new ArrayList<>(accounts);
+    BackgroundTask.<AccountSearchIndex>start(
+        "Indexing accounts",
+        task -> new AccountSearchIndex(indexedAccounts),
+        index -> {
+          searchIndex = index;
+          searchField.setPromptText("Search by account # or client name");
+          searchField.setDisable(false);
+        },
+        e -> {
+          System.err.println("Error indexing accounts: " + e.getMessage());
+          searchField.setPromptText("Search unavailable");
+        });
+
+    // Add search functionality, filtering once typing pauses
+    PauseTransition searchDelay = new PauseTransition(SEARCH_DELAY);
+    searchDelay.setOnFinished(e -> filterTable(searchField.getText()));
     searchField
         .textProperty()
-        .addListener(
-            (observable, oldValue, newValue) -> {
-              filterTable(newValue);
-            });
+        .addListener((observable, oldValue, newValue) -> searchDelay.playFromStart());
 
     accountSelectionBox.getChildren().addAll(selectionTitle, searchField, accountTable);
 
@@ -131,17 +160,27 @@ public class AccountInfoController {
   /** Table item class for accounts */
   public class AccountTableItem {
     private final BankAccount account;
+    private final int position;
     private final String accountNumber;
     private final String clientName;
     private final String accountType;
-    private final String balance;
 
     public AccountTableItem(BankAccount account) {
+      this(account, -1);
+    }
+
+    /**
+     * Creates an item for the account at a position of the account list
+     *
+     * @param account the account
+     * @param position the account's position, which identifies it in the search index
+     */
+    AccountTableItem(BankAccount account, int position) {
       this.account = account;
+      this.position = position;
       this.accountNumber = String.valueOf(account.getAccountNumber());
       this.clientName = account.getClient().getName();
       this.accountType = (account instanceof BankInvestmentAccount) ? "Investment" : "Simple";
-      this.balance = String.format("$%.2f", account.getAmountStored());
     }
 
     public BankAccount getAccount() {
@@ -160,8 +199,9 @@ public class AccountInfoController {
       return accountType;
     }
 
+    /** Gets the balance, formatted when asked for since it isn't one of the columns */
     public String getBalance() {
-      return balance;
+      return String.format("$%.2f", account.getAmountStored());
     }
   }
 
@@ -186,12 +226,15 @@ public class AccountInfoController {
                                                                                     //
     table.getColumns().addAll(accountNumberCol, clientNameCol, accountTypeCol);
 
-    // Add data to table
+    // Add data to table; the items are built once and searches only change the filter
     ObservableList<AccountTableItem> data = FXCollections.observableArrayList();
-    for (BankAccount account : accounts) {
-      data.add(new AccountTableItem(account));
+    for (int i = 0; i < accounts.size(); i++) {
+      data.add(new AccountTableItem(accounts.get(i), i));
     }
-    table.setItems(data);
+    filteredItems = new FilteredList<>(data);
+    SortedList<AccountTableItem> sortedItems = new SortedList<>(filteredItems);
+    sortedItems.comparatorProperty().bind(table.comparatorProperty());
+    table.setItems(sortedItems);
 
     // Set selection handler
     table
@@ -230,9 +273,8 @@ public class AccountInfoController {
       // Create description based on transaction type
       StringBuilder desc = new StringBuilder();
       if (transaction.getType() == TransactionType.TRANSFER
-          && transaction.getDestinationAccount() != null) {
-        BankAccount destAccount = (BankAccount) transaction.getDestinationAccount();
-        desc.append("Transfer to Account #").append(destAccount.getAccountNumber());
+          && transaction.hasDestinationAccount()) {
+        desc.append("Transfer to Account #").append(transaction.getDestinationAccountNumber());
       } else if (transaction.getType() == TransactionType.DEPOSIT) {
         desc.append("Deposit");
       } else if (transaction.getType() == TransactionType.WITHDRAWAL) {
@@ -538,17 +580,11 @@ public class AccountInfoController {
     // Add columns to table
     transactionTable.getColumns().addAll(dateCol, typeCol, amountCol, descriptionCol);
 
-    // Add data to table
-    ObservableList<TransactionTableItem> data = FXCollections.observableArrayList();
-    List<Transaction> transactions = account.getTransactionHistory();
-
-    if (transactions != null) {
-      for (Transaction transaction : transactions) {
-        data.add(new TransactionTableItem(transaction));
-      }
-    }
-
-    transactionTable.setItems(data);
+    // Rows are paged in from the ledger as the table scrolls, oldest first
+    transactionTable.setItems(
+        new LedgerRows<>(
+            account, (transaction, balance) -> new TransactionTableItem(transaction), false));
+    LedgerRows.installSortPolicy(transactionTable, dateCol, typeCol, amountCol, false);
 
     // Add elements to panel
     panel.getChildren().addAll(transactionsTitle, transactionTable);
@@ -623,30 +659,25 @@ public class AccountInfoController {
 
   /** Filters the account table based on search text */
   private void filterTable(String searchText) {
-    if (searchText == null || searchText.isEmpty()) {
-      ObservableList<AccountTableItem> items = FXCollections.observableArrayList();
-      for (BankAccount account : accounts) {
-        items.add(new AccountTableItem(account));
-      }
-      accountTable.setItems(items);
+    if (searchIndex == null) {
       return;
     }
 
-    String lowerCaseFilter = searchText.toLowerCase();
-
-    ObservableList<AccountTableItem> filteredList = FXCollections.observableArrayList();
-    for (BankAccount account : accounts) {
-      AccountTableItem item = new AccountTableItem(account);
-
-      boolean accountNumberMatch = item.getAccountNumber().contains(lowerCaseFilter);
-      boolean clientNameMatch = item.getClientName().toLowerCase().contains(lowerCaseFilter);
-      boolean accountTypeMatch = item.getAccountType().toLowerCase().contains(lowerCaseFilter);
-
-      if (accountNumberMatch || clientNameMatch || accountTypeMatch) {
-        filteredList.add(item);
-      }
+    if (searchText == null || searchText.isEmpty()) {
+      lastQuery = null;
+      lastMatches = null;
+      filteredItems.setPredicate(null);
+      return;
     }
 
-    accountTable.setItems(filteredList);
+    // A query containing the previous one can only match a subset of its results
+    BitSet matches =
+        (lastQuery != null && searchText.toLowerCase().contains(lastQuery.toLowerCase()))
+            ? searchIndex.refine(lastMatches, searchText)
+            : searchIndex.search(searchText);
+    lastQuery = searchText;
+    lastMatches = matches;
+
+    filteredItems.setPredicate(item -> matches.get(item.position));
   }
 }
@@ -655,6 +655,7 @@ public class AccountManagementController {
 
     // Add columns to table
     transactionTable.getColumns().addAll(dateCol, typeCol, amountCol, balanceCol, descriptionCol);
+    LedgerRows.installSortPolicy(transactionTable, dateCol, typeCol, amountCol, true);
 
     // Export transactions button
     Button exportButton = new Button("Export Transactions");
@@ -976,9 +977,8 @@ public class AccountManagementController {
       // Create description based on transaction type
       StringBuilder desc = new StringBuilder();
       if (transaction.getType() == TransactionType.TRANSFER
-          && transaction.getDestinationAccount() != null) {
-        BankAccount destAccount = (BankAccount) transaction.getDestinationAccount();
-        desc.append("Transfer to Account #").append(destAccount.getAccountNumber());
+          && transaction.hasDestinationAccount()) {
+        desc.append("Transfer to Account #").append(transaction.getDestinationAccountNumber());
       } else if (transaction.getType() == TransactionType.DEPOSIT) {
         desc.append("Deposit");
       } else if (transaction.getType() == TransactionType.WITHDRAWAL) {
@@ -1056,7 +1056,7 @@ public class AccountManagementController {
 
     // Disable transaction table
     if (transactionTable != null) {
-      transactionTable.setItems(FXCollections.observableArrayList());
+      transactionTable.setItems(new LedgerRows<>(null, TransactionItem::new, true));
     }
 
     // Clear chart
@@ -1238,40 +1238,21 @@ public class AccountManagementController {
     updateTransferOptions();
   }
 
-  /** Updates the transaction table with transactions from the selected account */
+  /**
+   * Updates the transaction table with transactions from the selected account. Rows are paged in
+   * from the account's ledger as the table scrolls, so large histories open without building
+   * every row
+   */
   private void updateTransactionTable() {
     if (selectedAccount == null || transactionTable == null) {
       return;
     }
 
-    List<Transaction> transactions = selectedAccount.getTransactionHistory();
-
-    if (transactions == null || transactions.isEmpty()) {
-      transactionTable.setItems(FXCollections.observableArrayList());
-      return;
-    }
-
-    // Sort transactions by date (most recent first)
-    transactions.sort((t1, t2) -> t2.getDate().compareTo(t1.getDate()));
-
-    // Calculate running balance for each transaction
-    double runningBalance = selectedAccount.getAmountStored();
-    ObservableList<TransactionItem> tableItems = FXCollections.observableArrayList();
-
-    for (Transaction transaction : transactions) {
-      // For deposits and interest, subtract amount to get previous balance
-      if (transaction.getAmount() > 0) {
-        runningBalance -= transaction.getAmount();
-      }
-      // For withdrawals, fees, and transfers, add the absolute amount
-      else {
-        runningBalance += Math.abs(transaction.getAmount());
-      }
-
-      tableItems.add(new TransactionItem(transaction, runningBalance));
-    }
-
-    transactionTable.setItems(tableItems);
+    // Most recent transaction first, unless the user sorted the table another way
+    LedgerRows<TransactionItem> rows =
+        new LedgerRows<>(selectedAccount, TransactionItem::new, true);
+    transactionTable.setItems(rows);
+    transactionTable.sort();
   }
 
   /** Updates the balance chart with transaction data */
@@ -1308,8 +1289,7 @@ public class AccountManagementController {
       return;
     }
 
-    // Sort transactions by date (oldest first)
-    transactions.sort((t1, t2) -> t1.getDate().compareTo(t2.getDate()));
+    // The history is already in recording order (oldest first)
 
     // Create data series for balance over time
     XYChart.Series<Number, Number> series = new XYChart.Series<>();
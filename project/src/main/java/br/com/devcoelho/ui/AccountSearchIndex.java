@@ -0,0 +1,222 @@
+package br.com.devcoelho.ui;
+
+import br.com.devcoelho.BankAccount;
+import br.com.devcoelho.BankInvestmentAccount;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Substring search over accounts by account number, client name and account type.
+ *
+ * <p>Accounts are identified by their position in the list the index was built from. Account
+ * numbers and lower-cased client names are indexed by trigram: each trigram maps to the sorted
+ * positions of the accounts containing it. A query of three or more characters intersects the
+ * posting lists of its trigrams, starting with the shortest, and checks only the surviving
+ * candidates, so its cost follows the number of candidates rather than the number of accounts.
+ * Shorter queries, which match a large share of the accounts anyway, are checked against every
+ * account. Account types match as in the table, "Simple" or "Investment".
+ *
+ * <p>Immutable once built; build it off the JavaFX thread for large account lists.
+ */
+final class AccountSearchIndex {
+
+  private static final String SIMPLE = "simple";
+  private static final String INVESTMENT = "investment";
+
+  private final String[] numbers;
+  private final String[] names;
+  private final BitSet investments;
+  private final Map<Long, int[]> postings;
+
+  /**
+   * Builds an index
+   *
+   * @param accounts the accounts, whose positions identify them in search results
+   */
+  AccountSearchIndex(List<BankAccount> accounts) {
+    int count = accounts.size();
+    this.numbers = new String[count];
+    this.names = new String[count];
+    this.investments = new BitSet(count);
+
+    Map<Long, PostingList> building = new HashMap<>();
+    for (int i = 0; i < count; i++) {
+      BankAccount account = accounts.get(i);
+      numbers[i] = String.valueOf(account.getAccountNumber());
+      names[i] = account.getClient().getName().toLowerCase(Locale.ROOT);
+      if (account instanceof BankInvestmentAccount) {
+        investments.set(i);
+      }
+
+      addTrigrams(building, numbers[i], i);
+      addTrigrams(building, names[i], i);
+    }
+
+    this.postings = new HashMap<>(building.size() * 2);
+    for (Map.Entry<Long, PostingList> entry : building.entrySet()) {
+      postings.put(entry.getKey(), entry.getValue().toArray());
+    }
+  }
+
+  /** Gets the number of indexed accounts */
+  int size() {
+    return numbers.length;
+  }
+
+  /**
+   * Finds the accounts matching a query
+   *
+   * @param query the search text; matched case-insensitively anywhere in a field
+   * @return the positions of the matching accounts
+   */
+  BitSet search(String query) {
+    String needle = query.toLowerCase(Locale.ROOT);
+    BitSet matches = typeMatches(needle);
+
+    int[] candidates = (needle.length() >= 3) ? candidates(needle) : null;
+    if (candidates == null) {
+      // Short query: every account is a candidate
+      for (int i = 0; i < numbers.length; i++) {
+        if (!matches.get(i) && matchesText(i, needle)) {
+          matches.set(i);
+        }
+      }
+    } else {
+      for (int i : candidates) {
+        if (matchesText(i, needle)) {
+          matches.set(i);
+        }
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Narrows the result of an earlier query down to a longer one. Any account matching the new
+   * query also matched the earlier one if the new query contains it
+   *
+   * @param previousMatches the positions matching the earlier query
+   * @param query the new search text, containing the earlier one
+   * @return the positions of the accounts matching the new query
+   */
+  BitSet refine(BitSet previousMatches, String query) {
+    String needle = query.toLowerCase(Locale.ROOT);
+    BitSet matches = typeMatches(needle);
+    matches.and(previousMatches);
+
+    for (int i = previousMatches.nextSetBit(0); i >= 0; i = previousMatches.nextSetBit(i + 1)) {
+      if (!matches.get(i) && matchesText(i, needle)) {
+        matches.set(i);
+      }
+    }
+    return matches;
+  }
+
+  /** Gets the accounts whose type name contains the query */
+  private BitSet typeMatches(String needle) {
+    BitSet matches = new BitSet(numbers.length);
+    if (INVESTMENT.contains(needle)) {
+      matches.or(investments);
+    }
+    if (SIMPLE.contains(needle)) {
+      matches.set(0, numbers.length);
+      if (!INVESTMENT.contains(needle)) {
+        matches.andNot(investments);
+      }
+    }
+    return matches;
+  }
+
+  private boolean matchesText(int position, String needle) {
+    return numbers[position].contains(needle) || names[position].contains(needle);
+  }
+
+  /**
+   * Intersects the posting lists of the query's trigrams
+   *
+   * @return the candidate positions, sorted; empty if some trigram appears nowhere
+   */
+  private int[] candidates(String needle) {
+    int gramCount = needle.length() - 2;
+    int[][] lists = new int[gramCount][];
+    for (int i = 0; i < gramCount; i++) {
+      int[] list = postings.get(trigram(needle, i));
+      if (list == null) {
+        return new int[0];
+      }
+      lists[i] = list;
+    }
+
+    // Start with the shortest list, so each step only shrinks a small set
+    Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+    int[] result = lists[0];
+    int size = result.length;
+    for (int l = 1; l < lists.length && size > 0; l++) {
+      int[] other = lists[l];
+      int[] narrowed = new int[size];
+      int kept = 0;
+      int j = 0;
+      for (int i = 0; i < size && j < other.length; i++) {
+        int position = result[i];
+        j = lowerBound(other, j, position);
+        if (j < other.length && other[j] == position) {
+          narrowed[kept++] = position;
+        }
+      }
+      result = narrowed;
+      size = kept;
+    }
+    return (size == result.length) ? result : Arrays.copyOf(result, size);
+  }
+
+  /** Finds the first index from {@code from} holding a value of at least {@code value} */
+  private static int lowerBound(int[] list, int from, int value) {
+    // Gallop ahead, then binary search the last step
+    int step = 1;
+    int high = from;
+    while (high < list.length && list[high] < value) {
+      from = high + 1;
+      high += step;
+      step <<= 1;
+    }
+    int index = Arrays.binarySearch(list, from, Math.min(high + 1, list.length), value);
+    return (index >= 0) ? index : -index - 1;
+  }
+
+  private static void addTrigrams(Map<Long, PostingList> building, String text, int position) {
+    for (int i = 0; i + 3 <= text.length(); i++) {
+      building.computeIfAbsent(trigram(text, i), k -> new PostingList()).add(position);
+    }
+  }
+
+  private static long trigram(String text, int start) {
+    return ((long) text.charAt(start) << 32)
+        | ((long) text.charAt(start + 1) << 16)
+        | text.charAt(start + 2);
+  }
+
+  /** Growable sorted list of positions; positions are added in increasing order */
+  private static final class PostingList {
+    private int[] positions = new int[4];
+    private int size;
+
+    void add(int position) {
+      // A trigram seen twice in the same account is stored once
+      if (size > 0 && positions[size - 1] == position) {
+        return;
+      }
+      if (size == positions.length) {
+        positions = Arrays.copyOf(positions, size * 2);
+      }
+      positions[size++] = position;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(positions, size);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package br.com.devcoelho.ui;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javafx.concurrent.Task;
+
+/**
+ * Runs blocking work, like file I/O, simulations or network lookups, off the JavaFX application
+ * thread.
+ *
+ * <p>The work runs on a shared pool of daemon threads and may report progress and check for
+ * cancellation through the task. The success and failure handlers run on the JavaFX application
+ * thread, so they're the place to touch the UI. A cancelled task calls neither handler.
+ *
+ * @param <T> the result of the work
+ */
+final class BackgroundTask<T> extends Task<T> {
+
+  private static final ExecutorService EXECUTOR =
+      Executors.newCachedThreadPool(
+          new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+              Thread thread = new Thread(runnable, "bank-ui-worker-" + count.incrementAndGet());
+              thread.setDaemon(true); // Never keeps the application from exiting
+              return thread;
+            }
+          });
+
+  private final Work<T> work;
+
+  private BackgroundTask(Work<T> work) {
+    this.work = work;
+  }
+
+  /**
+   * Starts work in the background
+   *
+   * @param title the task title, e.g. for a progress dialog
+   * @param work the work to run; must not touch the UI
+   * @param onSuccess receives the result on the JavaFX application thread
+   * @param onFailure receives the failure on the JavaFX application thread
+   * @return the running task, to bind progress to or cancel
+   */
+  static <T> BackgroundTask<T> start(
+      String title, Work<T> work, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+    BackgroundTask<T> task = new BackgroundTask<>(work);
+    task.updateTitle(title);
+    task.setOnSucceeded(e -> onSuccess.accept(task.getValue()));
+    task.setOnFailed(e -> onFailure.accept(task.getException()));
+    EXECUTOR.execute(task);
+    return task;
+  }
+
+  @Override
+  protected T call() throws Exception {
+    return work.run(this);
+  }
+
+  /**
+   * Reports progress; may be called from the worker thread
+   *
+   * @param done the units of work done
+   * @param total the total units of work
+   */
+  void reportProgress(long done, long total) {
+    updateProgress(done, total);
+  }
+
+  /**
+   * Reports what the work is doing; may be called from the worker thread
+   *
+   * @param message the status message
+   */
+  void reportMessage(String message) {
+    updateMessage(message);
+  }
+
+  /** Work run by a background task */
+  @FunctionalInterface
+  interface Work<T> {
+    /**
+     * Runs the work
+     *
+     * @param task the task running it, for reporting progress and checking cancellation
+     * @return the result
+     */
+    T run(BackgroundTask<T> task) throws Exception;
+  }
+}
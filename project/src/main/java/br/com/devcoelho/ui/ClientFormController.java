@@ -15,6 +15,7 @@ import javafx.stage.Stage;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -37,6 +38,7 @@ public class ClientFormController {
     private Button cancelButton;
     private ProgressIndicator progressIndicator;
     private TextArea resultArea;
+    private CompletableFuture<Address> lookup;
     
     public ClientFormController(Bank bank, List<Person> clients) {
         this.bank = bank;
@@ -250,6 +252,9 @@ public class ClientFormController {
         
         // Cancel button event
         cancelButton.setOnAction(e -> {
+            if (lookup != null) {
+                lookup.cancel(false);
+            }
             Stage stage = (Stage) cancelButton.getScene().getWindow();
             stage.close();
         });
@@ -269,43 +274,51 @@ public class ClientFormController {
         progressIndicator.setVisible(true);
         saveButton.setDisable(true);
         
-        // Create a new address to validate
-        Address tempAddress = new Address();
+        // Only the latest lookup updates the form
+        if (lookup != null) {
+            lookup.cancel(false);
+        }
         
-        // Use a new thread to avoid UI freezing
-        new Thread(() -> {
-            boolean valid = tempAddress.validateAndFillAddressByCep(cep);
+        // The lookup doesn't block any thread, so cancelling it frees everything it holds
+        CompletableFuture<Address> current = Address.lookupByCepAsync(cep);
+        lookup = current;
+        current.whenComplete((foundAddress, failure) -> Platform.runLater(() -> {
+            // Cancelled by the Cancel button or replaced by a newer lookup
+            if (lookup != current) {
+                return;
+            }
+            progressIndicator.setVisible(false);
+            saveButton.setDisable(false);
+            if (current.isCancelled()) {
+                return;
+            }
             
-            // Update UI with results on JavaFX thread
-            Platform.runLater(() -> {
-                progressIndicator.setVisible(false);
-                saveButton.setDisable(false);
+            if (failure != null) {
+                showError("CEP lookup failed: " + failure.getMessage());
+            } else if (foundAddress != null) {
+                // Fill form fields with address info
+                streetField.setText(foundAddress.getAddress());
+                neighborhoodField.setText(foundAddress.getNeighborhood());
+                cityField.setText(foundAddress.getCityName());
                 
-                if (valid) {
-                    // Fill form fields with address info
-                    streetField.setText(tempAddress.getAddress());
-                    neighborhoodField.setText(tempAddress.getNeighborhood());
-                    cityField.setText(tempAddress.getCityName());
-                    
-                    // Set state if available
-                    if (tempAddress.getState() != null) {
-                        String stateOption = tempAddress.getState().getAbbreviation() + " - " + 
-                                            tempAddress.getState().getFullName();
-                        stateComboBox.setValue(stateOption);
-                    }
-                    
-                    // Show success message
-                    resultArea.setText("CEP found! Address details loaded.");
-                    resultArea.setStyle("-fx-text-fill: #27ae60;");
-                    resultArea.setVisible(true);
-                } else {
-                    // Show error message
-                    resultArea.setText("Invalid CEP or address not found. Please enter address details manually.");
-                    resultArea.setStyle("-fx-text-fill: #c0392b;");
-                    resultArea.setVisible(true);
+                // Set state if available
+                if (foundAddress.getState() != null) {
+                    String stateOption = foundAddress.getState().getAbbreviation() + " - " + 
+                                        foundAddress.getState().getFullName();
+                    stateComboBox.setValue(stateOption);
                 }
-            });
-        }).start();
+                
+                // Show success message
+                resultArea.setText("CEP found! Address details loaded.");
+                resultArea.setStyle("-fx-text-fill: #27ae60;");
+                resultArea.setVisible(true);
+            } else {
+                // Show error message
+                resultArea.setText("Invalid CEP or address not found. Please enter address details manually.");
+                resultArea.setStyle("-fx-text-fill: #c0392b;");
+                resultArea.setVisible(true);
+            }
+        }));
     }
     
     /**
@@ -0,0 +1,285 @@
+package br.com.devcoelho.ui;
+
+import br.com.devcoelho.BankAccount;
+import br.com.devcoelho.LedgerView;
+import br.com.devcoelho.Transaction;
+import br.com.devcoelho.TransactionLedger;
+import br.com.devcoelho.TransactionType;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javafx.collections.ObservableListBase;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+
+/**
+ * Read-only list of table rows backed by an account's {@link LedgerView}.
+ *
+ * <p>A TableView only asks its items for the rows it displays, so rows are created on demand, a
+ * page at a time, from the ledger's columns; a few recently used pages are kept. The list covers
+ * the transactions recorded when it was created. Sorting by date is a matter of index arithmetic,
+ * since the ledger is in date order; sorting by type or amount sorts an {@code int[]} permutation
+ * of the row indexes by the primitive columns, still without creating rows. The running balance of
+ * any row comes from prefix sums of the amounts, kept every {@value #CHECKPOINT_INTERVAL} rows, so
+ * opening an account with millions of transactions costs one scan of a primitive column and no
+ * row objects.
+ *
+ * @param <T> the row type
+ */
+final class LedgerRows<T> extends ObservableListBase<T> {
+
+  private static final int PAGE_SIZE = 64;
+  private static final int MAX_CACHED_PAGES = 32;
+  private static final int CHECKPOINT_INTERVAL = 1024;
+
+  private final LedgerView ledger;
+  private final int size;
+  private final double currentBalance;
+  private final long totalCents;
+  private final long[] checkpoints;
+  private final RowMapper<T> mapper;
+  private final SortKey sortKey;
+  private final boolean descending;
+  private final int[] order; // Ledger row of each list index, or null when sorted by date
+  private final Map<Integer, Object[]> pages =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Object[]> eldest) {
+          return size() > MAX_CACHED_PAGES;
+        }
+      };
+
+  /**
+   * Creates the rows for an account
+   *
+   * @param account the account, or null for no rows
+   * @param mapper creates a row from a transaction and the balance shown next to it
+   * @param newestFirst whether the most recent transaction comes first
+   */
+  LedgerRows(BankAccount account, RowMapper<T> mapper, boolean newestFirst) {
+    this.ledger =
+        (account != null) ? account.getTransactionLedger() : new TransactionLedger(0).view();
+    this.size = ledger.size();
+    this.currentBalance = (account != null) ? account.getAmountStored() : 0;
+    this.mapper = mapper;
+    this.sortKey = SortKey.DATE;
+    this.descending = newestFirst;
+    this.order = null;
+
+    // checkpoints[c] holds the sum of the amounts before row c * CHECKPOINT_INTERVAL
+    this.checkpoints = new long[size / CHECKPOINT_INTERVAL + 1];
+    long sum = 0;
+    for (int i = 0; i < size; i++) {
+      if (i % CHECKPOINT_INTERVAL == 0) {
+        checkpoints[i / CHECKPOINT_INTERVAL] = sum;
+      }
+      sum += ledger.getAmountCents(i);
+    }
+    this.totalCents = sum;
+  }
+
+  private LedgerRows(LedgerRows<T> other, SortKey sortKey, boolean descending) {
+    this.ledger = other.ledger;
+    this.size = other.size;
+    this.currentBalance = other.currentBalance;
+    this.totalCents = other.totalCents;
+    this.checkpoints = other.checkpoints;
+    this.mapper = other.mapper;
+    this.sortKey = sortKey;
+    this.descending = descending;
+    this.order = (sortKey == SortKey.DATE) ? null : sortOrder(sortKey, descending);
+  }
+
+  /**
+   * Gets the same rows in another order, without rescanning the ledger
+   *
+   * @param sortKey the column to sort by
+   * @param descending whether the largest value comes first
+   * @return these rows if they're already in that order, or the rows sorted that way
+   */
+  LedgerRows<T> sortedBy(SortKey sortKey, boolean descending) {
+    if (this.sortKey == sortKey && this.descending == descending) {
+      return this;
+    }
+    return new LedgerRows<>(this, sortKey, descending);
+  }
+
+  /** Sorts the row indexes by a column; ties keep ledger order, oldest first */
+  private int[] sortOrder(SortKey sortKey, boolean descending) {
+    int[] rows = new int[size];
+    if (sortKey == SortKey.TYPE) {
+      // Counting sort over the few types, in the alphabetical order of their descriptions
+      Comparator<TransactionType> byDescription =
+          Comparator.comparing(TransactionType::getDescription);
+      TransactionType[] types = TransactionType.values();
+      Arrays.sort(types, descending ? byDescription.reversed() : byDescription);
+
+      int[] start = new int[types.length + 1];
+      int[] rank = new int[types.length];
+      for (int r = 0; r < types.length; r++) {
+        rank[types[r].ordinal()] = r;
+      }
+      for (int i = 0; i < size; i++) {
+        start[rank[ledger.getType(i).ordinal()] + 1]++;
+      }
+      for (int r = 0; r < types.length; r++) {
+        start[r + 1] += start[r];
+      }
+      for (int i = 0; i < size; i++) {
+        rows[start[rank[ledger.getType(i).ordinal()]]++] = i;
+      }
+      return rows;
+    }
+
+    // Stable merge sort of the indexes by amount, comparing the primitive column in place
+    for (int i = 0; i < size; i++) {
+      rows[i] = i;
+    }
+    int[] buffer = new int[size];
+    for (int width = 1; width < size; width *= 2) {
+      for (int low = 0; low < size - width; low += 2 * width) {
+        int middle = low + width;
+        int high = Math.min(low + 2 * width, size);
+        int left = low;
+        int right = middle;
+        for (int k = low; k < high; k++) {
+          if (right >= high
+              || (left < middle && compareAmounts(rows[left], rows[right], descending) <= 0)) {
+            buffer[k] = rows[left++];
+          } else {
+            buffer[k] = rows[right++];
+          }
+        }
+        System.arraycopy(buffer, low, rows, low, high - low);
+      }
+    }
+    return rows;
+  }
+
+  private int compareAmounts(int row, int otherRow, boolean descending) {
+    int comparison = Long.compare(ledger.getAmountCents(row), ledger.getAmountCents(otherRow));
+    return descending ? -comparison : comparison;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+    }
+
+    int pageNumber = index / PAGE_SIZE;
+    Object[] page = pages.get(pageNumber);
+    if (page == null) {
+      page = loadPage(pageNumber);
+      pages.put(pageNumber, page);
+    }
+    return (T) page[index % PAGE_SIZE];
+  }
+
+  private Object[] loadPage(int pageNumber) {
+    int first = pageNumber * PAGE_SIZE;
+    Object[] page = new Object[Math.min(PAGE_SIZE, size - first)];
+    for (int i = 0; i < page.length; i++) {
+      int row = rowAt(first + i);
+      Transaction transaction = ledger.get(row);
+
+      // Same as walking back from the current balance, undoing this and every later transaction
+      double runningBalance = currentBalance - (totalCents - prefixCents(row)) / 100.0;
+      page[i] = mapper.map(transaction, runningBalance);
+    }
+    return page;
+  }
+
+  /** Maps a list index to its ledger row */
+  private int rowAt(int index) {
+    if (order != null) {
+      return order[index];
+    }
+    return descending ? size - 1 - index : index;
+  }
+
+  /** Sums the amounts of the rows before the given one, starting from the nearest checkpoint */
+  private long prefixCents(int row) {
+    int checkpoint = row / CHECKPOINT_INTERVAL;
+    long sum = checkpoints[checkpoint];
+    for (int i = checkpoint * CHECKPOINT_INTERVAL; i < row; i++) {
+      sum += ledger.getAmountCents(i);
+    }
+    return sum;
+  }
+
+  /**
+   * Shows ledger rows in a table, sorting by date, type or amount through the row order. Only the
+   * first column of the sort order counts, and the balance and description columns aren't sortable,
+   * since sorting them would mean materializing every row
+   *
+   * @param table the table, whose items must be ledger rows
+   * @param dateColumn the date column
+   * @param typeColumn the transaction type column
+   * @param amountColumn the amount column
+   * @param newestFirstByDefault the order when the table isn't sorted
+   */
+  static <T> void installSortPolicy(
+      TableView<T> table,
+      TableColumn<T, ?> dateColumn,
+      TableColumn<T, ?> typeColumn,
+      TableColumn<T, ?> amountColumn,
+      boolean newestFirstByDefault) {
+    for (TableColumn<T, ?> column : table.getColumns()) {
+      column.setSortable(column == dateColumn || column == typeColumn || column == amountColumn);
+    }
+
+    table.setSortPolicy(
+        t -> {
+          if (!(t.getItems() instanceof LedgerRows)) {
+            return false;
+          }
+          LedgerRows<T> rows = (LedgerRows<T>) t.getItems();
+          TableColumn<T, ?> column = t.getSortOrder().isEmpty() ? null : t.getSortOrder().get(0);
+          boolean descending =
+              (column != null) && column.getSortType() == TableColumn.SortType.DESCENDING;
+
+          LedgerRows<T> sorted;
+          if (column == typeColumn) {
+            sorted = rows.sortedBy(SortKey.TYPE, descending);
+          } else if (column == amountColumn) {
+            sorted = rows.sortedBy(SortKey.AMOUNT, descending);
+          } else if (column == dateColumn) {
+            sorted = rows.sortedBy(SortKey.DATE, descending);
+          } else {
+            sorted = rows.sortedBy(SortKey.DATE, newestFirstByDefault);
+          }
+          if (sorted != rows) {
+            t.setItems(sorted);
+          }
+          return true;
+        });
+  }
+
+  /** The columns rows can be sorted by */
+  enum SortKey {
+    DATE,
+    TYPE,
+    AMOUNT
+  }
+
+  /** Creates a table row from a transaction */
+  @FunctionalInterface
+  interface RowMapper<T> {
+    /**
+     * Creates a row
+     *
+     * @param transaction the transaction
+     * @param runningBalance the balance before the transaction, as shown in the history
+     * @return the row
+     */
+    T map(Transaction transaction, double runningBalance);
+  }
+}
@@ -4,6 +4,7 @@ import br.com.devcoelho.Bank;
 import br.com.devcoelho.BankAccount;
 import br.com.devcoelho.Person;
 import br.com.devcoelho.persistence.FilePersistence;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import javafx.application.Application;
@@ -24,6 +25,7 @@ import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import javafx.stage.Window;
 
 /** Main JavaFX Application for the Banking System */
 public class MainApplication extends Application {
@@ -31,15 +33,14 @@ public class MainApplication extends Application {
   private Bank bank;
   private List<Person> clients = new ArrayList<>();
   private List<BankAccount> accounts = new ArrayList<>();
+  private VBox menuBox;
+  private Text statusText;
 
   @Override
   public void start(Stage primaryStage) {
     // Initialize bank
     bank = new Bank("Potato's Bank", "777");
 
-    // Load data
-    loadData();
-
     // Create main layout
     BorderPane mainLayout = new BorderPane();
     mainLayout.setPadding(new Insets(20));
@@ -50,7 +51,7 @@ public class MainApplication extends Application {
     mainLayout.setTop(headerBox);
 
     // Main menu
-    VBox menuBox = createMainMenu(primaryStage);
+    menuBox = createMainMenu(primaryStage);
     mainLayout.setCenter(menuBox);
 
     // Footer
@@ -66,6 +67,9 @@ public class MainApplication extends Application {
     primaryStage.setScene(scene);
     primaryStage.setResizable(true);
     primaryStage.show();
+
+    // Load data in the background; the menu is enabled once it's loaded
+    loadData(primaryStage);
   }
 
   /** Create the header section with bank logo and title */
@@ -113,10 +117,7 @@ public class MainApplication extends Application {
     menuBox.setStyle("-fx-background-color: white; -fx-background-radius: 10;");
 
     // Status summary
-    Text statusText =
-        new Text(
-            String.format(
-                "System Status: %d clients, %d accounts", clients.size(), accounts.size()));
+    statusText = new Text();
     statusText.setFont(Font.font("Arial", 12));
     statusText.setStyle("-fx-fill: #34495e;");
 
@@ -134,11 +135,7 @@ public class MainApplication extends Application {
     removeAccountBtn.setOnAction(e -> openRemoveAccountWindow(primaryStage));
     accountInfoBtn.setOnAction(e -> openAccountInfoWindow(primaryStage));
     simulateTimeBtn.setOnAction(e -> openSimulateTimeWindow(primaryStage));
-    exitBtn.setOnAction(
-        e -> {
-          saveData();
-          Platform.exit();
-        });
+    exitBtn.setOnAction(e -> saveDataAndExit(primaryStage));
 
     // Add all components to the menu
     menuBox
@@ -388,47 +385,113 @@ public class MainApplication extends Application {
     simulationStage.show();
   }
 
-  /** Load data from text files */
-  private void loadData() {
-    try {
-      clients = FilePersistence.loadClients();
-      accounts = FilePersistence.loadAccounts(clients, bank);
-      System.out.println(
-          "Data loaded successfully: "
-              + clients.size()
-              + " clients, "
-              + accounts.size()
-              + " accounts");
-    } catch (Exception e) {
-      System.err.println("Error loading data: " + e.getMessage());
-
-      // Show error in UI
-      Platform.runLater(
-          () -> {
-            Alert alert = new Alert(Alert.AlertType.ERROR);
-            alert.setTitle("Data Loading Error");
-            alert.setHeaderText("Error Loading Data");
-            alert.setContentText("Could not load data from files: " + e.getMessage());
-            alert.showAndWait();
-          });
+  /** Load data from text files in the background */
+  private void loadData(Stage primaryStage) {
+    menuBox.setDisable(true);
+    BackgroundTask<LoadedData> task =
+        BackgroundTask.start(
+            "Loading data",
+            t -> {
+              t.reportMessage("Loading clients...");
+              t.reportProgress(0, 2);
+              List<Person> loadedClients = FilePersistence.loadClients();
+
+              t.reportMessage("Loading accounts...");
+              t.reportProgress(1, 2);
+              List<BankAccount> loadedAccounts = FilePersistence.loadAccounts(loadedClients, bank);
+              t.reportProgress(2, 2);
+              return new LoadedData(loadedClients, loadedAccounts);
+            },
+            data -> {
+              clients = data.clients;
+              accounts = data.accounts;
+              System.out.println(
+                  "Data loaded successfully: "
+                      + clients.size()
+                      + " clients, "
+                      + accounts.size()
+                      + " accounts");
+              showStatus();
+            },
+            e -> {
+              System.err.println("Error loading data: " + e.getMessage());
+              showStatus();
+
+              // Show error in UI
+              Alert alert = new Alert(Alert.AlertType.ERROR);
+              alert.setTitle("Data Loading Error");
+              alert.setHeaderText("Error Loading Data");
+              alert.setContentText("Could not load data from files: " + e.getMessage());
+              alert.showAndWait();
+            });
+
+    statusText.textProperty().bind(task.messageProperty());
+    ProgressDialog.show(primaryStage, task, false);
+  }
+
+  /** Shows the system status and enables the menu */
+  private void showStatus() {
+    statusText.textProperty().unbind();
+    statusText.setText(
+        String.format("System Status: %d clients, %d accounts", clients.size(), accounts.size()));
+    menuBox.setDisable(false);
+  }
+
+  /** Save data to text files in the background, then exit */
+  private void saveDataAndExit(Stage primaryStage) {
+    // Close the other windows so nothing changes the data while it's written
+    for (Window window : new ArrayList<>(Window.getWindows())) {
+      if (window != primaryStage) {
+        window.hide();
+      }
     }
+    menuBox.setDisable(true);
+
+    List<Person> clientsToSave = new ArrayList<>(clients);
+    List<BankAccount> accountsToSave = new ArrayList<>(accounts);
+    BackgroundTask<Void> task =
+        BackgroundTask.start(
+            "Saving data",
+            t -> {
+              t.reportMessage("Saving clients...");
+              t.reportProgress(0, 2);
+              FilePersistence.saveClients(clientsToSave);
+
+              t.reportMessage("Saving accounts...");
+              t.reportProgress(1, 2);
+              if (!FilePersistence.saveAccounts(accountsToSave)) {
+                throw new IOException("the account files could not be written");
+              }
+              t.reportProgress(2, 2);
+              return null;
+            },
+            ignored -> {
+              System.out.println("Data saved successfully");
+              Platform.exit();
+            },
+            e -> {
+              System.err.println("Error saving data: " + e.getMessage());
+
+              // Show error in UI
+              Alert alert = new Alert(Alert.AlertType.ERROR);
+              alert.setTitle("Data Saving Error");
+              alert.setHeaderText("Error Saving Data");
+              alert.setContentText("Could not save data to files: " + e.getMessage());
+              alert.showAndWait();
+              Platform.exit();
+            });
+
+    ProgressDialog.show(primaryStage, task, false);
   }
 
-  /** Save data to text files */
-  private void saveData() {
-    try {
-      FilePersistence.saveClients(clients);
-      FilePersistence.saveAccounts(accounts);
-      System.out.println("Data saved successfully");
-    } catch (Exception e) {
-      System.err.println("Error saving data: " + e.getMessage());
+  /** Clients and accounts read by the loading task */
+  private static final class LoadedData {
+    private final List<Person> clients;
+    private final List<BankAccount> accounts;
 
-      // Show error in UI
-      Alert alert = new Alert(Alert.AlertType.ERROR);
-      alert.setTitle("Data Saving Error");
-      alert.setHeaderText("Error Saving Data");
-      alert.setContentText("Could not save data to files: " + e.getMessage());
-      alert.showAndWait();
+    private LoadedData(List<Person> clients, List<BankAccount> accounts) {
+      this.clients = clients;
+      this.accounts = accounts;
     }
   }
 
@@ -0,0 +1,79 @@
+package br.com.devcoelho.ui;
+
+import javafx.concurrent.Task;
+import javafx.concurrent.Worker;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+import javafx.stage.Window;
+
+/**
+ * Small window showing the progress of a background task, which closes when the task ends. The
+ * dialog blocks every window of the application, since the tasks it shows load, save or change
+ * the accounts other windows edit.
+ */
+final class ProgressDialog {
+
+  private ProgressDialog() {}
+
+  /**
+   * Shows the progress of a task
+   *
+   * @param owner the window the dialog is shown over
+   * @param task the running task
+   * @param cancellable whether to offer a button that cancels the task
+   */
+  static void show(Window owner, Task<?> task, boolean cancellable) {
+    Stage dialog = new Stage(StageStyle.UTILITY);
+    dialog.initModality(Modality.APPLICATION_MODAL);
+    dialog.initOwner(owner);
+    dialog.titleProperty().bind(task.titleProperty());
+    dialog.setOnCloseRequest(e -> e.consume()); // Closes with the task
+
+    Label titleLabel = new Label();
+    titleLabel.textProperty().bind(task.titleProperty());
+    titleLabel.setFont(Font.font("Arial", FontWeight.BOLD, 14));
+
+    Label messageLabel = new Label();
+    messageLabel.textProperty().bind(task.messageProperty());
+    messageLabel.setFont(Font.font("Arial", 12));
+
+    ProgressBar progressBar = new ProgressBar();
+    progressBar.setPrefWidth(300);
+    progressBar.progressProperty().bind(task.progressProperty());
+
+    VBox layout = new VBox(10, titleLabel, messageLabel, progressBar);
+    layout.setPadding(new Insets(20));
+    layout.setAlignment(Pos.CENTER);
+
+    if (cancellable) {
+      Button cancelButton = new Button("Cancel");
+      cancelButton.setOnAction(e -> task.cancel());
+      layout.getChildren().add(cancelButton);
+    }
+
+    task.stateProperty()
+        .addListener(
+            (observable, oldState, newState) -> {
+              if (newState == Worker.State.SUCCEEDED
+                  || newState == Worker.State.FAILED
+                  || newState == Worker.State.CANCELLED) {
+                dialog.close();
+              }
+            });
+
+    dialog.setScene(new Scene(layout));
+    if (!task.isDone()) {
+      dialog.show();
+    }
+  }
+}
@@ -21,6 +21,9 @@ import javafx.stage.Stage;
 /** Controller for the Time Simulation window */
 public class TimeSimulationController {
 
+  // Accounts processed between progress updates
+  private static final int PROGRESS_INTERVAL = 1_000;
+
   private List<BankAccount> accounts;
   private TableView<AccountChangeItem> resultsTable;
   private ToggleGroup timeGroup;
@@ -286,9 +289,38 @@ public class TimeSimulationController {
       return;
     }
 
+    // The simulation runs off the JavaFX thread, on its own copy of the account list
+    List<BankAccount> snapshot = new ArrayList<>(accounts);
+    double fee = monthlyFee;
+    simulateButton.setDisable(true);
+    BackgroundTask<SimulationResult> task =
+        BackgroundTask.start(
+            "Simulating time passage",
+            t -> simulate(t, snapshot, months, fee),
+            result -> {
+              simulateButton.setDisable(false);
+              showResults(result);
+            },
+            failure -> {
+              simulateButton.setDisable(false);
+              showError("Simulation failed: " + failure.getMessage());
+            });
+
+    // Not cancellable: accounts already updated can't be rolled back
+    ProgressDialog.show(simulateButton.getScene().getWindow(), task, false);
+  }
+
+  /**
+   * Applies fees and interest to the accounts and collects the results; runs in the background
+   */
+  private static SimulationResult simulate(
+      BackgroundTask<SimulationResult> task,
+      List<BankAccount> snapshot,
+      int months,
+      double monthlyFee) {
     // Store original balances
     Map<Integer, Double> originalBalances = new java.util.HashMap<>();
-    for (BankAccount account : accounts) {
+    for (BankAccount account : snapshot) {
       originalBalances.put(account.getAccountNumber(), account.getAmountStored());
     }
 
@@ -300,7 +332,9 @@ public class TimeSimulationController {
     int simpleAccountsUpdated = 0;
     int investmentAccountsUpdated = 0;
 
-    for (BankAccount account : accounts) {
+    task.reportMessage("Updating accounts...");
+    int processed = 0;
+    for (BankAccount account : snapshot) {
       if (account instanceof BankInvestmentAccount) {
         BankInvestmentAccount investmentAccount = (BankInvestmentAccount) account;
 
@@ -363,28 +397,69 @@ public class TimeSimulationController {
 
         simpleAccountsUpdated++;
       }
+
+      processed++;
+      if (processed % PROGRESS_INTERVAL == 0) {
+        task.reportProgress(processed, snapshot.size());
+      }
     }
 
-    // Display results
-    showResults(
-        originalBalances,
+    task.reportMessage("Collecting results...");
+
+    // Create table data
+    List<AccountChangeItem> items = new ArrayList<>(snapshot.size());
+    for (BankAccount account : snapshot) {
+      // Get original balance
+      double originalBalance = originalBalances.getOrDefault(account.getAccountNumber(), 0.0);
+
+      // Get current balance
+      double currentBalance = account.getAmountStored();
+
+      // Create notes
+      String notes = "";
+
+      if (account instanceof BankInvestmentAccount) {
+        BankInvestmentAccount investmentAccount = (BankInvestmentAccount) account;
+        int investmentCount = investmentAccount.getInvestments().size();
+
+        if (investmentCount > 0) {
+          notes = String.format("%d investment(s) updated", investmentCount);
+        } else {
+          notes = "Base interest applied";
+        }
+      } else {
+        if (currentBalance < originalBalance) {
+          notes = String.format("Monthly fee: $%.2f", monthlyFee);
+        } else {
+          notes = "No fees applied";
+        }
+
+        // Check for warnings
+        for (String warning : feeWarnings) {
+          if (warning.contains("Account #" + account.getAccountNumber())) {
+            notes = "WARNING: " + warning.split(": ")[1];
+            break;
+          }
+        }
+      }
+
+      items.add(new AccountChangeItem(account, originalBalance, currentBalance, notes));
+    }
+
+    return new SimulationResult(
         months,
         monthlyFee,
         simpleAccountsUpdated,
         investmentAccountsUpdated,
         feeWarnings,
-        investmentNotes);
+        items);
   }
 
   /** Shows the simulation results */
-  private void showResults(
-      Map<Integer, Double> originalBalances,
-      int months,
-      double monthlyFee,
-      int simpleAccountsUpdated,
-      int investmentAccountsUpdated,
-      List<String> feeWarnings,
-      List<String> investmentNotes) {
+  private void showResults(SimulationResult result) {
+    int months = result.months;
+    double monthlyFee = result.monthlyFee;
+    List<String> feeWarnings = result.feeWarnings;
 
     // Clear previous results
     resultsBox.getChildren().clear();
@@ -403,10 +478,10 @@ public class TimeSimulationController {
                     + "Investment Accounts Updated: %d",
                 months,
                 months == 1 ? "month" : "months",
-                simpleAccountsUpdated,
+                result.simpleAccountsUpdated,
                 monthlyFee,
                 monthlyFee * months,
-                investmentAccountsUpdated));
+                result.investmentAccountsUpdated));
     summaryText.setFont(Font.font("Arial", 12));
 
     // Create results table
@@ -455,45 +530,7 @@ public class TimeSimulationController {
             notesCol);
 
     // Create table data
-    ObservableList<AccountChangeItem> data = FXCollections.observableArrayList();
-
-    for (BankAccount account : accounts) {
-      // Get original balance
-      double originalBalance = originalBalances.getOrDefault(account.getAccountNumber(), 0.0);
-
-      // Get current balance
-      double currentBalance = account.getAmountStored();
-
-      // Create notes
-      String notes = "";
-
-      if (account instanceof BankInvestmentAccount) {
-        BankInvestmentAccount investmentAccount = (BankInvestmentAccount) account;
-        int investmentCount = investmentAccount.getInvestments().size();
-
-        if (investmentCount > 0) {
-          notes = String.format("%d investment(s) updated", investmentCount);
-        } else {
-          notes = "Base interest applied";
-        }
-      } else {
-        if (currentBalance < originalBalance) {
-          notes = String.format("Monthly fee: $%.2f", monthlyFee);
-        } else {
-          notes = "No fees applied";
-        }
-
-        // Check for warnings
-        for (String warning : feeWarnings) {
-          if (warning.contains("Account #" + account.getAccountNumber())) {
-            notes = "WARNING: " + warning.split(": ")[1];
-            break;
-          }
-        }
-      }
-
-      data.add(new AccountChangeItem(account, originalBalance, currentBalance, notes));
-    }
+    ObservableList<AccountChangeItem> data = FXCollections.observableArrayList(result.items);
 
     resultsTable.setItems(data);
 
@@ -524,6 +561,31 @@ public class TimeSimulationController {
     VBox.setVgrow(resultsTable, Priority.ALWAYS);
   }
 
+  /** Outcome of a simulation, handed from the background task to the UI */
+  private static final class SimulationResult {
+    private final int months;
+    private final double monthlyFee;
+    private final int simpleAccountsUpdated;
+    private final int investmentAccountsUpdated;
+    private final List<String> feeWarnings;
+    private final List<AccountChangeItem> items;
+
+    private SimulationResult(
+        int months,
+        double monthlyFee,
+        int simpleAccountsUpdated,
+        int investmentAccountsUpdated,
+        List<String> feeWarnings,
+        List<AccountChangeItem> items) {
+      this.months = months;
+      this.monthlyFee = monthlyFee;
+      this.simpleAccountsUpdated = simpleAccountsUpdated;
+      this.investmentAccountsUpdated = investmentAccountsUpdated;
+      this.feeWarnings = feeWarnings;
+      this.items = items;
+    }
+  }
+
   /** Shows an error dialog */
   private void showError(String message) {
     Alert alert = new Alert(Alert.AlertType.ERROR);
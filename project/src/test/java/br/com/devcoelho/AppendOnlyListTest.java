@@ -0,0 +1,37 @@
+package br.com.devcoelho;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class AppendOnlyListTest {
+
+  private static final int ELEMENTS = 100_000;
+
+  @Test
+  public void canBeIteratedWhileAnotherThreadAppends() throws InterruptedException {
+    List<Integer> list = new AppendOnlyList<>();
+    Thread writer =
+        new Thread(
+            () -> {
+              for (int i = 0; i < ELEMENTS; i++) {
+                list.add(i);
+              }
+            });
+    writer.start();
+
+    // Every iteration sees a prefix of the appended elements, in order
+    while (writer.isAlive()) {
+      int expected = 0;
+      for (Integer element : list) {
+        assertEquals(expected++, element);
+      }
+      assertTrue(expected <= list.size());
+    }
+    writer.join();
+    assertEquals(ELEMENTS, list.size());
+    assertEquals(ELEMENTS - 1, list.get(ELEMENTS - 1));
+  }
+}
@@ -0,0 +1,145 @@
+package br.com.devcoelho;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Compares reading an account's history and investments and a bank's clients and client accounts
+ * through the unmodifiable views the getters return with reading them through a defensive copy of
+ * each, as the getters did before.
+ *
+ * <p>Each read walks the whole collection, the way persistence and the UI do. Both variants are
+ * warmed up before either is measured; the report gives the best of the measured rounds in
+ * nanoseconds and, where the JVM can measure it, bytes allocated per read.
+ *
+ * <p>Run from the project directory after {@code mvn test-compile}, with {@code
+ * target/classes:target/test-classes} and the dependencies on the class path.
+ */
+public class CollectionViewBenchmark {
+
+  /** One read of a collection; returns a checksum so the JIT can't drop the walk */
+  private interface Read {
+    long read();
+  }
+
+  /**
+   * Runs the benchmark
+   *
+   * @param args optional collection size, reads per round and measured rounds
+   */
+  public static void main(String[] args) {
+    int size = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000;
+    int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : 20_000;
+    int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+
+    Bank bank = new Bank("Benchmark Bank", "000");
+    Person owner = null;
+    for (int i = 0; i < size; i++) {
+      Person client = new Person();
+      client.setName("Client " + i);
+      client.setCpf(String.format("%011d", i));
+      bank.addClient(client);
+      owner = (owner == null) ? client : owner;
+    }
+    BankInvestmentAccount account =
+        (BankInvestmentAccount) bank.createAccount(owner, Bank.AccountType.INVESTMENT);
+    account.depositAmount(size);
+    for (int i = 1; i < size; i++) {
+      account.withdrawAmount(0.5);
+    }
+    for (int i = 0; i < size; i++) {
+      account.createInvestment("Fund " + i, 0.001, 0.05);
+    }
+    for (int i = 1; i < size; i++) {
+      bank.createAccount(owner, Bank.AccountType.SIMPLE);
+    }
+    Person accountOwner = owner;
+    report(
+        "history",
+        () -> walk(account.getTransactionHistory()),
+        () -> walk(new ArrayList<>(account.getTransactionHistory())),
+        iterations,
+        rounds);
+    report(
+        "investments",
+        () -> walk(account.getInvestments().values()),
+        () -> walk(new HashMap<>(account.getInvestments()).values()),
+        iterations,
+        rounds);
+    report(
+        "clients",
+        () -> walk(bank.getClients()),
+        () -> walk(new ArrayList<>(bank.getClients())),
+        iterations,
+        rounds);
+    report(
+        "accounts",
+        () -> walk(bank.getClientAccounts(accountOwner)),
+        () -> walk(new ArrayList<>(bank.getClientAccounts(accountOwner))),
+        iterations,
+        rounds);
+  }
+
+  private static void report(String name, Read view, Read copy, int iterations, int rounds) {
+    run(view, iterations);
+    run(copy, iterations);
+
+    System.out.println(name + ":");
+    measure("view", view, iterations, rounds);
+    measure("copy", copy, iterations, rounds);
+  }
+
+  private static void measure(String name, Read read, int iterations, int rounds) {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    com.sun.management.ThreadMXBean allocations =
+        (threads instanceof com.sun.management.ThreadMXBean)
+            ? (com.sun.management.ThreadMXBean) threads
+            : null;
+    long threadId = Thread.currentThread().getId();
+
+    double bestNanos = Double.MAX_VALUE;
+    double bestBytes = -1;
+    for (int round = 0; round < rounds; round++) {
+      long allocatedBefore = allocatedBytes(allocations, threadId);
+      long start = System.nanoTime();
+      run(read, iterations);
+      long elapsed = System.nanoTime() - start;
+      long allocated = allocatedBytes(allocations, threadId) - allocatedBefore;
+
+      if ((double) elapsed / iterations < bestNanos) {
+        bestNanos = (double) elapsed / iterations;
+        bestBytes = (allocations != null) ? (double) allocated / iterations : -1;
+      }
+    }
+
+    System.out.printf(
+        "  %-6s %10.0f ns/read %10s bytes/read%n",
+        name, bestNanos, (bestBytes >= 0) ? String.format("%.0f", bestBytes) : "n/a");
+  }
+
+  private static long allocatedBytes(com.sun.management.ThreadMXBean allocations, long threadId) {
+    return (allocations != null) ? allocations.getThreadAllocatedBytes(threadId) : 0;
+  }
+
+  private static void run(Read read, int iterations) {
+    long checksum = 0;
+    for (int i = 0; i < iterations; i++) {
+      checksum += read.read();
+    }
+    if (checksum == 42) {
+      System.out.println();
+    }
+  }
+
+  private static long walk(Iterable<?> items) {
+    long checksum = 0;
+    for (Object item : items) {
+      if (item != null) {
+        checksum++;
+      }
+    }
+    return checksum;
+  }
+}
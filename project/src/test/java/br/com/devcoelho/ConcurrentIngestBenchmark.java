@@ -0,0 +1,126 @@
+package br.com.devcoelho;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reports the throughput and consistency of registering clients and opening accounts on one
+ * {@link Bank} from several threads at once.
+ *
+ * <p>Each thread registers its own clients and opens accounts for them, alternating simple and
+ * investment accounts. Every thread also tries to register the same set of shared CPFs, of which
+ * exactly one registration each must succeed. After each run the report checks the client count,
+ * that every client got all its accounts and that no account number was handed out twice. Each
+ * thread count is warmed up before it is measured.
+ *
+ * <p>Run from the project directory after {@code mvn test-compile}, with {@code
+ * target/classes:target/test-classes} and the dependencies on the class path.
+ */
+public class ConcurrentIngestBenchmark {
+
+  private static final int SHARED_CPFS = 100;
+
+  /**
+   * Runs the benchmark
+   *
+   * @param args optional clients per thread, accounts per client and highest thread count
+   */
+  public static void main(String[] args) throws Exception {
+    int clientsPerThread = (args.length > 0) ? Integer.parseInt(args[0]) : 20_000;
+    int accountsPerClient = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+    int maxThreads = (args.length > 2) ? Integer.parseInt(args[2]) : 8;
+
+    System.out.printf(
+        "%,d clients per thread, %d accounts each, %d processors%n",
+        clientsPerThread, accountsPerClient, Runtime.getRuntime().availableProcessors());
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      run(threads, clientsPerThread / 10 + 1, accountsPerClient);
+      System.out.println(run(threads, clientsPerThread, accountsPerClient));
+    }
+  }
+
+  /** Ingests clients and accounts on a fresh bank; returns the checks and throughput */
+  private static String run(int threads, int clientsPerThread, int accountsPerClient)
+      throws InterruptedException {
+    Bank bank = new Bank("Benchmark Bank", "000");
+    AtomicInteger sharedRegistered = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] workers = new Thread[threads];
+
+    for (int t = 0; t < threads; t++) {
+      int thread = t;
+      workers[t] =
+          new Thread(
+              () -> {
+                try {
+                  start.await();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  return;
+                }
+                for (int i = 0; i < clientsPerThread; i++) {
+                  Person client = newClient(String.format("%03d%08d", thread, i));
+                  bank.addClient(client);
+                  for (int a = 0; a < accountsPerClient; a++) {
+                    Bank.AccountType type =
+                        (a % 2 == 0) ? Bank.AccountType.SIMPLE : Bank.AccountType.INVESTMENT;
+                    bank.createAccount(client, type).depositAmount(100);
+                  }
+                  if (i < SHARED_CPFS && bank.addClient(newClient(sharedCpf(i)))) {
+                    sharedRegistered.incrementAndGet();
+                  }
+                }
+              });
+      workers[t].start();
+    }
+
+    long begin = System.nanoTime();
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    long nanos = System.nanoTime() - begin;
+
+    int expectedClients = threads * clientsPerThread + Math.min(SHARED_CPFS, clientsPerThread);
+    int shortAccounts = 0;
+    Set<Integer> numbers = new HashSet<>();
+    int accounts = 0;
+    for (Person client : bank.getClients().toArray(new Person[0])) {
+      boolean shared = client.getCpf().startsWith("S");
+      int expected = shared ? 0 : accountsPerClient;
+      for (BankAccount account : bank.getClientAccounts(client)) {
+        numbers.add(account.getAccountNumber());
+        accounts++;
+      }
+      if (bank.getClientAccounts(client).size() != expected) {
+        shortAccounts++;
+      }
+    }
+
+    long operations = (long) threads * clientsPerThread * (1 + accountsPerClient);
+    return String.format(
+        "%d threads: %,d/%,d clients, %d/%d shared CPFs, %d clients missing accounts, "
+            + "%,d duplicate account numbers; %,12.0f operations/s",
+        threads,
+        bank.getClients().size(),
+        expectedClients,
+        sharedRegistered.get(),
+        Math.min(SHARED_CPFS, clientsPerThread),
+        shortAccounts,
+        accounts - numbers.size(),
+        operations * 1e9 / nanos);
+  }
+
+  private static Person newClient(String cpf) {
+    Person client = new Person();
+    client.setName("Client " + cpf);
+    client.setCpf(cpf);
+    return client;
+  }
+
+  private static String sharedCpf(int index) {
+    return String.format("S%010d", index);
+  }
+}
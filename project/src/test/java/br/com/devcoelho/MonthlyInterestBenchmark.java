@@ -0,0 +1,103 @@
+package br.com.devcoelho;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares {@link MonthlyInterestBatch} with applying interest one account at a time through
+ * {@link BankInvestmentAccount#applyMonthlyInterest()}.
+ *
+ * <p>Each round opens a fresh set of investment accounts, so both paths start from the same
+ * balances and ledger sizes, then applies a year of interest to every account. Only the interest
+ * run is timed; opening the accounts isn't. Both paths are warmed up before either is measured,
+ * and the report checks that they leave the same total balance.
+ *
+ * <p>Run from the project directory after {@code mvn test-compile}, with {@code
+ * target/classes:target/test-classes} and the dependencies on the class path.
+ */
+public class MonthlyInterestBenchmark {
+
+  private static final int MONTHS = 12;
+
+  /** One way of applying a year of interest to a set of accounts */
+  private interface Run {
+    void apply(List<BankAccount> accounts);
+  }
+
+  /**
+   * Runs the benchmark
+   *
+   * @param args optional account count and measured rounds
+   */
+  public static void main(String[] args) {
+    int accountCount = (args.length > 0) ? Integer.parseInt(args[0]) : 100_000;
+    int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+
+    Run perObject =
+        accounts -> {
+          for (int month = 0; month < MONTHS; month++) {
+            for (BankAccount account : accounts) {
+              ((BankInvestmentAccount) account).applyMonthlyInterest();
+            }
+          }
+        };
+    Run columnar = accounts -> new MonthlyInterestBatch(accounts).apply(MONTHS);
+
+    // Warm up both paths before measuring either
+    for (int i = 0; i < 3; i++) {
+      time(perObject, accountCount);
+      time(columnar, accountCount);
+    }
+
+    System.out.printf("%,d investment accounts, %d months per round%n", accountCount, MONTHS);
+    report("per-object", perObject, accountCount, rounds);
+    report("columnar", columnar, accountCount, rounds);
+  }
+
+  private static void report(String name, Run run, int accountCount, int rounds) {
+    long bestNanos = Long.MAX_VALUE;
+    double total = 0;
+    for (int round = 0; round < rounds; round++) {
+      List<BankAccount> accounts = openAccounts(accountCount);
+      long start = System.nanoTime();
+      run.apply(accounts);
+      bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+      total = totalBalance(accounts);
+    }
+
+    System.out.printf(
+        "%-10s %8.1f ms/year %8.1f ns/account-month  total %,.2f%n",
+        name, bestNanos / 1e6, (double) bestNanos / ((long) accountCount * MONTHS), total);
+  }
+
+  private static void time(Run run, int accountCount) {
+    run.apply(openAccounts(accountCount));
+  }
+
+  /** Opens investment accounts with a spread of balances and rates */
+  private static List<BankAccount> openAccounts(int accountCount) {
+    Person client = new Person();
+    client.setName("Benchmark");
+    client.setCpf("00000000000");
+    Bank bank = new Bank("Benchmark Bank", "000");
+    bank.addClient(client);
+
+    List<BankAccount> accounts = new ArrayList<>(accountCount);
+    for (int i = 0; i < accountCount; i++) {
+      BankInvestmentAccount account =
+          (BankInvestmentAccount) bank.createAccount(client, Bank.AccountType.INVESTMENT);
+      account.depositAmount(1_000 + (i % 1_000));
+      account.setInterestRate(0.01 + (i % 10) / 100.0);
+      accounts.add(account);
+    }
+    return accounts;
+  }
+
+  private static double totalBalance(List<BankAccount> accounts) {
+    double total = 0;
+    for (BankAccount account : accounts) {
+      total += account.getAmountStored();
+    }
+    return total;
+  }
+}
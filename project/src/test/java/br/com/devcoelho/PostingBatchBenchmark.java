@@ -0,0 +1,160 @@
+package br.com.devcoelho;
+
+import br.com.devcoelho.exceptions.InsufficientBalanceException;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Reports the atomicity and throughput of {@link PostingBatch}.
+ *
+ * <p>Posts payroll-sized batches of deposits and withdrawals over a set of accounts and, for
+ * comparison, applies the same postings one {@code depositAmount}/{@code withdrawAmount} call at a
+ * time. Each round is warmed up first. On a share of the batches the last posting is a withdrawal
+ * that can't be covered; for those the report checks that no balance and no history changed. The
+ * posting log goes to a temporary directory that is deleted at the end.
+ *
+ * <p>Run from the project directory after {@code mvn test-compile}, with {@code
+ * target/classes:target/test-classes} and the dependencies on the class path.
+ */
+public class PostingBatchBenchmark {
+
+  private static final double INITIAL_BALANCE = 1_000;
+
+  /**
+   * Runs the benchmark
+   *
+   * @param args optional batch count, postings per batch, accounts and percentage of batches that
+   *     must be rejected
+   */
+  public static void main(String[] args) throws Exception {
+    int batches = (args.length > 0) ? Integer.parseInt(args[0]) : 20;
+    int batchSize = (args.length > 1) ? Integer.parseInt(args[1]) : 100_000;
+    int accountCount = (args.length > 2) ? Integer.parseInt(args[2]) : 10_000;
+    int rejectPercent = (args.length > 3) ? Integer.parseInt(args[3]) : 10;
+
+    File directory = Files.createTempDirectory("posting-batch-benchmark").toFile();
+    String prefix = new File(directory, "bank-").getPath();
+    Person client = new Person();
+    client.setName("Benchmark");
+    client.setCpf("00000000000");
+    Bank bank = new Bank("Benchmark Bank", "000");
+    bank.addClient(client);
+    List<BankAccount> accounts = new ArrayList<>();
+    for (int i = 0; i < accountCount; i++) {
+      BankAccount account = bank.createAccount(client, Bank.AccountType.SIMPLE);
+      account.depositAmount(INITIAL_BALANCE);
+      accounts.add(account);
+    }
+
+    System.out.printf(
+        "%,d batches of %,d postings over %,d accounts, %d%% invalid%n",
+        batches, batchSize, accountCount, rejectPercent);
+    try {
+      runBatches(accounts, prefix, batches / 10 + 1, batchSize, rejectPercent);
+      System.out.println(runBatches(accounts, prefix, batches, batchSize, rejectPercent));
+      runSingle(accounts, batches / 10 + 1, batchSize);
+      System.out.println(runSingle(accounts, batches, batchSize));
+    } finally {
+      for (File file : directory.listFiles()) {
+        file.delete();
+      }
+      directory.delete();
+    }
+  }
+
+  /** Posts batches; returns the atomicity results and throughput */
+  private static String runBatches(
+      List<BankAccount> accounts, String prefix, int batches, int batchSize, int rejectPercent) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int committed = 0;
+    int rejected = 0;
+    int partiallyApplied = 0;
+    long postings = 0;
+    long nanos = 0;
+
+    for (int b = 0; b < batches; b++) {
+      boolean invalid = random.nextInt(100) < rejectPercent;
+      PostingBatch batch = newBatch(accounts, "batch-" + b, batchSize, invalid);
+      double totalBefore = totalBalance(accounts);
+      long historyBefore = totalHistory(accounts);
+
+      long start = System.nanoTime();
+      try {
+        batch.post(accounts, prefix);
+        nanos += System.nanoTime() - start;
+        committed++;
+        postings += batchSize;
+      } catch (InsufficientBalanceException e) {
+        nanos += System.nanoTime() - start;
+        rejected++;
+        if (totalBalance(accounts) != totalBefore || totalHistory(accounts) != historyBefore) {
+          partiallyApplied++;
+        }
+      }
+    }
+
+    return String.format(
+        "batches: %d committed, %d rejected, %d partially applied; %,12.0f postings/s",
+        committed, rejected, partiallyApplied, postings * 1e9 / nanos);
+  }
+
+  /** Applies the same kind of postings one call at a time; returns the throughput */
+  private static String runSingle(List<BankAccount> accounts, int batches, int batchSize) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long postings = (long) batches * batchSize;
+    long start = System.nanoTime();
+    for (long i = 0; i < postings; i++) {
+      BankAccount account = accounts.get(random.nextInt(accounts.size()));
+      if ((i & 1) == 0) {
+        account.depositAmount(1);
+      } else {
+        account.withdrawAmount(1);
+      }
+    }
+    return String.format(
+        "single calls: %,d postings; %,12.0f postings/s",
+        postings, postings * 1e9 / (System.nanoTime() - start));
+  }
+
+  /** Builds a batch of alternating deposits and withdrawals, ending in one that can't be covered */
+  private static PostingBatch newBatch(
+      List<BankAccount> accounts, String batchId, int batchSize, boolean invalid) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    PostingBatch batch = new PostingBatch(batchId);
+    for (int i = 0; i < batchSize - 1; i++) {
+      int accountNumber = accounts.get(random.nextInt(accounts.size())).getAccountNumber();
+      if ((i & 1) == 0) {
+        batch.addDeposit(accountNumber, 1);
+      } else {
+        batch.addWithdrawal(accountNumber, 1);
+      }
+    }
+
+    BankAccount last = accounts.get(random.nextInt(accounts.size()));
+    if (invalid) {
+      batch.addWithdrawal(last.getAccountNumber(), last.getAmountStored() + batchSize + 1);
+    } else {
+      batch.addDeposit(last.getAccountNumber(), 1);
+    }
+    return batch;
+  }
+
+  private static double totalBalance(List<BankAccount> accounts) {
+    double total = 0;
+    for (BankAccount account : accounts) {
+      total += account.getAmountStored();
+    }
+    return total;
+  }
+
+  private static long totalHistory(List<BankAccount> accounts) {
+    long total = 0;
+    for (BankAccount account : accounts) {
+      total += account.getTransactionHistory().size();
+    }
+    return total;
+  }
+}
@@ -0,0 +1,152 @@
+package br.com.devcoelho;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import br.com.devcoelho.exceptions.InsufficientBalanceException;
+import br.com.devcoelho.exceptions.InvalidOperationException;
+import br.com.devcoelho.persistence.FilePersistence;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PostingBatchTest {
+
+  @TempDir Path directory;
+
+  private String prefix;
+  private Person client;
+  private List<BankAccount> accounts;
+
+  @BeforeEach
+  public void setUp() {
+    prefix = directory.resolve("bank-").toString();
+    client = new Person();
+    client.setName("Maria");
+    client.setCpf("12345678900");
+
+    Bank bank = new Bank("Test", "001");
+    bank.addClient(client);
+    accounts = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      BankAccount account = bank.createAccount(client, Bank.AccountType.SIMPLE);
+      account.depositAmount(100);
+      accounts.add(account);
+    }
+  }
+
+  @Test
+  public void invalidBatchChangesNothing() {
+    PostingBatch batch = new PostingBatch("batch-1");
+    batch.addDeposit(number(0), 50);
+    batch.addWithdrawal(number(1), 150);
+
+    assertThrows(InsufficientBalanceException.class, () -> batch.post(accounts, prefix));
+    assertEquals(100, accounts.get(0).getAmountStored(), 0.001);
+    assertEquals(1, accounts.get(0).getTransactionHistory().size());
+  }
+
+  @Test
+  public void nonFiniteAmountsAreRejected() {
+    PostingBatch infinite = new PostingBatch("batch-1");
+    infinite.addDeposit(number(0), Double.POSITIVE_INFINITY);
+    PostingBatch notANumber = new PostingBatch("batch-2");
+    notANumber.addWithdrawal(number(0), Double.NaN);
+
+    assertThrows(InvalidOperationException.class, () -> infinite.post(accounts, prefix));
+    assertThrows(InvalidOperationException.class, () -> notANumber.post(accounts, prefix));
+    assertEquals(100, accounts.get(0).getAmountStored(), 0.001);
+  }
+
+  @Test
+  public void batchesPostedAfterTheLastSaveAreReplayedOnLoad() {
+    PostingBatch saved = new PostingBatch("batch-1");
+    saved.addDeposit(number(0), 10);
+    saved.post(accounts, prefix);
+    FilePersistence.saveAccounts(accounts, prefix);
+
+    PostingBatch unsaved = new PostingBatch("batch-2");
+    unsaved.addDeposit(number(0), 20);
+    unsaved.addWithdrawal(number(1), 30);
+    unsaved.post(accounts, prefix);
+
+    Map<Integer, BankAccount> loaded = load();
+    assertEquals(130, loaded.get(number(0)).getAmountStored(), 0.001);
+    assertEquals(70, loaded.get(number(1)).getAmountStored(), 0.001);
+
+    // Once saved again, the batch is part of the balances and isn't replayed twice
+    FilePersistence.saveAccounts(new ArrayList<>(loaded.values()), prefix);
+    loaded = load();
+    assertEquals(130, loaded.get(number(0)).getAmountStored(), 0.001);
+    assertEquals(70, loaded.get(number(1)).getAmountStored(), 0.001);
+  }
+
+  @Test
+  public void failedSaveKeepsBatchesReplayable() throws IOException {
+    FilePersistence.saveAccounts(accounts, prefix);
+    PostingBatch batch = new PostingBatch("batch-1");
+    batch.addDeposit(number(0), 10);
+    batch.post(accounts, prefix);
+
+    // The temporary account file can't be created, so the save must fail and change nothing
+    Files.createDirectory(directory.resolve("bank-accounts.txt.tmp"));
+    assertFalse(FilePersistence.saveAccounts(accounts, prefix));
+
+    assertEquals(110, load().get(number(0)).getAmountStored(), 0.001);
+  }
+
+  @Test
+  public void batchesAreNotReplayedOntoBalancesThatIncludeThem() throws IOException {
+    PostingBatch batch = new PostingBatch("batch-1");
+    batch.addDeposit(number(0), 10);
+    batch.post(accounts, prefix);
+    FilePersistence.saveAccounts(accounts, prefix);
+
+    // As if the process stopped after committing the accounts, before writing the checkpoint
+    Path log = directory.resolve("bank-postings.txt");
+    List<String> lines = new ArrayList<>(Files.readAllLines(log));
+    lines.removeIf(line -> line.startsWith("CHECKPOINT|"));
+    Files.write(log, lines);
+
+    assertEquals(110, load().get(number(0)).getAmountStored(), 0.001);
+  }
+
+  @Test
+  public void saveInterruptedAfterCommitIsCompletedOnLoad() throws IOException {
+    FilePersistence.saveAccounts(accounts, prefix);
+    Path transactions = directory.resolve("bank-transactions.txt");
+    byte[] previous = Files.readAllBytes(transactions);
+
+    accounts.get(0).depositAmount(10);
+    FilePersistence.saveAccounts(accounts, prefix);
+
+    // As if the process stopped after renaming the account file but not the transaction file
+    Files.move(transactions, directory.resolve("bank-transactions.txt.tmp"));
+    Files.write(transactions, previous);
+
+    BankAccount loaded = load().get(number(0));
+    assertEquals(110, loaded.getAmountStored(), 0.001);
+    assertEquals(2, loaded.getTransactionHistory().size());
+  }
+
+  private int number(int index) {
+    return accounts.get(index).getAccountNumber();
+  }
+
+  private Map<Integer, BankAccount> load() {
+    Map<Integer, BankAccount> byNumber = new HashMap<>();
+    for (BankAccount account :
+        FilePersistence.loadAccounts(List.of(client), new Bank("Test", "001"), prefix)) {
+      byNumber.put(account.getAccountNumber(), account);
+    }
+    return byNumber;
+  }
+}
@@ -0,0 +1,58 @@
+package br.com.devcoelho.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import br.com.devcoelho.Bank;
+import br.com.devcoelho.BankAccount;
+import br.com.devcoelho.Person;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FilePersistenceTest {
+
+  @TempDir Path directory;
+
+  @Test
+  public void restartsKeepAccountNumbersWithoutBurningNew() {
+    String prefix = directory.resolve("bank-").toString();
+    Person client = new Person();
+    client.setName("Maria");
+    client.setCpf("12345678900");
+
+    Bank bank = new Bank("Test", "001");
+    bank.addClient(client);
+    TreeSet<Integer> numbers = new TreeSet<>();
+    List<BankAccount> accounts = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      BankAccount account = bank.createAccount(client, Bank.AccountType.SIMPLE);
+      account.depositAmount(100 + i);
+      accounts.add(account);
+      numbers.add(account.getAccountNumber());
+    }
+    FilePersistence.saveAccounts(accounts, prefix);
+    int highWaterMark = BankAccount.getAccountNumberAllocator().getHighWaterMark();
+
+    for (int restart = 0; restart < 3; restart++) {
+      List<BankAccount> loaded =
+          FilePersistence.loadAccounts(List.of(client), new Bank("Test", "001"), prefix);
+
+      Set<Integer> loadedNumbers = new TreeSet<>();
+      for (BankAccount account : loaded) {
+        loadedNumbers.add(account.getAccountNumber());
+      }
+      assertEquals(numbers, loadedNumbers);
+      FilePersistence.saveAccounts(loaded, prefix);
+      assertEquals(highWaterMark, BankAccount.getAccountNumberAllocator().getHighWaterMark());
+    }
+
+    // Numbers issued after a restore come after the restored ones
+    BankAccount next = bank.createAccount(client, Bank.AccountType.SIMPLE);
+    assertTrue(next.getAccountNumber() > numbers.last());
+  }
+}
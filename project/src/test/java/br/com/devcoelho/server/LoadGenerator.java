@@ -0,0 +1,213 @@
+package br.com.devcoelho.server;
+
+import br.com.devcoelho.Address;
+import br.com.devcoelho.Bank;
+import br.com.devcoelho.service.ViaCepService;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import org.json.JSONObject;
+
+/**
+ * Local load generator measuring the throughput and latency of the {@link BankServer}.
+ *
+ * <p>Starts an in-memory server on a free port, opens a set of accounts, and then has a number of
+ * client threads send deposit requests as fast as they can. Prints requests per second and latency
+ * percentiles. Nothing is read from or written to the persistence files.
+ *
+ * <p>With a simulated CEP latency, the clients request client summaries instead, each of which
+ * blocks on two CEP lookups that sleep for that long. This shows the concurrency ceiling of each
+ * {@link BankServer.ExecutionMode} when requests wait on I/O.
+ *
+ * <p>Run from the project directory after {@code mvn test-compile}, with {@code
+ * target/classes:target/test-classes} and the dependencies on the class path.
+ */
+public class LoadGenerator {
+
+  /**
+   * Runs the benchmark
+   *
+   * @param args optional client threads, requests per client thread, accounts, server worker
+   *     threads, execution mode and simulated CEP latency in milliseconds
+   */
+  public static void main(String[] args) throws Exception {
+    int clientThreads = (args.length > 0) ? Integer.parseInt(args[0]) : 32;
+    int requestsPerThread = (args.length > 1) ? Integer.parseInt(args[1]) : 2_000;
+    int accountCount = (args.length > 2) ? Integer.parseInt(args[2]) : 256;
+    int workerThreads =
+        (args.length > 3) ? Integer.parseInt(args[3]) : BankServer.DEFAULT_WORKER_THREADS;
+    BankServer.ExecutionMode executionMode =
+        (args.length > 4)
+            ? BankServer.ExecutionMode.valueOf(args[4])
+            : BankServer.ExecutionMode.FIXED_POOL;
+    long cepLatencyMillis = (args.length > 5) ? Long.parseLong(args[5]) : 0;
+
+    BankOperations operations =
+        new BankOperations(new Bank("Load Test Bank", "000"), new SlowCepService(cepLatencyMillis));
+    BankServer server = new BankServer(operations, 0, executionMode, workerThreads);
+    server.start();
+
+    String baseUrl = "http://localhost:" + server.getPort();
+    HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    try {
+      String cpf = "00000000000";
+      post(client, baseUrl + "/clients", new JSONObject().put("name", "Load").put("cpf", cpf));
+      int[] accounts = new int[accountCount];
+      for (int i = 0; i < accountCount; i++) {
+        JSONObject account =
+            new JSONObject(
+                post(client, baseUrl + "/accounts", new JSONObject().put("cpf", cpf)));
+        accounts[i] = account.getInt("accountNumber");
+      }
+
+      IntFunction<HttpRequest> requests;
+      if (cepLatencyMillis > 0) {
+        // A client with two accounts and two addresses, so each summary fans out four ways
+        String summaryCpf = "11111111111";
+        JSONObject summaryClient = new JSONObject().put("name", "Summary").put("cpf", summaryCpf);
+        post(client, baseUrl + "/clients", summaryClient);
+        for (int i = 0; i < 2; i++) {
+          post(client, baseUrl + "/accounts", new JSONObject().put("cpf", summaryCpf));
+          Address address = new Address();
+          address.setAddress("Rua " + i);
+          address.setCepNumber("13846-04" + i);
+          operations.findClient(summaryCpf).getAddress().add(address);
+        }
+        URI summary = URI.create(baseUrl + "/clients/" + summaryCpf + "/summary");
+        requests = i -> HttpRequest.newBuilder(summary).GET().build();
+      } else {
+        String body = new JSONObject().put("amount", 1.0).toString();
+        requests =
+            i ->
+                HttpRequest.newBuilder(
+                        URI.create(
+                            baseUrl + "/accounts/" + accounts[i % accounts.length] + "/deposit"))
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+      }
+
+      // Warm up the JIT and the connection pool before measuring
+      runClients(client, requests, clientThreads, requestsPerThread / 4);
+      long[] latencies = new long[clientThreads * requestsPerThread];
+      long start = System.nanoTime();
+      int failures = runClients(client, requests, clientThreads, requestsPerThread, latencies);
+      long elapsed = System.nanoTime() - start;
+
+      Arrays.sort(latencies);
+      System.out.printf(
+          "%d %s requests, %d client threads, %s with %d worker threads: %.0f req/s%n",
+          latencies.length,
+          (cepLatencyMillis > 0) ? "summary" : "deposit",
+          clientThreads,
+          executionMode,
+          workerThreads,
+          latencies.length / (elapsed / 1e9));
+      System.out.printf(
+          "latency p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms; %d failures%n",
+          percentile(latencies, 0.50),
+          percentile(latencies, 0.99),
+          percentile(latencies, 0.999),
+          latencies[latencies.length - 1] / 1e6,
+          failures);
+    } finally {
+      server.stop();
+    }
+  }
+
+  private static int runClients(
+      HttpClient client, IntFunction<HttpRequest> requests, int threads, int requestsPerThread)
+      throws Exception {
+    long[] latencies = new long[threads * requestsPerThread];
+    return runClients(client, requests, threads, requestsPerThread, latencies);
+  }
+
+  /** Sends requests from several threads, storing each request's latency; returns the failures */
+  private static int runClients(
+      HttpClient client,
+      IntFunction<HttpRequest> requests,
+      int threads,
+      int requestsPerThread,
+      long[] latencies)
+      throws Exception {
+    AtomicInteger failures = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    Future<?>[] clients = new Future<?>[threads];
+
+    for (int t = 0; t < threads; t++) {
+      int thread = t;
+      clients[t] =
+          pool.submit(
+              () -> {
+                for (int i = 0; i < requestsPerThread; i++) {
+                  HttpRequest request = requests.apply(thread * requestsPerThread + i);
+
+                  long sent = System.nanoTime();
+                  try {
+                    HttpResponse<String> response =
+                        client.send(request, HttpResponse.BodyHandlers.ofString());
+                    if (response.statusCode() != 200) {
+                      failures.incrementAndGet();
+                    }
+                  } catch (Exception e) {
+                    failures.incrementAndGet();
+                  }
+                  latencies[thread * requestsPerThread + i] = System.nanoTime() - sent;
+                }
+              });
+    }
+
+    for (Future<?> future : clients) {
+      future.get();
+    }
+    pool.shutdown();
+    return failures.get();
+  }
+
+  private static String post(HttpClient client, String url, JSONObject body) throws Exception {
+    HttpRequest request =
+        HttpRequest.newBuilder(URI.create(url))
+            .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+            .build();
+    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    if (response.statusCode() >= 300) {
+      throw new IllegalStateException("Setup request failed: " + response.body());
+    }
+    return response.body();
+  }
+
+  /** CEP service that answers after a fixed delay instead of calling ViaCEP */
+  private static class SlowCepService extends ViaCepService {
+    private final long latencyMillis;
+
+    SlowCepService(long latencyMillis) {
+      this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    public Address getAddressByCep(String cep) {
+      try {
+        Thread.sleep(latencyMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+      Address address = new Address();
+      address.setCepNumber(cep);
+      return address;
+    }
+  }
+
+  /** Gets a percentile of sorted nanosecond latencies, in milliseconds */
+  private static double percentile(long[] sortedLatencies, double percentile) {
+    int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+    return sortedLatencies[Math.max(0, index)] / 1e6;
+  }
+}
@@ -0,0 +1,82 @@
+package br.com.devcoelho.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BulkCepValidatorTest {
+
+  private StubViaCepServer server;
+  private ViaCepService service;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    server = new StubViaCepServer();
+    service = new ViaCepService(server.url(), new CepCache(), null, null, true);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void reportCountsEachOutcome() throws Exception {
+    server.markNotFound("99999999");
+    server.markFailing("11111111");
+    List<String> ceps =
+        Arrays.asList("01001-000", "01001000", "13010000", "99999999", "11111111", "123", null);
+
+    BulkCepValidator.Report report = new BulkCepValidator(service).validate(ceps, result -> {});
+
+    assertEquals(7, report.getTotal());
+    assertEquals(4, report.getDistinct());
+    assertEquals(2, report.getMalformed());
+    assertEquals(2, report.getValid());
+    assertEquals(1, report.getNotFound());
+    assertEquals(1, report.getFailed());
+    assertEquals(1, server.requests("01001000"));
+    assertEquals(4, server.totalRequests());
+  }
+
+  @Test
+  public void resultsAreKeyedByDistinctCep() throws Exception {
+    server.markNotFound("99999999");
+
+    Map<String, BulkCepValidator.Result> results =
+        new BulkCepValidator(service).validateAll(List.of("01001-000", "01001000", "99999999"));
+
+    assertEquals(2, results.size());
+    assertNotNull(results.get("01001000").getAddress());
+    assertFalse(results.get("99999999").isValid());
+    assertNull(results.get("99999999").getFailure());
+  }
+
+  @Test
+  public void lookupsInFlightStayWithinTheCap() throws Exception {
+    int cap = 4;
+    server.setDelayMillis(50);
+    List<String> ceps = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      ceps.add(String.format("%08d", 1001000 + i));
+    }
+
+    BulkCepValidator.Report report =
+        new BulkCepValidator(service, cap, 0).validate(ceps, result -> {});
+
+    assertEquals(40, report.getValid());
+    assertEquals(40, server.totalRequests());
+    assertTrue(server.peakInFlight() <= cap, "peak " + server.peakInFlight());
+    assertTrue(server.peakInFlight() > 1, "lookups never overlapped");
+  }
+}
@@ -0,0 +1,56 @@
+package br.com.devcoelho.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import br.com.devcoelho.Address;
+import java.io.File;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CepStoreTest {
+
+  @TempDir Path directory;
+
+  @Test
+  public void openReturnsOneStorePerFile() throws Exception {
+    File file = directory.resolve("ceps.dat").toFile();
+
+    CepStore store = CepStore.open(file.getPath());
+
+    assertSame(store, CepStore.open(file.getPath()));
+    assertSame(store, CepStore.open(directory.resolve("sub/../ceps.dat").toString()));
+  }
+
+  @Test
+  public void servicesSharingAFileKeepEachOthersRecords() throws Exception {
+    String fileName = directory.resolve("shared.dat").toString();
+
+    try (StubViaCepServer server = new StubViaCepServer()) {
+      ViaCepService first =
+          new ViaCepService(server.url(), new CepCache(), CepStore.open(fileName), null, true);
+      ViaCepService second =
+          new ViaCepService(server.url(), new CepCache(), CepStore.open(fileName), null, true);
+
+      assertNotNull(first.getAddressByCep("01001000"));
+      assertNotNull(second.getAddressByCep("13010000"));
+      assertNotNull(first.getAddressByCep("20040002"));
+      CepStore.open(fileName).close();
+    }
+
+    // A fresh instance reads the file as after a restart
+    CepStore reopened = new CepStore(fileName);
+    assertEquals(3, reopened.size());
+    assertStreet("Rua 01001000", reopened.get(1001000));
+    assertStreet("Rua 13010000", reopened.get(13010000));
+    assertStreet("Rua 20040002", reopened.get(20040002));
+    reopened.close();
+  }
+
+  private static void assertStreet(String expected, Address address) {
+    assertNotNull(address);
+    assertEquals(expected, address.getAddress());
+  }
+}
@@ -0,0 +1,134 @@
+package br.com.devcoelho.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the ViaCEP API, answering {@code /ws/<cep>/json/}.
+ *
+ * <p>Every CEP exists, with "Rua <cep>" as its street, unless it was marked as not found (answered
+ * with {@code "erro": true}) or as failing (answered with HTTP 500). Responses can be held back
+ * until released, or delayed, so tests can make lookups overlap. The server counts the requests
+ * per CEP and the most requests it had in flight at once.
+ */
+final class StubViaCepServer implements AutoCloseable {
+
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final Set<String> notFound = ConcurrentHashMap.newKeySet();
+  private final Set<String> failing = ConcurrentHashMap.newKeySet();
+  private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger peakInFlight = new AtomicInteger();
+  private volatile CountDownLatch gate = new CountDownLatch(0);
+  private volatile long delayMillis;
+
+  StubViaCepServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/ws/", this::handle);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  /** Gets the lookup URL to give to {@link ViaCepService} */
+  String url() {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/ws/%s/json/";
+  }
+
+  void markNotFound(String numericCep) {
+    notFound.add(numericCep);
+  }
+
+  void markFailing(String numericCep) {
+    failing.add(numericCep);
+  }
+
+  /** Holds every response until {@link #releaseResponses()} */
+  void holdResponses() {
+    gate = new CountDownLatch(1);
+  }
+
+  void releaseResponses() {
+    gate.countDown();
+  }
+
+  void setDelayMillis(long delayMillis) {
+    this.delayMillis = delayMillis;
+  }
+
+  int requests(String numericCep) {
+    AtomicInteger count = requests.get(numericCep);
+    return (count != null) ? count.get() : 0;
+  }
+
+  int totalRequests() {
+    int total = 0;
+    for (AtomicInteger count : requests.values()) {
+      total += count.get();
+    }
+    return total;
+  }
+
+  int peakInFlight() {
+    return peakInFlight.get();
+  }
+
+  @Override
+  public void close() {
+    releaseResponses();
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String cep = exchange.getRequestURI().getPath().split("/")[2];
+    requests.computeIfAbsent(cep, k -> new AtomicInteger()).incrementAndGet();
+    peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    try {
+      gate.await(10, TimeUnit.SECONDS);
+      if (delayMillis > 0) {
+        Thread.sleep(delayMillis);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      inFlight.decrementAndGet();
+    }
+
+    if (failing.contains(cep)) {
+      exchange.sendResponseHeaders(500, -1);
+      exchange.close();
+      return;
+    }
+
+    String body =
+        notFound.contains(cep)
+            ? "{\"erro\": true}"
+            : "{\"cep\": \""
+                + cep.substring(0, 5)
+                + "-"
+                + cep.substring(5)
+                + "\", \"logradouro\": \"Rua "
+                + cep
+                + "\", \"complemento\": \"\", \"bairro\": \"Centro\","
+                + " \"localidade\": \"Campinas\", \"uf\": \"SP\"}";
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+}
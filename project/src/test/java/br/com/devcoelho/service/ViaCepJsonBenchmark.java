@@ -0,0 +1,127 @@
+package br.com.devcoelho.service;
+
+import br.com.devcoelho.Address;
+import br.com.devcoelho.BrazilianState;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import org.json.JSONObject;
+
+/**
+ * Compares the streaming {@link ViaCepJsonReader} with parsing ViaCEP responses through an
+ * org.json DOM, as the service did before.
+ *
+ * <p>Both parsers read the same response body, as bytes, into an Address. Each runs a warm-up
+ * phase and then a number of measured rounds; the best round is reported as nanoseconds and, when
+ * the JVM can measure it, bytes allocated per parse.
+ *
+ * <p>Run from the project directory after {@code mvn test-compile}, with {@code
+ * target/classes:target/test-classes} and the dependencies on the class path.
+ */
+public class ViaCepJsonBenchmark {
+
+  private static final byte[] RESPONSE =
+      ("{\n"
+              + "  \"cep\": \"01001-000\",\n"
+              + "  \"logradouro\": \"Praça da Sé\",\n"
+              + "  \"complemento\": \"lado ímpar\",\n"
+              + "  \"unidade\": \"\",\n"
+              + "  \"bairro\": \"Sé\",\n"
+              + "  \"localidade\": \"São Paulo\",\n"
+              + "  \"uf\": \"SP\",\n"
+              + "  \"estado\": \"São Paulo\",\n"
+              + "  \"regiao\": \"Sudeste\",\n"
+              + "  \"ibge\": \"3550308\",\n"
+              + "  \"gia\": \"1004\",\n"
+              + "  \"ddd\": \"11\",\n"
+              + "  \"siafi\": \"7107\"\n"
+              + "}")
+          .getBytes(StandardCharsets.UTF_8);
+
+  private static final String CEP = "01001-000";
+
+  /**
+   * Runs the benchmark
+   *
+   * @param args optional parses per round and measured rounds
+   */
+  public static void main(String[] args) throws Exception {
+    int iterations = (args.length > 0) ? Integer.parseInt(args[0]) : 200_000;
+    int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+
+    Parser streaming = body -> ViaCepJsonReader.read(body, CEP);
+    Parser dom = ViaCepJsonBenchmark::parseWithJsonObject;
+
+    // Warm up both parsers before measuring either
+    run(streaming, iterations);
+    run(dom, iterations);
+
+    report("streaming", streaming, iterations, rounds);
+    report("org.json", dom, iterations, rounds);
+  }
+
+  private static void report(String name, Parser parser, int iterations, int rounds)
+      throws Exception {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    com.sun.management.ThreadMXBean allocations =
+        (threads instanceof com.sun.management.ThreadMXBean)
+            ? (com.sun.management.ThreadMXBean) threads
+            : null;
+    long threadId = Thread.currentThread().getId();
+
+    double bestNanos = Double.MAX_VALUE;
+    double bestBytes = -1;
+    for (int round = 0; round < rounds; round++) {
+      long allocatedBefore = allocatedBytes(allocations, threadId);
+      long start = System.nanoTime();
+      run(parser, iterations);
+      long elapsed = System.nanoTime() - start;
+      long allocated = allocatedBytes(allocations, threadId) - allocatedBefore;
+
+      if ((double) elapsed / iterations < bestNanos) {
+        bestNanos = (double) elapsed / iterations;
+        bestBytes = (allocations != null) ? (double) allocated / iterations : -1;
+      }
+    }
+
+    System.out.printf(
+        "%-10s %8.0f ns/parse %8s bytes/parse%n",
+        name, bestNanos, (bestBytes >= 0) ? String.format("%.0f", bestBytes) : "n/a");
+  }
+
+  private static long allocatedBytes(com.sun.management.ThreadMXBean allocations, long threadId) {
+    return (allocations != null) ? allocations.getThreadAllocatedBytes(threadId) : 0;
+  }
+
+  private static void run(Parser parser, int iterations) throws Exception {
+    int checksum = 0;
+    for (int i = 0; i < iterations; i++) {
+      checksum += parser.parse(RESPONSE).getCityName().length();
+    }
+    if (checksum != iterations * "São Paulo".length()) {
+      throw new IllegalStateException("Parser returned the wrong city");
+    }
+  }
+
+  /** The org.json path: decode the body into a String, build the DOM, read the fields */
+  private static Address parseWithJsonObject(byte[] body) {
+    JSONObject json = new JSONObject(new String(body, StandardCharsets.UTF_8));
+    if (json.has("erro") && json.getBoolean("erro")) {
+      return null;
+    }
+
+    Address address = new Address();
+    address.setAddress(json.getString("logradouro"));
+    address.setNeighborhood(json.getString("bairro"));
+    address.setCityName(json.getString("localidade"));
+    address.setState(BrazilianState.fromAbbreviation(json.getString("uf")));
+    address.setCepNumber(CEP);
+    address.setHouseNumber("");
+    address.setHouseComplement(json.optString("complemento", ""));
+    return address;
+  }
+
+  private interface Parser {
+    Address parse(byte[] body) throws Exception;
+  }
+}
@@ -0,0 +1,109 @@
+package br.com.devcoelho.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import br.com.devcoelho.Address;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ViaCepServiceTest {
+
+  private static final int CALLERS = 50;
+
+  private StubViaCepServer server;
+  private ViaCepService service;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    server = new StubViaCepServer();
+    service = new ViaCepService(server.url(), new CepCache(), null, null, true);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void concurrentLookupsOfOneCepMakeOneRequest() throws Exception {
+    server.holdResponses();
+    ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<CompletableFuture<Address>>> lookups = new ArrayList<>();
+      for (int i = 0; i < CALLERS; i++) {
+        lookups.add(
+            callers.submit(
+                () -> {
+                  start.await();
+                  return service.getAddressByCepAsync("01001-000");
+                }));
+      }
+      start.countDown();
+
+      // Every caller has its future before the response is let through
+      List<Address> addresses = new ArrayList<>();
+      List<CompletableFuture<Address>> pending = new ArrayList<>();
+      for (Future<CompletableFuture<Address>> lookup : lookups) {
+        pending.add(lookup.get());
+      }
+      server.releaseResponses();
+      for (CompletableFuture<Address> address : pending) {
+        addresses.add(address.join());
+      }
+
+      assertEquals(1, server.requests("01001000"));
+      assertEquals("Rua 01001000", addresses.get(0).getAddress());
+      assertNotSame(addresses.get(0), addresses.get(1));
+    } finally {
+      callers.shutdownNow();
+    }
+  }
+
+  @Test
+  public void resultsAreCached() {
+    Address first = service.getAddressByCep("13010000");
+    Address second = service.getAddressByCep("13010-000");
+
+    assertNotNull(first);
+    assertEquals(first.getAddress(), second.getAddress());
+    assertEquals(1, server.requests("13010000"));
+  }
+
+  @Test
+  public void unknownCepsReturnNull() {
+    server.markNotFound("99999999");
+
+    assertNull(service.getAddressByCep("99999999"));
+    assertNull(service.getAddressByCep("99999999"));
+    assertEquals(1, server.requests("99999999"));
+  }
+
+  @Test
+  public void lookupsCompleteWhenCachingFails() {
+    CepCache failingCache =
+        new CepCache() {
+          @Override
+          public void put(int cep, Address address) {
+            throw new IllegalStateException("cache unavailable");
+          }
+        };
+    service = new ViaCepService(server.url(), failingCache, null, null, true);
+
+    assertNotNull(service.getAddressByCepAsync("01310100").join());
+    // Not left in flight: the next lookup makes its own request
+    assertNotNull(service.getAddressByCepAsync("01310100").join());
+    assertEquals(2, server.requests("01310100"));
+  }
+}
@@ -0,0 +1,66 @@
+package br.com.devcoelho.sharding;
+
+/**
+ * Measures the cost of a dedup lookup in a full {@link IdempotencyCache}.
+ *
+ * <p>Fills a cache of the default size with request ids, then times lookups of ids it holds, as a
+ * retry would, and of ids it doesn't, as every new request does. Ids are built before timing so
+ * only the lookup is measured. Each measurement runs a warm-up round and prints nanoseconds per
+ * lookup and the lookup rate one shard thread could sustain.
+ *
+ * <p>Run from the project directory after {@code mvn test-compile}, with {@code
+ * target/classes:target/test-classes} on the class path.
+ */
+public class IdempotencyCacheBenchmark {
+
+  /**
+   * Runs the benchmark
+   *
+   * @param args optional number of lookups per round
+   */
+  public static void main(String[] args) {
+    int lookups = (args.length > 0) ? Integer.parseInt(args[0]) : 10_000_000;
+    int capacity = IdempotencyCache.DEFAULT_CAPACITY;
+
+    // Stay within one TTL so nothing expires while measuring
+    IdempotencyCache cache = new IdempotencyCache(capacity, IdempotencyCache.DEFAULT_TTL_MILLIS);
+    int recorded = capacity * 3 / 4;
+    String[] hits = new String[recorded];
+    for (int i = 0; i < recorded; i++) {
+      hits[i] = "request-" + i;
+      cache.record(hits[i], 0);
+    }
+    String[] misses = new String[recorded];
+    for (int i = 0; i < recorded; i++) {
+      misses[i] = "request-" + (recorded + i);
+    }
+
+    System.out.printf("%,d ids in a cache of capacity %,d%n", recorded, capacity);
+    report("hit", cache, hits, lookups);
+    report("miss", cache, misses, lookups);
+  }
+
+  private static void report(String label, IdempotencyCache cache, String[] ids, int lookups) {
+    measure(cache, ids, lookups / 10);
+    long nanos = measure(cache, ids, lookups);
+    System.out.printf(
+        "%-4s %6.1f ns/lookup %,14.0f lookups/s%n",
+        label, (double) nanos / lookups, lookups * 1e9 / nanos);
+  }
+
+  /** Times lookups; returns the elapsed nanoseconds */
+  private static long measure(IdempotencyCache cache, String[] ids, int lookups) {
+    int found = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < lookups; i++) {
+      if (cache.contains(ids[i % ids.length], 1)) {
+        found++;
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    if (found == -1) {
+      System.out.println(); // Keeps the lookups from being optimized away
+    }
+    return elapsed;
+  }
+}
@@ -0,0 +1,52 @@
+package br.com.devcoelho.sharding;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class IdempotencyCacheTest {
+
+  private static final long RATE = 1_000;
+  private static final long TTL_MILLIS = 60_000;
+
+  @Test
+  public void sizedCacheKeepsIdsForTheWholeTtlAtItsRate() {
+    IdempotencyCache cache =
+        new IdempotencyCache(IdempotencyCache.capacityFor(RATE, TTL_MILLIS), TTL_MILLIS);
+
+    // One request per millisecond for a whole TTL
+    long requests = RATE * TTL_MILLIS / 1000;
+    for (long i = 0; i < requests; i++) {
+      cache.record("request-" + i, i);
+    }
+
+    long end = requests - 1;
+    assertTrue(cache.contains("request-0", end));
+    assertTrue(cache.contains("request-" + end, end));
+    assertFalse(cache.contains("request-" + requests, end));
+  }
+
+  @Test
+  public void idsExpireAfterTheTtl() {
+    IdempotencyCache cache = new IdempotencyCache(1_000, TTL_MILLIS);
+    cache.record("request", 0);
+
+    assertTrue(cache.contains("request", TTL_MILLIS - 1));
+    assertFalse(cache.contains("request", TTL_MILLIS));
+  }
+
+  @Test
+  public void restoredCacheKeepsIdsAndTheirExpiry() {
+    IdempotencyCache cache = new IdempotencyCache(1_000, TTL_MILLIS);
+    cache.record("old", 0);
+    cache.record("recent", TTL_MILLIS / 2);
+
+    IdempotencyCache restored = new IdempotencyCache(1_000, TTL_MILLIS);
+    cache.forEach(TTL_MILLIS / 2, restored::restore);
+
+    assertTrue(restored.contains("old", TTL_MILLIS / 2));
+    assertTrue(restored.contains("recent", TTL_MILLIS));
+    assertFalse(restored.contains("old", TTL_MILLIS * 2));
+  }
+}
@@ -0,0 +1,196 @@
+package br.com.devcoelho.sharding;
+
+import br.com.devcoelho.Bank;
+import br.com.devcoelho.BankAccount;
+import br.com.devcoelho.BankSimpleAccount;
+import br.com.devcoelho.Person;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures how {@link ShardedBank} throughput scales with the number of shards.
+ *
+ * <p>For each shard count, opens a set of accounts and has producer threads submit deposits and,
+ * for a share of the operations, transfers between random accounts, most of which cross shards.
+ * Each configuration runs a warm-up round and a measured round and prints operations per second.
+ * A first row runs the same mix against plain {@link BankAccount} objects guarded by their own
+ * locks, the model the sharded bank replaces, as a baseline. Journals go to a temporary directory
+ * that is deleted at the end. Scaling needs as many cores as shards plus producers; on fewer cores
+ * the shards share them and throughput stays flat.
+ *
+ * <p>Run from the project directory after {@code mvn test-compile}, with {@code
+ * target/classes:target/test-classes} and the dependencies on the class path.
+ */
+public class ShardedBankBenchmark {
+
+  private static final double INITIAL_BALANCE = 1_000_000;
+
+  private final Bank bank;
+  private final Person client;
+  private final int accountCount;
+  private final int producers;
+  private final int transferPercent;
+
+  private ShardedBankBenchmark(
+      Bank bank, Person client, int accountCount, int producers, int transferPercent) {
+    this.bank = bank;
+    this.client = client;
+    this.accountCount = accountCount;
+    this.producers = producers;
+    this.transferPercent = transferPercent;
+  }
+
+  /**
+   * Runs the benchmark
+   *
+   * @param args optional operations per round, accounts, producer threads, comma-separated shard
+   *     counts and percentage of transfers
+   */
+  public static void main(String[] args) throws Exception {
+    int operations = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+    int accountCount = (args.length > 1) ? Integer.parseInt(args[1]) : 10_000;
+    int producers =
+        (args.length > 2)
+            ? Integer.parseInt(args[2])
+            : Runtime.getRuntime().availableProcessors();
+    String[] shardCounts = ((args.length > 3) ? args[3] : "1,2,4,8").split(",");
+    int transferPercent = (args.length > 4) ? Integer.parseInt(args[4]) : 10;
+
+    File directory = Files.createTempDirectory("sharded-bank-benchmark").toFile();
+    Bank bank = new Bank("Benchmark Bank", "000");
+    Person client = new Person();
+    client.setName("Benchmark");
+    client.setCpf("00000000000");
+    bank.addClient(client);
+
+    System.out.printf(
+        "%,d operations over %,d accounts, %d producers, %d%% transfers, %d cores%n",
+        operations,
+        accountCount,
+        producers,
+        transferPercent,
+        Runtime.getRuntime().availableProcessors());
+    ShardedBankBenchmark benchmark =
+        new ShardedBankBenchmark(bank, client, accountCount, producers, transferPercent);
+    try {
+      benchmark.runLocked(operations / 10);
+      System.out.printf("%-9s %,12.0f ops/s%n", "locks", benchmark.runLocked(operations));
+      for (String shardCount : shardCounts) {
+        int shards = Integer.parseInt(shardCount.trim());
+        String prefix = new File(directory, shards + "-").getPath();
+        benchmark.run(shards, prefix + "warmup-", operations / 10);
+        double perSecond = benchmark.run(shards, prefix, operations);
+        System.out.printf("%2d shards %,12.0f ops/s%n", shards, perSecond);
+      }
+    } finally {
+      for (File file : directory.listFiles()) {
+        file.delete();
+      }
+      directory.delete();
+    }
+  }
+
+  /**
+   * Runs one round
+   *
+   * @return operations completed per second
+   */
+  private double run(int shardCount, String filePrefix, int operations) throws Exception {
+    try (ShardedBank sharded = new ShardedBank(bank, shardCount, filePrefix, null)) {
+      int[] accounts = new int[accountCount];
+      for (int i = 0; i < accountCount; i++) {
+        accounts[i] = sharded.createAccount(client, Bank.AccountType.SIMPLE).join();
+      }
+      List<CompletableFuture<Void>> funding = new ArrayList<>();
+      for (int account : accounts) {
+        funding.add(sharded.deposit(account, INITIAL_BALANCE));
+      }
+      CompletableFuture.allOf(funding.toArray(new CompletableFuture<?>[0])).join();
+
+      CountDownLatch done = new CountDownLatch(operations);
+      Thread[] threads = new Thread[producers];
+      long start = System.nanoTime();
+      for (int p = 0; p < producers; p++) {
+        int share = operations / producers + ((p < operations % producers) ? 1 : 0);
+        threads[p] =
+            new Thread(
+                () -> {
+                  ThreadLocalRandom random = ThreadLocalRandom.current();
+                  for (int i = 0; i < share; i++) {
+                    int source = accounts[random.nextInt(accounts.length)];
+                    CompletableFuture<Void> operation =
+                        (random.nextInt(100) < transferPercent)
+                            ? sharded.transfer(source, accounts[random.nextInt(accounts.length)], 1)
+                            : sharded.deposit(source, 1);
+                    operation.whenComplete((result, failure) -> done.countDown());
+                  }
+                });
+        threads[p].start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      done.await();
+      return operations * 1e9 / (System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Runs one round against lock-guarded accounts; transfers lock both accounts in number order
+   *
+   * @return operations completed per second
+   */
+  private double runLocked(int operations) throws Exception {
+    BankAccount[] accounts = new BankAccount[accountCount];
+    for (int i = 0; i < accountCount; i++) {
+      accounts[i] = new BankSimpleAccount(client, i + 1, new Date());
+      accounts[i].depositAmount(INITIAL_BALANCE);
+    }
+
+    Thread[] threads = new Thread[producers];
+    long start = System.nanoTime();
+    for (int p = 0; p < producers; p++) {
+      int share = operations / producers + ((p < operations % producers) ? 1 : 0);
+      threads[p] =
+          new Thread(
+              () -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < share; i++) {
+                  BankAccount source = accounts[random.nextInt(accounts.length)];
+                  if (random.nextInt(100) < transferPercent) {
+                    lockedTransfer(source, accounts[random.nextInt(accounts.length)]);
+                  } else {
+                    synchronized (source) {
+                      source.depositAmount(1);
+                    }
+                  }
+                }
+              });
+      threads[p].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    return operations * 1e9 / (System.nanoTime() - start);
+  }
+
+  private static void lockedTransfer(BankAccount source, BankAccount destination) {
+    if (source == destination) {
+      return;
+    }
+    boolean sourceFirst = source.getAccountNumber() < destination.getAccountNumber();
+    BankAccount first = sourceFirst ? source : destination;
+    BankAccount second = sourceFirst ? destination : source;
+    synchronized (first) {
+      synchronized (second) {
+        source.transferAmount(1, destination);
+      }
+    }
+  }
+}
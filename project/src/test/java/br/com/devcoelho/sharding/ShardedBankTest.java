@@ -0,0 +1,204 @@
+package br.com.devcoelho.sharding;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import br.com.devcoelho.Bank;
+import br.com.devcoelho.Person;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ShardedBankTest {
+
+  private static final int SHARDS = 4;
+
+  @TempDir Path directory;
+
+  private String prefix;
+  private Bank bank;
+  private Person client;
+
+  @BeforeEach
+  public void setUp() {
+    prefix = directory.resolve("bank-").toString();
+    client = new Person();
+    client.setName("Maria");
+    client.setCpf("12345678900");
+    bank = new Bank("Test", "001");
+    bank.addClient(client);
+  }
+
+  @Test
+  public void restartWithoutSaveReplaysTheJournal() {
+    int source;
+    int destination;
+    try (ShardedBank sharded = open()) {
+      source = sharded.createAccount(client, Bank.AccountType.SIMPLE).join();
+      destination = accountOnAnotherShard(sharded, source);
+      assertTrue(sharded.deposit("deposit-1", source, 100).join());
+      sharded.transfer(source, destination, 30).join();
+    }
+
+    try (ShardedBank restarted = open()) {
+      restarted.loadAll(List.of(client)).join();
+      assertEquals(70, restarted.getBalance(source).join(), 0.001);
+      assertEquals(30, restarted.getBalance(destination).join(), 0.001);
+      assertFalse(restarted.deposit("deposit-1", source, 100).join());
+    }
+  }
+
+  @Test
+  public void restartAfterSaveReplaysOnlyLaterCommands() {
+    int account;
+    try (ShardedBank sharded = open()) {
+      account = sharded.createAccount(client, Bank.AccountType.SIMPLE).join();
+      assertTrue(sharded.deposit("deposit-1", account, 100).join());
+      sharded.saveAll().join();
+      assertTrue(sharded.deposit("deposit-2", account, 50).join());
+    }
+
+    try (ShardedBank restarted = open()) {
+      restarted.loadAll(List.of(client)).join();
+      assertEquals(150, restarted.getBalance(account).join(), 0.001);
+      assertFalse(restarted.deposit("deposit-1", account, 100).join());
+      assertFalse(restarted.deposit("deposit-2", account, 50).join());
+      assertEquals(150, restarted.getBalance(account).join(), 0.001);
+    }
+  }
+
+  @Test
+  public void saveCompactsTheJournalAndKeepsRequestIds() throws IOException {
+    int account;
+    String journal;
+    try (ShardedBank sharded = open()) {
+      account = sharded.createAccount(client, Bank.AccountType.SIMPLE).join();
+      assertTrue(sharded.deposit("deposit-1", account, 100).join());
+      sharded.saveAll().join();
+      journal = sharded.shardOf(account).getJournalFile();
+    }
+
+    // Compacted after the shard was closed at the latest
+    List<String> entries = Files.readAllLines(Path.of(journal));
+    assertEquals(1, entries.size());
+    assertTrue(entries.get(0).startsWith("SNAPSHOT|"));
+
+    try (ShardedBank restarted = open()) {
+      restarted.loadAll(List.of(client)).join();
+      assertFalse(restarted.deposit("deposit-1", account, 100).join());
+      assertTrue(restarted.deposit("deposit-2", account, 50).join());
+      assertEquals(150, restarted.getBalance(account).join(), 0.001);
+    }
+  }
+
+  @Test
+  public void interruptedTransfersAreResolvedOnLoad() throws IOException {
+    int source;
+    int destination;
+    String sourceJournal;
+    String destinationJournal;
+    try (ShardedBank sharded = open()) {
+      source = sharded.createAccount(client, Bank.AccountType.SIMPLE).join();
+      destination = accountOnAnotherShard(sharded, source);
+      sharded.deposit(source, 100);
+      sharded.saveAll().join();
+      sourceJournal = sharded.shardOf(source).getJournalFile();
+      destinationJournal = sharded.shardOf(destination).getJournalFile();
+    }
+
+    // Two transfers that stopped after holding the funds; only the first was credited
+    append(sourceJournal, "HOLD|t-1|" + source + "|" + destination + "|10.0");
+    append(sourceJournal, "HOLD|t-2|" + source + "|" + destination + "|20.0|transfer-2");
+    append(destinationJournal, "CREDIT|t-1|" + destination + "|10.0");
+
+    try (ShardedBank restarted = open()) {
+      restarted.loadAll(List.of(client)).join();
+      assertEquals(90, restarted.getBalance(source).join(), 0.001);
+      assertEquals(10, restarted.getBalance(destination).join(), 0.001);
+
+      // The released transfer can be retried under its request id
+      assertTrue(restarted.transfer("transfer-2", source, destination, 20).join());
+      assertEquals(70, restarted.getBalance(source).join(), 0.001);
+    }
+  }
+
+  @Test
+  public void creditsAreKeptInSnapshotsUntilCommitted() throws IOException {
+    int source;
+    int destination;
+    String sourceJournal;
+    String destinationJournal;
+    try (ShardedBank sharded = open()) {
+      source = sharded.createAccount(client, Bank.AccountType.SIMPLE).join();
+      destination = accountOnAnotherShard(sharded, source);
+      sharded.deposit(source, 100).join();
+      sharded.saveAll().join();
+      sourceJournal = sharded.shardOf(source).getJournalFile();
+      destinationJournal = sharded.shardOf(destination).getJournalFile();
+    }
+
+    // The destination is credited and saved, and its journal compacted, before the source's
+    // hold is resolved
+    append(destinationJournal, "CREDIT|t-1|" + destination + "|10.0");
+    try (ShardedBank restarted = open()) {
+      restarted.loadAll(List.of(client)).join();
+      restarted.saveAll().join();
+    }
+    append(sourceJournal, "HOLD|t-1|" + source + "|" + destination + "|10.0");
+
+    try (ShardedBank restarted = open()) {
+      restarted.loadAll(List.of(client)).join();
+      assertEquals(90, restarted.getBalance(source).join(), 0.001);
+      assertEquals(10, restarted.getBalance(destination).join(), 0.001);
+      restarted.saveAll().join();
+    }
+
+    // Committed and settled: the credit is gone from the destination's state
+    try (ShardedBank restarted = open()) {
+      assertFalse(
+          Files.readString(Path.of(restarted.shardOf(destination).getStateFile()))
+              .contains("CREDITED|t-1"));
+    }
+  }
+
+  @Test
+  public void commandsFailWhenTheJournalCantBeWritten() {
+    String missingDirectory = directory.resolve("missing").resolve("bank-").toString();
+    try (ShardedBank sharded = new ShardedBank(bank, 1, missingDirectory, null)) {
+      // Failed by the journaler, or rejected if the journal had already failed
+      assertThrows(
+          RuntimeException.class,
+          () -> sharded.createAccount(client, Bank.AccountType.SIMPLE).join());
+      assertThrows(
+          IllegalStateException.class,
+          () -> sharded.createAccount(client, Bank.AccountType.SIMPLE));
+    }
+  }
+
+  private ShardedBank open() {
+    return new ShardedBank(bank, SHARDS, prefix, null);
+  }
+
+  /** Opens accounts until one lands on a different shard than the given account */
+  private int accountOnAnotherShard(ShardedBank sharded, int accountNumber) {
+    while (true) {
+      int other = sharded.createAccount(client, Bank.AccountType.SIMPLE).join();
+      if (sharded.shardOf(other) != sharded.shardOf(accountNumber)) {
+        return other;
+      }
+    }
+  }
+
+  private static void append(String fileName, String entry) throws IOException {
+    try (FileWriter writer = new FileWriter(fileName, true)) {
+      writer.write(entry + System.lineSeparator());
+    }
+  }
+}
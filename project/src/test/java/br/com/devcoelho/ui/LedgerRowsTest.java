@@ -0,0 +1,72 @@
+package br.com.devcoelho.ui;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import br.com.devcoelho.Bank;
+import br.com.devcoelho.BankAccount;
+import br.com.devcoelho.Person;
+import br.com.devcoelho.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LedgerRowsTest {
+
+  private LedgerRows<String> rows;
+
+  @BeforeEach
+  public void setUp() {
+    Person client = new Person();
+    client.setName("Maria");
+    client.setCpf("12345678900");
+    Bank bank = new Bank("Test", "001");
+    bank.addClient(client);
+    BankAccount account = bank.createAccount(client, Bank.AccountType.SIMPLE);
+    account.depositAmount(50);
+    account.withdrawAmount(20);
+    account.depositAmount(10);
+    account.withdrawAmount(5);
+
+    rows = new LedgerRows<>(account, LedgerRowsTest::describe, false);
+  }
+
+  @Test
+  public void dateOrderIsLedgerOrderOrReversed() {
+    assertEquals("Deposit 50.00 (0.00)", rows.get(0));
+    assertEquals("Withdrawal -5.00 (40.00)", rows.get(3));
+
+    LedgerRows<String> newestFirst = rows.sortedBy(LedgerRows.SortKey.DATE, true);
+    assertEquals("Withdrawal -5.00 (40.00)", newestFirst.get(0));
+    assertSame(rows, rows.sortedBy(LedgerRows.SortKey.DATE, false));
+  }
+
+  @Test
+  public void sortsByAmountKeepingRunningBalances() {
+    LedgerRows<String> ascending = rows.sortedBy(LedgerRows.SortKey.AMOUNT, false);
+    assertEquals("Withdrawal -20.00 (50.00)", ascending.get(0));
+    assertEquals("Withdrawal -5.00 (40.00)", ascending.get(1));
+    assertEquals("Deposit 10.00 (30.00)", ascending.get(2));
+    assertEquals("Deposit 50.00 (0.00)", ascending.get(3));
+
+    LedgerRows<String> descending = ascending.sortedBy(LedgerRows.SortKey.AMOUNT, true);
+    assertEquals("Deposit 50.00 (0.00)", descending.get(0));
+  }
+
+  @Test
+  public void sortsByTypeKeepingLedgerOrderWithinAType() {
+    LedgerRows<String> byType = rows.sortedBy(LedgerRows.SortKey.TYPE, false);
+    assertEquals("Deposit 50.00 (0.00)", byType.get(0));
+    assertEquals("Deposit 10.00 (30.00)", byType.get(1));
+    assertEquals("Withdrawal -20.00 (50.00)", byType.get(2));
+    assertEquals("Withdrawal -5.00 (40.00)", byType.get(3));
+
+    LedgerRows<String> reversed = rows.sortedBy(LedgerRows.SortKey.TYPE, true);
+    assertEquals("Withdrawal -20.00 (50.00)", reversed.get(0));
+  }
+
+  private static String describe(Transaction transaction, double runningBalance) {
+    return String.format(
+        "%s %.2f (%.2f)",
+        transaction.getType().getDescription(), transaction.getAmount(), runningBalance);
+  }
+}